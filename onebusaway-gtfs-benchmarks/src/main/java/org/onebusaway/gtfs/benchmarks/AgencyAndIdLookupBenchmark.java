@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.AgencyAndIdRegistry;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.serialization.GtfsReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking up entities by {@link AgencyAndId} through a
+ * {@link HashMap}, through a {@link HashMap} using the old summed hash code,
+ * through an {@link AgencyAndIdRegistry} into an array, and through a
+ * previously resolved ordinal.
+ *
+ * The ids are the route, stop, trip, shape and service ids of the feed given
+ * by {@code -p feedPath=...}. Without a feed, a synthetic set of numeric
+ * agency and entity ids is used, which is the case the summed hash code
+ * handled worst.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AgencyAndIdLookupBenchmark {
+
+  /**
+   * A GTFS directory or zip file, or empty for synthetic ids
+   */
+  @Param("")
+  public String feedPath;
+
+  @Param("200000")
+  public int syntheticIdCount;
+
+  private AgencyAndId[] _queries;
+
+  private LegacyHashAgencyAndId[] _legacyQueries;
+
+  private int[] _queryOrdinals;
+
+  private Map<AgencyAndId, Object> _valuesById;
+
+  private Map<LegacyHashAgencyAndId, Object> _valuesByLegacyId;
+
+  private AgencyAndIdRegistry _registry;
+
+  private Object[] _valuesByOrdinal;
+
+  private int _next = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    List<AgencyAndId> ids = feedPath.isEmpty() ? getSyntheticIds()
+        : getFeedIds(new File(feedPath));
+
+    _valuesById = new HashMap<AgencyAndId, Object>();
+    _valuesByLegacyId = new HashMap<LegacyHashAgencyAndId, Object>();
+    _registry = new AgencyAndIdRegistry(ids.size());
+    _valuesByOrdinal = new Object[ids.size()];
+    for (AgencyAndId id : ids) {
+      Object value = new Object();
+      _valuesById.put(id, value);
+      _valuesByLegacyId.put(new LegacyHashAgencyAndId(id), value);
+      _valuesByOrdinal[_registry.getOrCreateOrdinal(id)] = value;
+    }
+
+    // Query with equal but distinct instances in random order, as a caller
+    // resolving ids parsed from elsewhere would
+    List<AgencyAndId> queries = new ArrayList<AgencyAndId>(ids);
+    Collections.shuffle(queries, new Random(42));
+    _queries = new AgencyAndId[queries.size()];
+    _legacyQueries = new LegacyHashAgencyAndId[queries.size()];
+    _queryOrdinals = new int[queries.size()];
+    for (int i = 0; i < queries.size(); i++) {
+      AgencyAndId id = queries.get(i);
+      _queries[i] = new AgencyAndId(id.getAgencyId(), id.getId());
+      _legacyQueries[i] = new LegacyHashAgencyAndId(_queries[i]);
+      _queryOrdinals[i] = _registry.getOrdinal(id);
+    }
+  }
+
+  @Benchmark
+  public Object hashMap() {
+    return _valuesById.get(_queries[nextQuery()]);
+  }
+
+  @Benchmark
+  public Object hashMapWithSummedHashCode() {
+    return _valuesByLegacyId.get(_legacyQueries[nextQuery()]);
+  }
+
+  @Benchmark
+  public Object registry() {
+    return _valuesByOrdinal[_registry.getOrdinal(_queries[nextQuery()])];
+  }
+
+  @Benchmark
+  public Object ordinal() {
+    return _valuesByOrdinal[_queryOrdinals[nextQuery()]];
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private int nextQuery() {
+    int next = _next;
+    _next = next + 1 == _queries.length ? 0 : next + 1;
+    return next;
+  }
+
+  private List<AgencyAndId> getSyntheticIds() {
+    int agencyCount = (int) Math.sqrt(syntheticIdCount);
+    List<AgencyAndId> ids = new ArrayList<AgencyAndId>(syntheticIdCount);
+    for (int i = 0; i < syntheticIdCount; i++) {
+      ids.add(new AgencyAndId(Integer.toString(i % agencyCount),
+          Integer.toString(i / agencyCount)));
+    }
+    return ids;
+  }
+
+  private static List<AgencyAndId> getFeedIds(File path) throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(path);
+    reader.setEntityStore(dao);
+    reader.run();
+
+    Set<AgencyAndId> ids = new LinkedHashSet<AgencyAndId>();
+    for (Route route : dao.getAllRoutes())
+      ids.add(route.getId());
+    for (Stop stop : dao.getAllStops())
+      ids.add(stop.getId());
+    for (Trip trip : dao.getAllTrips())
+      ids.add(trip.getId());
+    ids.addAll(dao.getAllShapeIds());
+    ids.addAll(dao.getAllServiceIds());
+    return new ArrayList<AgencyAndId>(ids);
+  }
+
+  /**
+   * An id with the hash code {@link AgencyAndId} used to have: the sum of the
+   * agency and entity id hashes.
+   */
+  private static final class LegacyHashAgencyAndId {
+
+    private final AgencyAndId _id;
+
+    public LegacyHashAgencyAndId(AgencyAndId id) {
+      _id = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 93 + _id.getAgencyId().hashCode() + _id.getId().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof LegacyHashAgencyAndId
+          && _id.equals(((LegacyHashAgencyAndId) obj)._id);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs_merge.GtfsMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link GtfsMerger#run(List, File)} merging the benchmark feed with a
+ * second synthetic feed of the same size. The second feed shares the agency
+ * and service ids but prefixes its other ids, so the merge strategies have to
+ * run their duplicate detection rather than match ids outright.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class GtfsMergerBenchmark {
+
+  private List<File> _inputPaths;
+
+  private File _outputDirectory;
+
+  @Setup(Level.Trial)
+  public void setup(SyntheticFeedState feed) throws IOException {
+    File otherFeed = feed.createTempDirectory("GtfsMergerBenchmark-input-");
+    feed.createGenerator("b-", 7).run(otherFeed);
+    _inputPaths = Arrays.asList(feed.getPath(), otherFeed);
+    _outputDirectory = feed.createTempDirectory("GtfsMergerBenchmark-");
+  }
+
+  @Benchmark
+  public File merge() throws IOException {
+    new GtfsMerger().run(_inputPaths, _outputDirectory);
+    return _outputDirectory;
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times building the relations of a loaded {@link GtfsRelationalDaoImpl}:
+ * lazily, by looking up the stop times of every trip and stop, and eagerly
+ * with {@link GtfsRelationalDaoImpl#buildIndexes()}. The caches are cleared
+ * before each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class GtfsRelationalDaoBenchmark {
+
+  @Param({"false", "true"})
+  public boolean packed;
+
+  private GtfsRelationalDaoImpl _dao;
+
+  @Setup(Level.Trial)
+  public void setup(SyntheticFeedState feed) throws IOException {
+    _dao = feed.read(packed);
+  }
+
+  @Setup(Level.Invocation)
+  public void clearCaches() {
+    _dao.clearAllCaches();
+  }
+
+  @Benchmark
+  public int lazyRelations() {
+    int count = 0;
+    for (Trip trip : _dao.getAllTrips())
+      count += _dao.getStopTimesForTrip(trip).size();
+    for (Stop stop : _dao.getAllStops())
+      count += _dao.getStopTimesForStop(stop).size();
+    return count;
+  }
+
+  @Benchmark
+  public GtfsRelationalDaoImpl buildIndexes() {
+    _dao.buildIndexes();
+    return _dao;
+  }
+}
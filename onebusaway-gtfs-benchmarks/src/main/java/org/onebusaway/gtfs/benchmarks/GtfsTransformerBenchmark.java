@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs_transformer.GtfsTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a full {@link GtfsTransformer#run()}: reading the feed, applying a
+ * typical modifications file and writing the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class GtfsTransformerBenchmark {
+
+  /**
+   * Updates and removes entities matched by property values, then extends
+   * the calendars, as a typical agency modifications file does.
+   */
+  private static final String MODIFICATIONS = String.join("\n",
+      "{'op':'update', 'match':{'file':'routes.txt', 'route_type':'3'}, 'update':{'route_color':'0000FF'}}",
+      "{'op':'update', 'match':{'file':'stops.txt', 'stop_id':'s0'}, 'update':{'stop_name':'Transit Center'}}",
+      "{'op':'update', 'match':{'file':'trips.txt', 'direction_id':'1'}, 'update':{'trip_headsign':'Inbound'}}",
+      "{'op':'remove', 'match':{'file':'routes.txt', 'route_short_name':'1'}}",
+      "{'op':'remove', 'match':{'file':'calendar_dates.txt', 'date':'20261227'}}",
+      "{'op':'calendar_extension', 'end_date':'20271231', 'inactive_calendar_cutoff':'20260101'}");
+
+  private File _inputPath;
+
+  private File _outputDirectory;
+
+  @Setup(Level.Trial)
+  public void setup(SyntheticFeedState feed) throws IOException {
+    _inputPath = feed.getPath();
+    _outputDirectory = feed.createTempDirectory("GtfsTransformerBenchmark-");
+  }
+
+  @Benchmark
+  public File transform() throws Exception {
+    GtfsTransformer transformer = new GtfsTransformer();
+    transformer.setGtfsInputDirectory(_inputPath);
+    transformer.setOutputDirectory(_outputDirectory);
+    transformer.getTransformFactory().addModificationsFromString(
+        MODIFICATIONS);
+    transformer.run();
+    return _outputDirectory;
+  }
+}
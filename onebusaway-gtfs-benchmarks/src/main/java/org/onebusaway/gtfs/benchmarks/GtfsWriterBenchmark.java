@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.serialization.GtfsWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link GtfsWriter#run(org.onebusaway.gtfs.services.GtfsDao)} writing a
+ * loaded feed to a directory or to a zip file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class GtfsWriterBenchmark {
+
+  @Param({"false", "true"})
+  public boolean zip;
+
+  private GtfsRelationalDaoImpl _dao;
+
+  private File _outputPath;
+
+  @Setup(Level.Trial)
+  public void setup(SyntheticFeedState feed) throws IOException {
+    _dao = feed.read(true);
+    File directory = feed.createTempDirectory("GtfsWriterBenchmark-");
+    _outputPath = zip ? new File(directory, "gtfs.zip") : directory;
+  }
+
+  @Benchmark
+  public File write() throws IOException {
+    GtfsWriter writer = new GtfsWriter();
+    writer.setOutputLocation(_outputPath);
+    writer.run(_dao);
+    writer.close();
+    return _outputPath;
+  }
+}
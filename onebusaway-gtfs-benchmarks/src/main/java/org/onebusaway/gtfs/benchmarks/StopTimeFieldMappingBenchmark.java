@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.onebusaway.gtfs.serialization.mappings.InvalidStopTimeException;
+import org.onebusaway.gtfs.serialization.mappings.StopTimeFieldMappingFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares parsing and formatting stop times with
+ * {@link StopTimeFieldMappingFactory} against the regular expression and
+ * {@link DecimalFormat} implementation it used to have.
+ *
+ * The times are spread over a 30 hour service day, as in a feed with trips
+ * running past midnight.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StopTimeFieldMappingBenchmark {
+
+  private static final int TIME_COUNT = 4096;
+
+  private int[] _seconds;
+
+  private String[] _values;
+
+  private int _next = 0;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    _seconds = new int[TIME_COUNT];
+    _values = new String[TIME_COUNT];
+    for (int i = 0; i < TIME_COUNT; i++) {
+      _seconds[i] = random.nextInt(30 * 60 * 60);
+      _values[i] = StopTimeFieldMappingFactory.getSecondsAsString(_seconds[i]);
+    }
+  }
+
+  @Benchmark
+  public int parse() {
+    return StopTimeFieldMappingFactory.getStringAsSeconds(_values[nextTime()]);
+  }
+
+  @Benchmark
+  public int parseLegacy() {
+    return LegacyStopTimeFormat.getStringAsSeconds(_values[nextTime()]);
+  }
+
+  @Benchmark
+  public String format() {
+    return StopTimeFieldMappingFactory.getSecondsAsString(_seconds[nextTime()]);
+  }
+
+  @Benchmark
+  public String formatLegacy() {
+    return LegacyStopTimeFormat.getSecondsAsString(_seconds[nextTime()]);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private int nextTime() {
+    int next = _next;
+    _next = (next + 1) & (TIME_COUNT - 1);
+    return next;
+  }
+
+  /**
+   * The regular expression parser and {@link DecimalFormat} formatter
+   * {@link StopTimeFieldMappingFactory} used to have.
+   */
+  private static final class LegacyStopTimeFormat {
+
+    private static DecimalFormat _format = new DecimalFormat("00", new DecimalFormatSymbols(Locale.ENGLISH));
+
+    private static Pattern _pattern = Pattern.compile("^(-{0,1}\\d+):(\\d{2}):(\\d{2})$");
+
+    public static String getSecondsAsString(int t) {
+      int seconds = positiveMod(t, 60);
+      int hourAndMinutes = (t - seconds) / 60;
+      int minutes = positiveMod(hourAndMinutes, 60);
+      int hours = (hourAndMinutes - minutes) / 60;
+
+      StringBuilder b = new StringBuilder();
+      b.append(_format.format(hours));
+      b.append(":");
+      b.append(_format.format(minutes));
+      b.append(":");
+      b.append(_format.format(seconds));
+      return b.toString();
+    }
+
+    public static int getStringAsSeconds(String value) {
+      Matcher m = _pattern.matcher(value);
+      if (!m.matches())
+        throw new InvalidStopTimeException(value);
+      try {
+        int hours = Integer.parseInt(m.group(1));
+        int minutes = Integer.parseInt(m.group(2));
+        int seconds = Integer.parseInt(m.group(3));
+
+        return seconds + 60 * (minutes + 60 * hours);
+      } catch (NumberFormatException ex) {
+        throw new InvalidStopTimeException(value);
+      }
+    }
+
+    private static int positiveMod(int value, int modulo) {
+      int m = value % modulo;
+      if (m < 0) {
+        m += modulo;
+      }
+      return m;
+    }
+  }
+}
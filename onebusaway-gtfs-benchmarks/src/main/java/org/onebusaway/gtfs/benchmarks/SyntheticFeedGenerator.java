@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.onebusaway.gtfs.serialization.mappings.StopTimeFieldMappingFactory;
+
+/**
+ * Writes a synthetic GTFS feed of a given size, for benchmarking without
+ * network access or checked-in feeds.
+ *
+ * Stops lie on a square grid. Each route runs in both directions along a
+ * fixed pattern of stops. Trips run in blocks that start between 05:00 and
+ * 17:00 and can run past midnight, on a weekday, Saturday or Sunday service,
+ * each with a few holiday exceptions in calendar_dates.txt. Rows are written
+ * as they are generated, so feeds with tens of millions of stop times can be
+ * written in constant memory.
+ *
+ * Run {@link #main(String[])} to write a feed to disk once and pass it to the
+ * benchmarks with {@code -p feedPath=...}.
+ */
+public class SyntheticFeedGenerator {
+
+  private static final String[] SERVICE_IDS = {"weekday", "saturday", "sunday"};
+
+  private static final String[] SERVICE_DAYS = {
+      "1,1,1,1,1,0,0", "0,0,0,0,0,1,0", "0,0,0,0,0,0,1"};
+
+  private static final int TRIPS_PER_BLOCK = 8;
+
+  private int _stopCount = 10000;
+
+  private int _routeCount = 500;
+
+  private int _tripCount = 50000;
+
+  private int _stopsPerTrip = 40;
+
+  private String _agencyId = "1";
+
+  private String _idPrefix = "";
+
+  private long _seed = 42;
+
+  public void setStopCount(int stopCount) {
+    _stopCount = stopCount;
+  }
+
+  public void setRouteCount(int routeCount) {
+    _routeCount = routeCount;
+  }
+
+  public void setTripCount(int tripCount) {
+    _tripCount = tripCount;
+  }
+
+  /**
+   * @param stopsPerTrip the number of stop times of each trip, at most the
+   *          number of stops
+   */
+  public void setStopsPerTrip(int stopsPerTrip) {
+    _stopsPerTrip = stopsPerTrip;
+  }
+
+  public void setAgencyId(String agencyId) {
+    _agencyId = agencyId;
+  }
+
+  /**
+   * @param idPrefix prepended to every stop, route, trip, shape, block and
+   *          service id, to generate feeds whose ids do not collide
+   */
+  public void setIdPrefix(String idPrefix) {
+    _idPrefix = idPrefix;
+  }
+
+  public void setSeed(long seed) {
+    _seed = seed;
+  }
+
+  /**
+   * @return the number of stop times {@link #run(File)} writes
+   */
+  public long getStopTimeCount() {
+    return (long) _tripCount * Math.min(_stopsPerTrip, _stopCount);
+  }
+
+  public void run(File directory) throws IOException {
+    directory.mkdirs();
+    Random random = new Random(_seed);
+
+    int gridSize = (int) Math.ceil(Math.sqrt(_stopCount));
+    int stopsPerTrip = Math.min(_stopsPerTrip, _stopCount);
+    int[][] patterns = new int[_routeCount][];
+    for (int route = 0; route < _routeCount; route++)
+      patterns[route] = createPattern(random, gridSize, stopsPerTrip);
+
+    writeAgencies(directory);
+    writeStops(directory, gridSize);
+    writeRoutes(directory);
+    writeCalendars(directory);
+    writeShapes(directory, patterns, gridSize);
+    writeTripsAndStopTimes(directory, patterns, random);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 4) {
+      System.err.println("usage: SyntheticFeedGenerator outputDirectory [tripCount] [stopCount] [stopsPerTrip]");
+      System.exit(-1);
+    }
+    SyntheticFeedGenerator generator = new SyntheticFeedGenerator();
+    if (args.length > 1)
+      generator.setTripCount(Integer.parseInt(args[1]));
+    if (args.length > 2)
+      generator.setStopCount(Integer.parseInt(args[2]));
+    if (args.length > 3)
+      generator.setStopsPerTrip(Integer.parseInt(args[3]));
+    generator.run(new File(args[0]));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * A walk over the stop grid that never visits a stop twice, so each route
+   * has a plausible and distinct sequence of stops.
+   */
+  private int[] createPattern(Random random, int gridSize, int length) {
+    int[] pattern = new int[length];
+    boolean[] visited = new boolean[gridSize * gridSize];
+    int stop = random.nextInt(_stopCount);
+    for (int i = 0; i < length; i++) {
+      pattern[i] = stop;
+      visited[stop] = true;
+      if (i + 1 < length)
+        stop = nextStop(random, gridSize, visited, stop);
+    }
+    return pattern;
+  }
+
+  private int nextStop(Random random, int gridSize, boolean[] visited,
+      int stop) {
+    int x = stop % gridSize;
+    int y = stop / gridSize;
+    int direction = random.nextInt(4);
+    for (int attempt = 0; attempt < 4; attempt++) {
+      int d = (direction + attempt) % 4;
+      int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+      int ny = y + (d == 2 ? 1 : d == 3 ? -1 : 0);
+      if (nx < 0 || ny < 0 || nx >= gridSize || ny >= gridSize)
+        continue;
+      int next = ny * gridSize + nx;
+      if (next < _stopCount && !visited[next])
+        return next;
+    }
+    // Boxed in, so jump to any unvisited stop
+    int next = random.nextInt(_stopCount);
+    while (visited[next])
+      next = (next + 1) % _stopCount;
+    return next;
+  }
+
+  private void writeAgencies(File directory) throws IOException {
+    try (Writer out = openFile(directory, "agency.txt")) {
+      out.write("agency_id,agency_name,agency_url,agency_timezone\n");
+      out.write(_agencyId + ",Synthetic Transit,http://example.com,America/Los_Angeles\n");
+    }
+  }
+
+  private void writeStops(File directory, int gridSize) throws IOException {
+    try (Writer out = openFile(directory, "stops.txt")) {
+      out.write("stop_id,stop_name,stop_lat,stop_lon\n");
+      for (int stop = 0; stop < _stopCount; stop++) {
+        out.write(_idPrefix + "s" + stop + ",Stop " + stop + ","
+            + getLat(stop, gridSize) + "," + getLon(stop, gridSize) + "\n");
+      }
+    }
+  }
+
+  private void writeRoutes(File directory) throws IOException {
+    try (Writer out = openFile(directory, "routes.txt")) {
+      out.write("route_id,agency_id,route_short_name,route_long_name,route_type\n");
+      for (int route = 0; route < _routeCount; route++) {
+        out.write(_idPrefix + "r" + route + "," + _agencyId + "," + route
+            + ",Route " + route + ",3\n");
+      }
+    }
+  }
+
+  private void writeCalendars(File directory) throws IOException {
+    try (Writer out = openFile(directory, "calendar.txt")) {
+      out.write("service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date\n");
+      for (int i = 0; i < SERVICE_IDS.length; i++) {
+        out.write(_idPrefix + SERVICE_IDS[i] + "," + SERVICE_DAYS[i]
+            + ",20260101,20261231\n");
+      }
+    }
+    try (Writer out = openFile(directory, "calendar_dates.txt")) {
+      out.write("service_id,date,exception_type\n");
+      for (String date : new String[] {"20260525", "20260704", "20260907"}) {
+        out.write(_idPrefix + "weekday," + date + ",2\n");
+        out.write(_idPrefix + "sunday," + date + ",1\n");
+      }
+      out.write(_idPrefix + "weekday,20261227,1\n");
+    }
+  }
+
+  private void writeShapes(File directory, int[][] patterns, int gridSize)
+      throws IOException {
+    try (Writer out = openFile(directory, "shapes.txt")) {
+      out.write("shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence\n");
+      for (int route = 0; route < patterns.length; route++) {
+        int[] pattern = patterns[route];
+        for (int direction = 0; direction < 2; direction++) {
+          String shapeId = getShapeId(route, direction);
+          for (int i = 0; i < pattern.length; i++) {
+            int stop = pattern[direction == 0 ? i : pattern.length - 1 - i];
+            out.write(shapeId + "," + getLat(stop, gridSize) + ","
+                + getLon(stop, gridSize) + "," + i + "\n");
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Trips run in blocks of {@link #TRIPS_PER_BLOCK} back-to-back trips on one
+   * route, alternating direction, and blocks cycle over the routes and then
+   * the services.
+   */
+  private void writeTripsAndStopTimes(File directory, int[][] patterns,
+      Random random) throws IOException {
+    int firstBlockStart = 5 * 60 * 60;
+    int blockStartSpan = 12 * 60 * 60;
+    int layover = 5 * 60;
+    try (Writer trips = openFile(directory, "trips.txt");
+        Writer stopTimes = openFile(directory, "stop_times.txt")) {
+      trips.write("route_id,service_id,trip_id,trip_headsign,direction_id,block_id,shape_id\n");
+      stopTimes.write("trip_id,arrival_time,departure_time,stop_id,stop_sequence\n");
+      int time = 0;
+      for (int trip = 0; trip < _tripCount; trip++) {
+        int block = trip / TRIPS_PER_BLOCK;
+        int route = block % _routeCount;
+        int direction = trip % TRIPS_PER_BLOCK % 2;
+        String serviceId = _idPrefix
+            + SERVICE_IDS[(block / _routeCount) % SERVICE_IDS.length];
+        String tripId = _idPrefix + "t" + trip;
+        int[] pattern = patterns[route];
+        trips.write(_idPrefix + "r" + route + "," + serviceId + "," + tripId
+            + ",Route " + route + " " + (direction == 0 ? "Out" : "In") + ","
+            + direction + "," + _idPrefix + "b" + block + ","
+            + getShapeId(route, direction) + "\n");
+
+        if (trip % TRIPS_PER_BLOCK == 0)
+          time = firstBlockStart + random.nextInt(blockStartSpan);
+        else
+          time += layover;
+        for (int i = 0; i < pattern.length; i++) {
+          if (i > 0)
+            time += 60 + random.nextInt(60);
+          int stop = pattern[direction == 0 ? i : pattern.length - 1 - i];
+          String arrival = StopTimeFieldMappingFactory.getSecondsAsString(time);
+          if (random.nextInt(4) == 0)
+            time += 30;
+          String departure = StopTimeFieldMappingFactory.getSecondsAsString(time);
+          stopTimes.write(tripId + "," + arrival + "," + departure + ","
+              + _idPrefix + "s" + stop + "," + (i + 1) + "\n");
+        }
+      }
+    }
+  }
+
+  private String getShapeId(int route, int direction) {
+    return _idPrefix + "sh" + route + "_" + direction;
+  }
+
+  private static double getLat(int stop, int gridSize) {
+    return 47.5 + (stop / gridSize) * 0.002;
+  }
+
+  private static double getLon(int stop, int gridSize) {
+    return -122.5 + (stop % gridSize) * 0.003;
+  }
+
+  private static Writer openFile(File directory, String name)
+      throws IOException {
+    return new BufferedWriter(Files.newBufferedWriter(
+        new File(directory, name).toPath(), StandardCharsets.UTF_8),
+        1 << 16);
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.onebusaway.gtfs.impl.FileSupport;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.serialization.GtfsReader;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The feed shared by the pipeline benchmarks: the feed given by
+ * {@code -p feedPath=...}, or else a {@link SyntheticFeedGenerator} feed of
+ * the given size, written to a temporary directory for the trial. The
+ * defaults give 2M stop times; {@code -p tripCount=500000} gives the 20M of a
+ * large regional feed.
+ */
+@State(Scope.Benchmark)
+public class SyntheticFeedState {
+
+  /**
+   * A GTFS directory or zip file, or empty for a synthetic feed
+   */
+  @Param("")
+  public String feedPath;
+
+  @Param("10000")
+  public int stopCount;
+
+  @Param("500")
+  public int routeCount;
+
+  @Param("50000")
+  public int tripCount;
+
+  @Param("40")
+  public int stopsPerTrip;
+
+  private final FileSupport _support = new FileSupport();
+
+  private File _path;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    if (!feedPath.isEmpty()) {
+      _path = new File(feedPath);
+      return;
+    }
+    _path = createTempDirectory("SyntheticFeed-");
+    createGenerator("", 42).run(_path);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    _support.cleanup();
+  }
+
+  public File getPath() {
+    return _path;
+  }
+
+  /**
+   * @return a generator with this state's feed size
+   */
+  public SyntheticFeedGenerator createGenerator(String idPrefix, long seed) {
+    SyntheticFeedGenerator generator = new SyntheticFeedGenerator();
+    generator.setStopCount(stopCount);
+    generator.setRouteCount(routeCount);
+    generator.setTripCount(tripCount);
+    generator.setStopsPerTrip(stopsPerTrip);
+    generator.setIdPrefix(idPrefix);
+    generator.setSeed(seed);
+    return generator;
+  }
+
+  /**
+   * @return a temporary directory, deleted when the trial ends
+   */
+  public File createTempDirectory(String prefix) throws IOException {
+    File directory = File.createTempFile(prefix, "");
+    directory.delete();
+    directory.mkdirs();
+    _support.markForDeletion(directory);
+    return directory;
+  }
+
+  public GtfsRelationalDaoImpl read(boolean packed) throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(packed);
+    dao.setPackShapePoints(packed);
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(_path);
+    reader.setEntityStore(dao);
+    reader.run();
+    return dao;
+  }
+}
@@ -18,10 +18,13 @@ package org.onebusaway.gtfs_merge;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.strategies.EDuplicateDetectionStrategy;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateCandidateIndex;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringListener;
 
 /**
  * Manages state for the current merge operation, which is specific to
@@ -45,6 +48,12 @@ public class GtfsMergeContext {
 
   private EDuplicateDetectionStrategy _resolvedDuplicateDetectionStrategy;
 
+  private DuplicateCandidateIndex<?> _duplicateCandidateIndex;
+
+  private ForkJoinPool _executor;
+
+  private DuplicateScoringListener _duplicateScoringListener;
+
   public GtfsMergeContext(GtfsRelationalDao source,
       GtfsMutableRelationalDao target, String prefix,
       Map<String, Object> entityByRawId) {
@@ -145,4 +154,60 @@ public class GtfsMergeContext {
       EDuplicateDetectionStrategy resolvedDuplicateDetectionStrategy) {
     _resolvedDuplicateDetectionStrategy = resolvedDuplicateDetectionStrategy;
   }
+
+  /**
+   * @return the index of fuzzy duplicate candidates among the entities of the
+   *         current entity type in the merged output feed, or null if none has
+   *         been built yet.
+   */
+  public DuplicateCandidateIndex<?> getDuplicateCandidateIndex() {
+    return _duplicateCandidateIndex;
+  }
+
+  /**
+   * Set the index of fuzzy duplicate candidates among the entities of the
+   * current entity type in the merged output feed. It is built once for the
+   * current feed, as entities added from the current feed are never fuzzy
+   * duplicates.
+   * 
+   * @param duplicateCandidateIndex
+   */
+  public void setDuplicateCandidateIndex(
+      DuplicateCandidateIndex<?> duplicateCandidateIndex) {
+    _duplicateCandidateIndex = duplicateCandidateIndex;
+  }
+
+  /**
+   * @return the pool that fuzzy duplicate scoring is spread across, which is
+   *         the common pool unless one has been set
+   */
+  public ForkJoinPool getExecutor() {
+    if (_executor == null) {
+      return ForkJoinPool.commonPool();
+    }
+    return _executor;
+  }
+
+  /**
+   * Set the pool that fuzzy duplicate scoring is spread across. The pool is
+   * typically shared by all merge operations.
+   * 
+   * @param executor
+   */
+  public void setExecutor(ForkJoinPool executor) {
+    _executor = executor;
+  }
+
+  /**
+   * @return the listener notified of the progress of fuzzy duplicate scoring,
+   *         or null if none has been set
+   */
+  public DuplicateScoringListener getDuplicateScoringListener() {
+    return _duplicateScoringListener;
+  }
+
+  public void setDuplicateScoringListener(
+      DuplicateScoringListener duplicateScoringListener) {
+    _duplicateScoringListener = duplicateScoringListener;
+  }
 }
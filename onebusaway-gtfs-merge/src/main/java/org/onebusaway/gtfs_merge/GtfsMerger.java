@@ -17,6 +17,7 @@ package org.onebusaway.gtfs_merge;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
 import java.text.DecimalFormat;
@@ -28,11 +29,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.onebusaway.gtfs.serialization.GtfsWriter;
 import org.onebusaway.gtfs_merge.strategies.*;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,6 +79,14 @@ public class GtfsMerger {
 
   private EntityMergeStrategy _metadataStrategy = new MetadataMergeStrategy();
 
+  private ForkJoinPool _executor = ForkJoinPool.commonPool();
+
+  private DuplicateScoringListener _duplicateScoringListener = null;
+
+  private int _inputReadAhead = 2;
+
+  private boolean _buildInputIndexes = false;
+
   public void setAgencyStrategy(EntityMergeStrategy agencyStrategy) {
     _agencyStrategy = agencyStrategy;
   }
@@ -120,6 +136,56 @@ public class GtfsMerger {
 
   public void setMetadataStrategy(EntityMergeStrategy metadataStrategy) { _metadataStrategy = metadataStrategy; }
 
+  /**
+   * Set the pool that fuzzy duplicate scoring is spread across, shared by all
+   * entity types and input feeds. Defaults to the common pool.
+   * 
+   * @param executor
+   */
+  public void setExecutor(ForkJoinPool executor) {
+    _executor = executor;
+  }
+
+  /**
+   * Set how many input feeds are read ahead of the feed being merged, each on
+   * its own thread. At most this many feeds are read while a feed is being
+   * merged, so at most this many, plus the one being merged, are held in
+   * memory at once. Zero reads each feed on the calling thread only once the
+   * previous one has been merged. Defaults to 2.
+   * 
+   * @param inputReadAhead
+   */
+  public void setInputReadAhead(int inputReadAhead) {
+    if (inputReadAhead < 0) {
+      throw new IllegalArgumentException("inputReadAhead must not be negative: "
+          + inputReadAhead);
+    }
+    _inputReadAhead = inputReadAhead;
+  }
+
+  /**
+   * If true, the relations of each input feed are built as soon as it has been
+   * read, on the read-ahead thread, instead of on first use while merging.
+   * Merge strategies modify input feeds as they go, so relations built early
+   * can differ from those built on first use. Defaults to false.
+   * 
+   * @param buildInputIndexes
+   */
+  public void setBuildInputIndexes(boolean buildInputIndexes) {
+    _buildInputIndexes = buildInputIndexes;
+  }
+
+  /**
+   * Set a listener to be notified of the progress of fuzzy duplicate scoring.
+   * Progress is logged by default.
+   * 
+   * @param duplicateScoringListener
+   */
+  public void setDuplicateScoringListener(
+      DuplicateScoringListener duplicateScoringListener) {
+    _duplicateScoringListener = duplicateScoringListener;
+  }
+
   public EntityMergeStrategy getEntityMergeStrategyForEntityType(
       Class<?> entityType) {
     List<EntityMergeStrategy> strategies = new ArrayList<EntityMergeStrategy>();
@@ -164,33 +230,61 @@ public class GtfsMerger {
      * dropped.
      */
     long newestFile = Long.MIN_VALUE;
-    for (int index = inputPaths.size() - 1; index >= 0; --index) {
-      File inputPath = inputPaths.get(index);
-      String prefix = getIndexAsPrefix(index, inputPaths.size());
-
-      FileTime fileTime = null;
-      if (inputPath.isFile()) {
-        fileTime = ((FileTime) Files.readAttributes(inputPath.toPath(), "lastModifiedTime").get("lastModifiedTime"));
-        if (fileTime != null && fileTime.toMillis() > newestFile) {
-          newestFile = fileTime.toMillis();
-        }
+
+    /**
+     * Input feeds are read concurrently, up to the read-ahead limit past the
+     * feed currently being merged, while the merge itself stays serial and in
+     * order. A feed without a pending read is read on this thread.
+     */
+    ExecutorService readExecutor = Executors.newFixedThreadPool(Math.max(1,
+        _inputReadAhead));
+    try {
+      Map<Integer, Future<GtfsRelationalDaoImpl>> daosByIndex = new HashMap<Integer, Future<GtfsRelationalDaoImpl>>();
+      int nextIndexToRead = inputPaths.size() - 1;
+      for (int i = 0; i < _inputReadAhead && nextIndexToRead >= 0; i++) {
+        daosByIndex.put(nextIndexToRead,
+            submitRead(readExecutor, inputPaths.get(nextIndexToRead)));
+        nextIndexToRead--;
       }
-      _log.info("reading input: " + inputPath + " with lastModifiedTime " + fileTime);
-      GtfsReader reader = new GtfsReader();
-      reader.setInputLocation(inputPath);
-
-      GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
-      dao.setPackShapePoints(true);
-      dao.setPackStopTimes(true);
-      reader.setEntityStore(dao);
-      reader.run();
-
-      for (EntityMergeStrategy strategy : strategies) {
-        _log.info("strategy=" + strategy.getClass());
-        GtfsMergeContext context = new GtfsMergeContext(dao, mergedDao, prefix,
-            rawEntityIdMapsByMergeStrategy.get(strategy));
-        strategy.merge(context);
+
+      for (int index = inputPaths.size() - 1; index >= 0; --index) {
+        File inputPath = inputPaths.get(index);
+        String prefix = getIndexAsPrefix(index, inputPaths.size());
+
+        FileTime fileTime = null;
+        if (inputPath.isFile()) {
+          fileTime = ((FileTime) Files.readAttributes(inputPath.toPath(), "lastModifiedTime").get("lastModifiedTime"));
+          if (fileTime != null && fileTime.toMillis() > newestFile) {
+            newestFile = fileTime.toMillis();
+          }
+        }
+        Future<GtfsRelationalDaoImpl> future = daosByIndex.remove(index);
+        GtfsRelationalDaoImpl dao;
+        if (future != null) {
+          dao = getReadResult(future, inputPath);
+        } else {
+          dao = read(inputPath);
+          nextIndexToRead = index - 1;
+        }
+        _log.info("merging input: " + inputPath + " with lastModifiedTime " + fileTime);
+
+        if (_inputReadAhead > 0 && nextIndexToRead >= 0) {
+          daosByIndex.put(nextIndexToRead,
+              submitRead(readExecutor, inputPaths.get(nextIndexToRead)));
+          nextIndexToRead--;
+        }
+
+        for (EntityMergeStrategy strategy : strategies) {
+          _log.info("strategy=" + strategy.getClass());
+          GtfsMergeContext context = new GtfsMergeContext(dao, mergedDao, prefix,
+              rawEntityIdMapsByMergeStrategy.get(strategy));
+          context.setExecutor(_executor);
+          context.setDuplicateScoringListener(_duplicateScoringListener);
+          strategy.merge(context);
+        }
       }
+    } finally {
+      readExecutor.shutdownNow();
     }
 
     _log.info("writing merged output: " + outputPath);
@@ -208,6 +302,65 @@ public class GtfsMerger {
     }
   }
 
+  private Future<GtfsRelationalDaoImpl> submitRead(ExecutorService executor,
+      final File inputPath) {
+    return executor.submit(new Callable<GtfsRelationalDaoImpl>() {
+      @Override
+      public GtfsRelationalDaoImpl call() throws IOException {
+        return read(inputPath);
+      }
+    });
+  }
+
+  /**
+   * Reads a single input feed. Called from the read-ahead threads, or from the
+   * merging thread when there is no read-ahead.
+   * 
+   * @param inputPath
+   * @return the entities of the input feed
+   * @throws IOException
+   */
+  protected GtfsRelationalDaoImpl read(File inputPath) throws IOException {
+    _log.info("reading input: " + inputPath);
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(inputPath);
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackShapePoints(true);
+    dao.setPackStopTimes(true);
+    reader.setEntityStore(dao);
+    reader.run();
+
+    if (_buildInputIndexes) {
+      dao.buildIndexes(_executor);
+    }
+    return dao;
+  }
+
+  private GtfsRelationalDaoImpl getReadResult(
+      Future<GtfsRelationalDaoImpl> future, File inputPath) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted reading input: "
+          + inputPath);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("error reading input: " + inputPath,
+          cause);
+    }
+  }
+
   private String getIndexAsPrefix(int index, int total) {
     if (total <= _alphaPrefix.length()) {
       return Character.toString(_alphaPrefix.charAt(index)) + "-";
@@ -19,12 +19,11 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.onebusaway.collections.MappingLibrary;
 import org.onebusaway.collections.Max;
@@ -34,7 +33,10 @@ import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 import org.onebusaway.gtfs_merge.strategies.scoring.AndDuplicateScoringStrategy;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateCandidateIndex;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringListener;
 import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringSupport;
+import org.onebusaway.gtfs_merge.strategies.scoring.PropertyMatchCandidateIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +51,30 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends IdentityBean<?>>
     extends AbstractSingleEntityMergeStrategy<T> {
   private static Logger _log = LoggerFactory.getLogger(AbstractIdentifiableSingleEntityMergeStrategy.class);
+
+  /**
+   * Ranges of entities are only split for other workers of the pool while
+   * they hold more than this many entities to score.
+   */
+  private static final int MIN_ENTITIES_PER_TASK = 16;
+
+  /**
+   * Fuzzy duplicates are only searched for in parallel among more than this
+   * many candidates, below which scoring is cheaper than splitting.
+   */
+  private static final int MIN_CANDIDATES_PER_TASK = 256;
+
+  /**
+   * Tasks keep splitting while the worker has no more than this many tasks
+   * queued that other workers have not stolen yet.
+   */
+  private static final int MAX_SURPLUS_TASKS = 3;
+
+  /**
+   * How many target entities are scored between progress updates.
+   */
+  private static final int PROGRESS_INTERVAL = 20;
+
   /**
    * When comparing entities between two feeds to see if they are duplicates, we
    * use the specified scoring strategy to score the amount of duplication
@@ -61,6 +87,25 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     super(entityType);
   }
 
+  /**
+   * Indexes the entities fuzzy duplicate detection compares against, so that
+   * it only scores the candidates found in the index. By default, entities are
+   * bucketed by the property matches of {@link #_duplicateScoringStrategy}.
+   * Sub-classes whose scoring strategy rules out most pairs of entities in
+   * other ways can provide their own index.
+   * 
+   * @param entities
+   * @return an index of the entities, or null to score every entity
+   */
+  protected DuplicateCandidateIndex<T> createDuplicateCandidateIndex(
+      Collection<T> entities) {
+    List<String> properties = _duplicateScoringStrategy.getPropertyMatches();
+    if (properties.isEmpty()) {
+      return null;
+    }
+    return new PropertyMatchCandidateIndex<T>(properties, entities);
+  }
+
   @Override
   protected EDuplicateDetectionStrategy pickBestDuplicateDetectionStrategy(
       GtfsMergeContext context) {
@@ -160,64 +205,41 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     Collection<T> targetEntities = (Collection<T>) target.getAllEntitiesForType(_entityType);
     Collection<T> sourceEntities = (Collection<T>) source.getAllEntitiesForType(_entityType);
 
-    double duplicateElements = 0;
-    double totalScore = 0.0;
+    /**
+     * Source entities scoring below the minimum are skipped, and those left
+     * out by the index score zero, so only the candidates need to be scored.
+     */
+    DuplicateCandidateIndex<T> sourceIndex = null;
+    if (_minElementsInCommonScoreForAutoDetect > 0) {
+      sourceIndex = createDuplicateCandidateIndex(sourceEntities);
+    }
 
     /**
      * First we determine a rough set of potentially overlapping entities based
      * on a fuzzy match.
      * 
-     * We break up the list of searches and spread it across available CPUs.
+     * The search is split across the shared pool, in ranges of target entities
+     * that are split further while other workers are idle.
      */
-    int cpus = Runtime.getRuntime().availableProcessors();
-    int start = 0;
-    int end = targetEntities.size() / cpus;
-    int increment = targetEntities.size() / cpus;
-    ExecutorService executorService = Executors.newFixedThreadPool(cpus);
-    List<Result> results = new ArrayList<Result>(cpus);
-    if (end < 10) {
-      // no need to segregate is set is small
-      Set<T> remainingSourceEntities = new HashSet<T>(sourceEntities);
-      Result result = new Result();
-      results.add(result);
-      executorService.submit(new ScoringTask<T>(context, _duplicateScoringStrategy, targetEntities, remainingSourceEntities, 0, targetEntities.size(), _minElementsInCommonScoreForAutoDetect, result));
-    } else {
-      for (int i = 0; i < cpus; i++) {
-        Collection<T> t_targetEntities = (Collection<T>) target.getAllEntitiesForType(_entityType);
-        Collection<T> t_sourceEntities = (Collection<T>) source.getAllEntitiesForType(_entityType);
-        Set<T> t_remainingSourceEntities = new HashSet<T>(t_sourceEntities);
-  
-        Result result = new Result();
-        results.add(result);
-        executorService.submit(new ScoringTask<T>(context, _duplicateScoringStrategy, t_targetEntities, t_remainingSourceEntities, start, end, _minElementsInCommonScoreForAutoDetect, result));
-        start = end + 1;
-        end = end + increment;
-      }
-    }    
+    DuplicateScoringListener listener = context.getDuplicateScoringListener();
+    if (listener == null) {
+      listener = new LoggingScoringListener();
+    }
+    ScoringProgress progress = new ScoringProgress(_entityType, listener,
+        targetEntities.size());
+    OverlapScore overlapScore;
     try {
-      // give the executor a chance to run
-      Thread.sleep(1 * 1000);
-    } catch (InterruptedException e1) {
+      overlapScore = context.getExecutor().invoke(
+          new OverlapScoringTask<T>(context, _duplicateScoringStrategy,
+              new ArrayList<T>(targetEntities), sourceEntities, sourceIndex, 0,
+              targetEntities.size(), _minElementsInCommonScoreForAutoDetect,
+              progress));
+    } catch (RuntimeException ex) {
+      _log.error("error scoring fuzzy overlap for " + _entityType, ex);
       return false;
     }
-    
-    int i = 0;
-    for (Result result : results) {
-      while (!result.isDone()) {
-        try {
-          _log.info("waiting on thread[" + i + "] at " + (int)(result.getPercentComplete() * 100) + "% complete (" + _entityType + ")");
-          Thread.sleep(30 * 1000);
-        } catch (InterruptedException e) {
-          return false;
-        }
-      }
-      duplicateElements += result.getDuplicateElements();
-      totalScore += result.getTotalScore();
-      i++;
-      // we no longer remove the best match to avoid concurrency issues
-    }
-
-    executorService.shutdown();
+    double duplicateElements = overlapScore.getDuplicateElements();
+    double totalScore = overlapScore.getTotalScore();
 
     /**
      * There needs to be sufficient overlap between the two feeds for us to
@@ -253,8 +275,16 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     if (targets.isEmpty()) {
       return null;
     }
-    Max<T> best = new Max<T>();
-    for (T target : targets) {
+    Collection<T> candidates = targets;
+    if (_minElementsDuplicateScoreForAutoDetect > 0) {
+      DuplicateCandidateIndex<T> index = getDuplicateCandidateIndex(context,
+          targets);
+      if (index != null) {
+        candidates = index.getCandidates((T) entity);
+      }
+    }
+    List<T> scoredCandidates = new ArrayList<T>(candidates.size());
+    for (T target : candidates) {
       /**
        * If we just added the target entity as part of the current feed, do not
        * attempt a fuzzy match against it.
@@ -263,6 +293,20 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
       if (context.isEntityJustAddedWithRawId(targetRawId)) {
         continue;
       }
+      scoredCandidates.add(target);
+    }
+    if (scoredCandidates.size() > MIN_CANDIDATES_PER_TASK) {
+      BestCandidate best = context.getExecutor().invoke(
+          new BestCandidateTask<T>(context, _duplicateScoringStrategy,
+              (T) entity, scoredCandidates, 0, scoredCandidates.size()));
+      if (best.getIndex() < 0
+          || best.getScore() < _minElementsDuplicateScoreForAutoDetect) {
+        return null;
+      }
+      return scoredCandidates.get(best.getIndex());
+    }
+    Max<T> best = new Max<T>();
+    for (T target : scoredCandidates) {
       double score = _duplicateScoringStrategy.score(context, (T) entity,
           target);
       best.add(score, target);
@@ -273,6 +317,24 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     return (IdentityBean<?>) best.getMaxElement();
   }
 
+  /**
+   * The index of the target entities is built on first use for the current
+   * feed. Entities added from the current feed after that are left out, but
+   * they are never fuzzy duplicates anyway.
+   */
+  @SuppressWarnings("unchecked")
+  private DuplicateCandidateIndex<T> getDuplicateCandidateIndex(
+      GtfsMergeContext context, Collection<T> targets) {
+    DuplicateCandidateIndex<T> index = (DuplicateCandidateIndex<T>) context.getDuplicateCandidateIndex();
+    if (index == null) {
+      index = createDuplicateCandidateIndex(targets);
+      if (index != null) {
+        context.setDuplicateCandidateIndex(index);
+      }
+    }
+    return index;
+  }
+
   /**
    * Saves the specified entity to the merged output feed. If the raw id of the
    * entity duplicates an existing entity in the output feed, its id will be
@@ -339,105 +401,190 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
     }
   }
   
-  private static class Result {
-    private double duplicateElements = 0.0;
-    private double totalScore = 0.0;
-    private boolean done = false;
-    private double percentComplete = 0.0;
-    public Result() {
+  /**
+   * The duplicate elements found when scoring a range of target entities and
+   * the sum of their best scores.
+   */
+  private static class OverlapScore {
+
+    private final double _duplicateElements;
+
+    private final double _totalScore;
+
+    public OverlapScore(double duplicateElements, double totalScore) {
+      _duplicateElements = duplicateElements;
+      _totalScore = totalScore;
     }
+
     public double getDuplicateElements() {
-      return duplicateElements;
-    }
-    public void setDuplicateElements(double duplicateElements) {
-      this.duplicateElements = duplicateElements;
+      return _duplicateElements;
     }
+
     public double getTotalScore() {
-      return totalScore;
+      return _totalScore;
     }
-    public void setTotalScore(double totalScore) {
-      this.totalScore = totalScore;
+
+    public OverlapScore add(OverlapScore other) {
+      return new OverlapScore(_duplicateElements + other._duplicateElements,
+          _totalScore + other._totalScore);
     }
-    public void setDone() {
-      done = true;
+  }
+
+  /**
+   * The best scoring candidate in a range of candidates, or a negative index
+   * if none of them scored.
+   */
+  private static class BestCandidate {
+
+    private final double _score;
+
+    private final int _index;
+
+    public BestCandidate(double score, int index) {
+      _score = score;
+      _index = index;
     }
-    public boolean isDone() {
-      return done;
+
+    public double getScore() {
+      return _score;
     }
-    public double getPercentComplete() {
-      return percentComplete;
+
+    public int getIndex() {
+      return _index;
     }
-    public void setPercentComplete(double percentComplete) {
-      this.percentComplete = percentComplete;
+
+    /**
+     * Like {@link Max}, ties go to the earlier candidate, which must be this
+     * one.
+     */
+    public BestCandidate max(BestCandidate later) {
+      if (later._index >= 0 && (_index < 0 || later._score > _score)) {
+        return later;
+      }
+      return this;
     }
   }
-  
-  public static class ScoringTask<T> implements Runnable {
-    private GtfsMergeContext context; 
-    protected AndDuplicateScoringStrategy<T> duplicateScoringStrategy;
-    private Collection<T> targetEntities; 
-    private Collection<T> remainingSourceEntities; 
-    private int start; 
-    private int end;
-    private double min;
-    private Result result;
-
-    public Result getResult() {
-      return result;
-    }
-    
-    public ScoringTask(GtfsMergeContext context, 
-        AndDuplicateScoringStrategy<T> duplicateScoringStrategy,
-        Collection<T> targetEntities, 
-        Collection<T> remainingSourceEntities, 
-        int start, 
-        int end,
-        double min, Result result) {
-      this.context = context;
-      this.duplicateScoringStrategy = duplicateScoringStrategy;
-      this.targetEntities = targetEntities;
-      this.remainingSourceEntities = remainingSourceEntities;
-      this.start = start;
-      this.end = end;
-      this.result = result;
+
+  /**
+   * Counts the target entities scored across all tasks, passing the count on
+   * to a {@link DuplicateScoringListener}.
+   */
+  private static class ScoringProgress {
+
+    private final Class<?> _entityType;
+
+    private final DuplicateScoringListener _listener;
+
+    private final int _total;
+
+    private final AtomicInteger _scored = new AtomicInteger();
+
+    public ScoringProgress(Class<?> entityType,
+        DuplicateScoringListener listener, int total) {
+      _entityType = entityType;
+      _listener = listener;
+      _total = total;
+    }
+
+    public void addScored(int count) {
+      int scored = _scored.addAndGet(count);
+      _listener.handleScoringProgress(_entityType, scored, _total);
     }
+  }
+
+  /**
+   * Logs scoring progress every ten percent.
+   */
+  private static class LoggingScoringListener implements
+      DuplicateScoringListener {
+
+    private final AtomicInteger _loggedPercent = new AtomicInteger();
 
     @Override
-    public void run() {
-      try {
-        score(context, duplicateScoringStrategy, targetEntities, remainingSourceEntities, start, end, min, result);
-      } catch (Throwable t) {
-        _log.error("scoring thread broke:", t);
-      } finally {
-        result.setDone();
+    public void handleScoringProgress(Class<?> entityType, int entitiesScored,
+        int entitiesTotal) {
+      int percent = (int) (entitiesScored * 10L / entitiesTotal) * 10;
+      int loggedPercent = _loggedPercent.get();
+      if (percent > loggedPercent
+          && _loggedPercent.compareAndSet(loggedPercent, percent)) {
+        _log.info("scored " + entitiesScored + " of " + entitiesTotal + " ("
+            + percent + "% complete) " + entityType);
       }
     }
-    
-    private void score(GtfsMergeContext context, 
+  }
+
+  /**
+   * Scores a range of target entities against the source entities, splitting
+   * the range in half while other workers of the pool are short of tasks.
+   */
+  private static class OverlapScoringTask<T> extends
+      RecursiveTask<OverlapScore> {
+
+    private final GtfsMergeContext _context;
+
+    private final AndDuplicateScoringStrategy<T> _duplicateScoringStrategy;
+
+    private final List<T> _targetEntities;
+
+    private final Collection<T> _sourceEntities;
+
+    private final DuplicateCandidateIndex<T> _sourceIndex;
+
+    private final int _from;
+
+    private final int _to;
+
+    private final double _min;
+
+    private final ScoringProgress _progress;
+
+    /**
+     * @param sourceIndex an index of the source entities to score only the
+     *          candidates for each target entity, or null
+     * @param min the minimum score for a source entity to count as a duplicate
+     *          of a target entity
+     */
+    public OverlapScoringTask(GtfsMergeContext context,
         AndDuplicateScoringStrategy<T> duplicateScoringStrategy,
-        Collection<T> targetEntities, 
-        Collection<T> remainingSourceEntities, 
-        int start, 
-        int end,
-        double min,
-        Result result) {
+        List<T> targetEntities, Collection<T> sourceEntities,
+        DuplicateCandidateIndex<T> sourceIndex, int from, int to, double min,
+        ScoringProgress progress) {
+      _context = context;
+      _duplicateScoringStrategy = duplicateScoringStrategy;
+      _targetEntities = targetEntities;
+      _sourceEntities = sourceEntities;
+      _sourceIndex = sourceIndex;
+      _from = from;
+      _to = to;
+      _min = min;
+      _progress = progress;
+    }
+
+    @Override
+    protected OverlapScore compute() {
+      if (_to - _from > MIN_ENTITIES_PER_TASK
+          && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+        int mid = (_from + _to) >>> 1;
+        OverlapScoringTask<T> left = createSubtask(_from, mid);
+        OverlapScoringTask<T> right = createSubtask(mid, _to);
+        right.fork();
+        OverlapScore score = left.compute();
+        return score.add(right.join());
+      }
       double duplicateElements = 0;
       double totalScore = 0;
-      Iterator<T> iterator = targetEntities.iterator();
-      for (int i=0; i < start; i++) {
-        iterator.next();
-      }
-      for (int i = start; i< end; i++) {
-        if (i % 20 == 0) {
-          double percent = ((double)i-start) / (end - start);
-          result.setPercentComplete(percent);
+      int scored = 0;
+      for (int i = _from; i < _to; i++) {
+        T targetEntity = _targetEntities.get(i);
+        Collection<T> sourceEntities = _sourceEntities;
+        if (_sourceIndex != null) {
+          sourceEntities = _sourceIndex.getCandidates(targetEntity);
         }
-        T targetEntity = iterator.next();
         Max<T> best = new Max<T>();
-        for (T sourceEntity : remainingSourceEntities) {
-          double score = duplicateScoringStrategy.score(context, sourceEntity,
-              targetEntity);
-          if (score < min) {
+        for (T sourceEntity : sourceEntities) {
+          double score = _duplicateScoringStrategy.score(_context,
+              sourceEntity, targetEntity);
+          if (score < _min) {
             continue;
           }
           best.add(score, sourceEntity);
@@ -447,10 +594,78 @@ public abstract class AbstractIdentifiableSingleEntityMergeStrategy<T extends Id
           duplicateElements++;
           totalScore += best.getMaxValue();
         }
+        if (++scored == PROGRESS_INTERVAL) {
+          _progress.addScored(scored);
+          scored = 0;
+        }
+      }
+      if (scored > 0) {
+        _progress.addScored(scored);
       }
-      result.setDuplicateElements(duplicateElements);
-      result.setTotalScore(totalScore);
+      return new OverlapScore(duplicateElements, totalScore);
     }
 
+    private OverlapScoringTask<T> createSubtask(int from, int to) {
+      return new OverlapScoringTask<T>(_context, _duplicateScoringStrategy,
+          _targetEntities, _sourceEntities, _sourceIndex, from, to, _min,
+          _progress);
+    }
+  }
+
+  /**
+   * Finds the best scoring candidate for an entity in a range of candidates,
+   * splitting the range in half while other workers of the pool are short of
+   * tasks.
+   */
+  private static class BestCandidateTask<T> extends
+      RecursiveTask<BestCandidate> {
+
+    private final GtfsMergeContext _context;
+
+    private final AndDuplicateScoringStrategy<T> _duplicateScoringStrategy;
+
+    private final T _entity;
+
+    private final List<T> _candidates;
+
+    private final int _from;
+
+    private final int _to;
+
+    public BestCandidateTask(GtfsMergeContext context,
+        AndDuplicateScoringStrategy<T> duplicateScoringStrategy, T entity,
+        List<T> candidates, int from, int to) {
+      _context = context;
+      _duplicateScoringStrategy = duplicateScoringStrategy;
+      _entity = entity;
+      _candidates = candidates;
+      _from = from;
+      _to = to;
+    }
+
+    @Override
+    protected BestCandidate compute() {
+      if (_to - _from > MIN_CANDIDATES_PER_TASK
+          && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+        int mid = (_from + _to) >>> 1;
+        BestCandidateTask<T> left = new BestCandidateTask<T>(_context,
+            _duplicateScoringStrategy, _entity, _candidates, _from, mid);
+        BestCandidateTask<T> right = new BestCandidateTask<T>(_context,
+            _duplicateScoringStrategy, _entity, _candidates, mid, _to);
+        right.fork();
+        BestCandidate best = left.compute();
+        return best.max(right.join());
+      }
+      BestCandidate best = new BestCandidate(Double.NEGATIVE_INFINITY, -1);
+      for (int i = _from; i < _to; i++) {
+        double score = _duplicateScoringStrategy.score(_context, _entity,
+            _candidates.get(i));
+        if (score > best.getScore()
+            || (score == best.getScore() && best.getIndex() < 0)) {
+          best = new BestCandidate(score, i);
+        }
+      }
+      return best;
+    }
   }
 }
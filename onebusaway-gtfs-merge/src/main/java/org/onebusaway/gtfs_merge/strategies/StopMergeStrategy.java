@@ -15,12 +15,16 @@
  */
 package org.onebusaway.gtfs_merge.strategies;
 
+import java.util.Collection;
+
 import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateCandidateIndex;
+import org.onebusaway.gtfs_merge.strategies.scoring.StopDistanceCandidateIndex;
 import org.onebusaway.gtfs_merge.strategies.scoring.StopDistanceDuplicateScoringStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +45,17 @@ public class StopMergeStrategy extends
     _duplicateScoringStrategy.addStrategy(new StopDistanceDuplicateScoringStrategy());
   }
 
+  /**
+   * Stops further apart than the radius of
+   * {@link StopDistanceDuplicateScoringStrategy} score zero, so fuzzy
+   * duplicates are only looked for among the stops around each stop.
+   */
+  @Override
+  protected DuplicateCandidateIndex<Stop> createDuplicateCandidateIndex(
+      Collection<Stop> stops) {
+    return new StopDistanceCandidateIndex(stops);
+  }
+
   @Override
   protected void replaceDuplicateEntry(GtfsMergeContext context, Stop oldStop,
       Stop newStop) {
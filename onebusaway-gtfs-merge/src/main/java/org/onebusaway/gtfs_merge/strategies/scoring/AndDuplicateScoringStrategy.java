@@ -16,6 +16,7 @@
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.onebusaway.csv_entities.schema.BeanWrapper;
@@ -27,8 +28,20 @@ public class AndDuplicateScoringStrategy<T> implements
 
   private List<DuplicateScoringStrategy<T>> _strategies = new ArrayList<DuplicateScoringStrategy<T>>();
 
+  private List<String> _propertyMatches = new ArrayList<String>();
+
   public void addPropertyMatch(String property) {
     addStrategy(new PropertyMatchScoringStrategy<T>(property));
+    _propertyMatches.add(property);
+  }
+
+  /**
+   * 
+   * @return the properties that must be equal for two entities to score above
+   *         zero
+   */
+  public List<String> getPropertyMatches() {
+    return Collections.unmodifiableList(_propertyMatches);
   }
 
   public void addStrategy(DuplicateScoringStrategy<T> strategy) {
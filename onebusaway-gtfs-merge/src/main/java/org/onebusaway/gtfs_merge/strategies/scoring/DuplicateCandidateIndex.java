@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import java.util.Collection;
+
+/**
+ * An index over a collection of entities that narrows down the entities a
+ * {@link DuplicateScoringStrategy} can score above zero against a given
+ * entity, so that fuzzy duplicate detection does not have to score every pair
+ * of entities.
+ * 
+ * @param <T> the type of the indexed entities
+ */
+public interface DuplicateCandidateIndex<T> {
+
+  /**
+   * @param entity
+   * @return the indexed entities that might score above zero against the
+   *         entity, in the order of the indexed collection. Entities that are
+   *         left out must score zero.
+   */
+  public Collection<T> getCandidates(T entity);
+}
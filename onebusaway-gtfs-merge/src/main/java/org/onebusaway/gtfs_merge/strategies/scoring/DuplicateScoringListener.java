@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+/**
+ * Notified of the progress of fuzzy duplicate scoring across all the entities
+ * of a type, which can take a while for large feeds. Calls can come from any
+ * of the scoring threads.
+ */
+public interface DuplicateScoringListener {
+
+  /**
+   *
+   * @param entityType the type of the entities being scored
+   * @param entitiesScored the number of entities scored so far
+   * @param entitiesTotal the number of entities to score
+   */
+  public void handleScoringProgress(Class<?> entityType, int entitiesScored,
+      int entitiesTotal);
+}
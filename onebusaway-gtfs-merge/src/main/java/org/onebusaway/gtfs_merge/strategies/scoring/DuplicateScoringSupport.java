@@ -16,11 +16,8 @@
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
-import java.util.SortedSet;
 
 public class DuplicateScoringSupport {
 
@@ -61,47 +58,35 @@ public class DuplicateScoringSupport {
   }
   
   /**
-   * A faster implementation of {@link #scoreElementOverlap(Collection, Collection)},
-   * when the Collections are SortedSets.
+   * A faster implementation of
+   * {@link #scoreElementOverlap(Collection, Collection)} for sets of elements
+   * kept as sorted arrays of distinct ordinals, such as those built by
+   * {@link StopOrdinals}. The overlap is counted in a single pass over both
+   * arrays.
    * 
    * @param a
    * @param b
    * @return the numeric overlap score
    */
-  public static <T> double scoreElementOverlap(SortedSet<T> a, SortedSet<T> b) {
-    if (a.isEmpty() || b.isEmpty()) {
+  public static double scoreElementOverlap(int[] a, int[] b) {
+    if (a.length == 0 || b.length == 0) {
       return 0.0;
     }
-    
-    int nIntersect = calculateIntersection(a, b);
-    return ((double) nIntersect / a.size() + (double) nIntersect
-        / b.size()) / 2;
-  }
-  
-  private static <T> int calculateIntersection(SortedSet<T> aSet, SortedSet<T> bSet) {
-    Comparator<? super T> comparator = aSet.comparator();
-    
-    Iterator<T> a = aSet.iterator();
-    Iterator<T> b = bSet.iterator();
     int nIntersect = 0;
-    
-    T s = a.next(), t = b.next();
-    while (a.hasNext() && b.hasNext()) {
-      int cmp = comparator.compare(s, t);
-      if (cmp == 0 && s.equals(t)) { // s == t
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] == b[j]) {
         nIntersect++;
-        s = a.next();
-        t = b.next();
-      }
-      else if (cmp < 0) { // s < t
-        s = a.next();
-      }
-      else { // s > t
-        t = b.next();
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
       }
     }
-   
-    return nIntersect;
+    return ((double) nIntersect / a.length + (double) nIntersect / b.length) / 2;
   }
 
   public static double scoreIntervalOverlap(int[] sourceInterval,
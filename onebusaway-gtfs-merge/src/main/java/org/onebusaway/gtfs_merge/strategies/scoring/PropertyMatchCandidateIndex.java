@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+
+/**
+ * A {@link DuplicateCandidateIndex} that buckets entities by the values of the
+ * properties matched by an {@link AndDuplicateScoringStrategy}. Entities that
+ * differ in any of those properties score zero against each other, so the
+ * candidates for an entity are the entities in its bucket.
+ *
+ * @param <T> the type of the indexed entities
+ */
+public class PropertyMatchCandidateIndex<T> implements
+    DuplicateCandidateIndex<T> {
+
+  private final List<String> _properties;
+
+  private final Map<List<Object>, List<T>> _entitiesByKey = new HashMap<List<Object>, List<T>>();
+
+  public PropertyMatchCandidateIndex(List<String> properties,
+      Collection<T> entities) {
+    _properties = new ArrayList<String>(properties);
+    for (T entity : entities) {
+      List<Object> key = getKey(entity);
+      List<T> bucket = _entitiesByKey.get(key);
+      if (bucket == null) {
+        bucket = new ArrayList<T>();
+        _entitiesByKey.put(key, bucket);
+      }
+      bucket.add(entity);
+    }
+  }
+
+  @Override
+  public Collection<T> getCandidates(T entity) {
+    List<T> bucket = _entitiesByKey.get(getKey(entity));
+    if (bucket == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(bucket);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private List<Object> getKey(T entity) {
+    BeanWrapper wrapped = BeanWrapperFactory.wrap(entity);
+    List<Object> key = new ArrayList<Object>(_properties.size());
+    for (String property : _properties) {
+      key.add(wrapped.getPropertyValue(property));
+    }
+    return key;
+  }
+}
@@ -16,39 +16,55 @@
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.onebusaway.gtfs.model.Route;
-import org.onebusaway.gtfs.model.StopTime;
-import org.onebusaway.gtfs.model.StopLocation;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
+import org.onebusaway.gtfs_merge.util.CacheByEntity;
 
 public class RouteStopsInCommonDuplicateScoringStrategy implements
     DuplicateScoringStrategy<Route> {
 
+  private final StopOrdinals _stopOrdinals = new StopOrdinals();
+
+  /**
+   * The trips of a route in the merged output feed change from one feed to
+   * the next, so the stops of each route are cached for the current merge
+   * operation only.
+   */
+  private volatile GtfsMergeContext _cacheContext;
+
+  private volatile CacheByEntity<Route, int[]> _cache;
+
   @Override
   public double score(GtfsMergeContext context, Route source, Route target) {
-    Set<StopLocation> sourceStops = getAllStopsForRoute(context.getSource(), source);
-    Set<StopLocation> targetStops = getAllStopsForRoute(context.getTarget(), target);
+    CacheByEntity<Route, int[]> cache = getCache(context);
+    int[] sourceStops = cache.getItemForEntity(context.getSource(), source);
+    int[] targetStops = cache.getItemForEntity(context.getTarget(), target);
     return DuplicateScoringSupport.scoreElementOverlap(sourceStops, targetStops);
   }
 
-  private Set<StopLocation> getAllStopsForRoute(GtfsRelationalDao dao, Route route) {
-    Set<StopLocation> stops = new HashSet<>();
-    List<Trip> tripsForRoute = new ArrayList<Trip>();
+  private CacheByEntity<Route, int[]> getCache(GtfsMergeContext context) {
+    if (_cacheContext != context) {
+      synchronized (this) {
+        if (_cacheContext != context) {
+          _cache = new CacheByEntity<>(this::getAllStopsForRoute);
+          _cacheContext = context;
+        }
+      }
+    }
+    return _cache;
+  }
+
+  private int[] getAllStopsForRoute(GtfsRelationalDao dao, Route route) {
+    List<int[]> stopSets = new ArrayList<int[]>();
     // make this thread safe
-    tripsForRoute.addAll(dao.getTripsForRoute(route));
+    List<Trip> tripsForRoute = new ArrayList<Trip>(dao.getTripsForRoute(route));
     for (Trip trip : tripsForRoute) {
-      List<StopTime> stopTimesForTrip = new ArrayList<StopTime>();
-      stopTimesForTrip.addAll(dao.getStopTimesForTrip(trip));
-      for (StopTime stopTime : stopTimesForTrip) {
-        stops.add(stopTime.getStop());
-      }
+      stopSets.add(_stopOrdinals.getStopSet(dao.getStopTimesForTrip(trip)));
     }
-    return stops;
+    return StopOrdinals.union(stopSets);
   }
 }
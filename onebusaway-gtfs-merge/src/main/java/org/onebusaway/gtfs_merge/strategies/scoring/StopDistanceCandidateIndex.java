@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.model.Stop;
+
+/**
+ * A {@link DuplicateCandidateIndex} of stops in a lat/lon grid, with cells as
+ * large as the scoring radius of {@link StopDistanceDuplicateScoringStrategy},
+ * so that the stops within the radius of a stop are found in the few cells
+ * around it.
+ */
+public class StopDistanceCandidateIndex implements
+    DuplicateCandidateIndex<Stop> {
+
+  /**
+   * A little larger than the scoring radius, so that rounding never leaves out
+   * a stop that scores
+   */
+  private static final double RADIUS_IN_RADIANS = StopDistanceDuplicateScoringStrategy.MAX_DISTANCE
+      * 1.01 / StopDistanceDuplicateScoringStrategy.RADIUS_OF_EARTH_IN_METERS;
+
+  private static final double CELL_SIZE = Math.toDegrees(RADIUS_IN_RADIANS);
+
+  private static final int COLUMNS = (int) Math.floor(360 / CELL_SIZE);
+
+  /**
+   * No larger than the radius either, and dividing 360 degrees evenly so that
+   * columns line up across the antimeridian
+   */
+  private static final double COLUMN_SIZE = 360.0 / COLUMNS;
+
+  private final List<Stop> _stops;
+
+  private final Map<Long, int[]> _positionsByCell = new HashMap<Long, int[]>();
+
+  /**
+   * Stops with a latitude or longitude out of range, which are candidates for
+   * every stop
+   */
+  private final int[] _unindexedPositions;
+
+  public StopDistanceCandidateIndex(Collection<Stop> stops) {
+    _stops = new ArrayList<Stop>(stops);
+    Map<Long, List<Integer>> positionsByCell = new HashMap<Long, List<Integer>>();
+    List<Integer> unindexedPositions = new ArrayList<Integer>();
+    for (int i = 0; i < _stops.size(); i++) {
+      Stop stop = _stops.get(i);
+      if (!isLocated(stop)) {
+        // Never within the scoring radius of another stop
+        continue;
+      }
+      if (!isInRange(stop)) {
+        unindexedPositions.add(i);
+        continue;
+      }
+      long cell = getCell(getRow(stop.getLat()), getColumn(stop.getLon()));
+      List<Integer> positions = positionsByCell.get(cell);
+      if (positions == null) {
+        positions = new ArrayList<Integer>();
+        positionsByCell.put(cell, positions);
+      }
+      positions.add(i);
+    }
+    for (Map.Entry<Long, List<Integer>> entry : positionsByCell.entrySet()) {
+      _positionsByCell.put(entry.getKey(), toArray(entry.getValue()));
+    }
+    _unindexedPositions = toArray(unindexedPositions);
+  }
+
+  @Override
+  public Collection<Stop> getCandidates(Stop stop) {
+    if (!isLocated(stop)) {
+      return new ArrayList<Stop>();
+    }
+    if (!isInRange(stop)) {
+      return new ArrayList<Stop>(_stops);
+    }
+    double lat = stop.getLat();
+    double lon = stop.getLon();
+    int fromRow = getRow(lat - CELL_SIZE);
+    int toRow = getRow(lat + CELL_SIZE);
+
+    /**
+     * Points within an angular distance d of a point at latitude lat are
+     * within asin(sin(d) / cos(lat)) of its longitude, or anywhere when the
+     * circle contains a pole
+     */
+    int fromColumn = 0;
+    int columnCount = COLUMNS;
+    double maxSin = Math.sin(RADIUS_IN_RADIANS)
+        / Math.cos(Math.toRadians(lat));
+    if (maxSin >= 0 && maxSin < 1) {
+      double width = Math.toDegrees(Math.asin(maxSin));
+      fromColumn = getColumn(lon - width);
+      columnCount = Math.min(COLUMNS,
+          (int) Math.floor((lon + width + 180) / COLUMN_SIZE)
+              - (int) Math.floor((lon - width + 180) / COLUMN_SIZE) + 1);
+    }
+
+    int[] positions = Arrays.copyOf(_unindexedPositions,
+        Math.max(16, _unindexedPositions.length));
+    int size = _unindexedPositions.length;
+    for (int row = fromRow; row <= toRow; row++) {
+      for (int i = 0; i < columnCount; i++) {
+        int[] cellPositions = _positionsByCell.get(getCell(row,
+            (fromColumn + i) % COLUMNS));
+        if (cellPositions == null) {
+          continue;
+        }
+        if (size + cellPositions.length > positions.length) {
+          positions = Arrays.copyOf(positions, Math.max(positions.length * 2,
+              size + cellPositions.length));
+        }
+        System.arraycopy(cellPositions, 0, positions, size,
+            cellPositions.length);
+        size += cellPositions.length;
+      }
+    }
+
+    // Keep the order of the indexed stops
+    Arrays.sort(positions, 0, size);
+    List<Stop> candidates = new ArrayList<Stop>(size);
+    for (int i = 0; i < size; i++) {
+      candidates.add(_stops.get(positions[i]));
+    }
+    return candidates;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static boolean isLocated(Stop stop) {
+    return !Double.isNaN(stop.getLat()) && !Double.isNaN(stop.getLon())
+        && !Double.isInfinite(stop.getLat())
+        && !Double.isInfinite(stop.getLon());
+  }
+
+  private static boolean isInRange(Stop stop) {
+    return -90 <= stop.getLat() && stop.getLat() <= 90
+        && -360 <= stop.getLon() && stop.getLon() <= 360;
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+    return array;
+  }
+
+  private static int getRow(double lat) {
+    return (int) Math.floor((lat + 90) / CELL_SIZE);
+  }
+
+  private static int getColumn(double lon) {
+    return Math.floorMod((int) Math.floor((lon + 180) / COLUMN_SIZE), COLUMNS);
+  }
+
+  private static long getCell(int row, int column) {
+    return (long) row * COLUMNS + column;
+  }
+}
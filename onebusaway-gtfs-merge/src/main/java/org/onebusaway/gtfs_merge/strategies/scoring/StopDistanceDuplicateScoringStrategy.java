@@ -27,6 +27,13 @@ import org.onebusaway.gtfs_merge.GtfsMergeContext;
 public class StopDistanceDuplicateScoringStrategy implements
     DuplicateScoringStrategy<Stop> {
 
+  /**
+   * Stops this far apart, in meters, or further score zero
+   */
+  public static final double MAX_DISTANCE = 500;
+
+  public static final double RADIUS_OF_EARTH_IN_METERS = 6371.01 * 1000.0;
+
   @Override
   public double score(GtfsMergeContext context, Stop source, Stop target) {
     double distance = distance(source.getLat(), source.getLon(),
@@ -35,7 +42,7 @@ public class StopDistanceDuplicateScoringStrategy implements
       return 1.0;
     } else if (distance < 100) {
       return 0.75;
-    } else if (distance < 500) {
+    } else if (distance < MAX_DISTANCE) {
       return 0.5;
     } else {
       return 0.0;
@@ -46,7 +53,7 @@ public class StopDistanceDuplicateScoringStrategy implements
       double lon2) {
 
     // Radius of earth in meters
-    double radius = 6371.01 * 1000.0;
+    double radius = RADIUS_OF_EARTH_IN_METERS;
 
     // http://en.wikipedia.org/wiki/Great-circle_distance
     lat1 = toRadians(lat1); // Theta-s
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+
+/**
+ * Numbers stops in the order they are first seen, so that a set of stops can
+ * be kept as a sorted array of distinct ordinals and compared with
+ * {@link DuplicateScoringSupport#scoreElementOverlap(int[], int[])}. Equal
+ * stops from the source and target feeds get the same ordinal. Safe for use
+ * from multiple scoring threads.
+ */
+public class StopOrdinals {
+
+  private final ConcurrentMap<StopLocation, Integer> _ordinalsByStop = new ConcurrentHashMap<StopLocation, Integer>();
+
+  private final AtomicInteger _nextOrdinal = new AtomicInteger();
+
+  public int getOrdinal(StopLocation stop) {
+    Integer ordinal = _ordinalsByStop.get(stop);
+    if (ordinal == null) {
+      ordinal = _ordinalsByStop.computeIfAbsent(stop,
+          s -> _nextOrdinal.getAndIncrement());
+    }
+    return ordinal;
+  }
+
+  /**
+   * @param stopTimes
+   * @return the ordinals of the stops of the stop times, sorted and without
+   *         duplicates
+   */
+  public int[] getStopSet(Iterable<StopTime> stopTimes) {
+    int[] ordinals = new int[16];
+    int size = 0;
+    for (StopTime stopTime : stopTimes) {
+      if (size == ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, size * 2);
+      }
+      ordinals[size++] = getOrdinal(stopTime.getStop());
+    }
+    return toStopSet(ordinals, size);
+  }
+
+  /**
+   * @param stopSets
+   * @return the union of the stop sets, sorted and without duplicates
+   */
+  public static int[] union(Iterable<int[]> stopSets) {
+    int[] ordinals = new int[16];
+    int size = 0;
+    for (int[] stopSet : stopSets) {
+      if (size + stopSet.length > ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, Math.max(ordinals.length * 2, size
+            + stopSet.length));
+      }
+      System.arraycopy(stopSet, 0, ordinals, size, stopSet.length);
+      size += stopSet.length;
+    }
+    return toStopSet(ordinals, size);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int[] toStopSet(int[] ordinals, int size) {
+    Arrays.sort(ordinals, 0, size);
+    int distinct = 0;
+    for (int i = 0; i < size; i++) {
+      if (distinct == 0 || ordinals[i] != ordinals[distinct - 1]) {
+        ordinals[distinct++] = ordinals[i];
+      }
+    }
+    return Arrays.copyOf(ordinals, distinct);
+  }
+}
@@ -15,44 +15,28 @@
  */
 package org.onebusaway.gtfs_merge.strategies.scoring;
 
-import java.util.Comparator;
-import java.util.SortedSet;
-import java.util.TreeSet;
-
-import org.onebusaway.gtfs.model.StopTime;
-import org.onebusaway.gtfs.model.StopLocation;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
 import org.onebusaway.gtfs_merge.util.CacheByEntity;
-import org.onebusaway.gtfs_merge.util.CacheByEntity.CacheGetter;
 
 public class TripStopsInCommonDuplicateScoringStrategy
     implements DuplicateScoringStrategy<Trip> {
 
-  private CacheByEntity<Trip, SortedSet<StopLocation>> _cache = new CacheByEntity<>(getStops);
+  private final StopOrdinals _stopOrdinals = new StopOrdinals();
+
+  private final CacheByEntity<Trip, int[]> _cache = new CacheByEntity<>(
+      (dao, trip) -> _stopOrdinals.getStopSet(dao.getStopTimesForTrip(trip)));
 
   @Override
   public double score(GtfsMergeContext context, Trip source, Trip target) {
-    SortedSet<StopLocation> sourceStops = getStopsForTrip(context.getSource(), source);
-    SortedSet<StopLocation> targetStops = getStopsForTrip(context.getTarget(), target);
+    int[] sourceStops = getStopsForTrip(context.getSource(), source);
+    int[] targetStops = getStopsForTrip(context.getTarget(), target);
     return DuplicateScoringSupport.scoreElementOverlap(sourceStops,
         targetStops);
   }
 
-  private SortedSet<StopLocation> getStopsForTrip(GtfsRelationalDao dao, Trip trip) {
+  private int[] getStopsForTrip(GtfsRelationalDao dao, Trip trip) {
     return _cache.getItemForEntity(dao, trip);
   }
-
-  // It's sufficient that they're sorted in SOME way
-  private static final Comparator<StopLocation> stopComparator = Comparator.comparingInt(Object::hashCode);
-
-  private static CacheGetter<Trip, SortedSet<StopLocation>> getStops = (dao, trip) -> {
-    SortedSet<StopLocation> stops = new TreeSet<>(stopComparator);
-
-    for (StopTime stopTime : dao.getStopTimesForTrip(trip)) {
-      stops.add(stopTime.getStop());
-    }
-    return stops;
-  };
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -95,6 +96,74 @@ public class GtfsMergerTest {
     assertEquals(2, dao.getAllTrips().size());
   }
   
+  @Test
+  public void testInputReadAhead() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _oldGtfs.putRoutes(1);
+    _oldGtfs.putStops(3);
+    _oldGtfs.putCalendars(1, "mask=1111100", "start_date=20120504",
+        "end_date=20120608");
+    _oldGtfs.putTrips(1, "r0", "sid0");
+    _oldGtfs.putStopTimes("t0", "s0,s1,s2");
+
+    _newGtfs.putAgencies(1);
+    _newGtfs.putRoutes(1);
+    _newGtfs.putStops(3);
+    _newGtfs.putCalendars(1, "mask=1111100", "start_date=20120601",
+        "end_date=20120630");
+    _newGtfs.putTrips(1, "r0", "sid0");
+    _newGtfs.putStopTimes("t0", "s0,s1");
+
+    _pugetGtfs = MockGtfs.create();
+    _pugetGtfs.putAgencies(1);
+    _pugetGtfs.putRoutes(1);
+    _pugetGtfs.putStops(4);
+    _pugetGtfs.putCalendars(1, "mask=1111100", "start_date=20120701",
+        "end_date=20120731");
+    _pugetGtfs.putTrips(1, "r0", "sid0");
+    _pugetGtfs.putStopTimes("t0", "s0,s3");
+
+    _merger.setInputReadAhead(0);
+    GtfsRelationalDao serialDao = merge();
+
+    _merger = new GtfsMerger();
+    _merger.setInputReadAhead(5);
+    _merger.setBuildInputIndexes(true);
+    GtfsRelationalDao dao = merge();
+
+    assertEquals(serialDao.getAllAgencies().size(), dao.getAllAgencies().size());
+    assertEquals(serialDao.getAllRoutes().size(), dao.getAllRoutes().size());
+    assertEquals(serialDao.getAllStops().size(), dao.getAllStops().size());
+    assertEquals(serialDao.getAllTrips().size(), dao.getAllTrips().size());
+    assertEquals(serialDao.getAllStopTimes().size(),
+        dao.getAllStopTimes().size());
+    assertEquals(3, dao.getAllTrips().size());
+  }
+
+  @Test
+  public void testInputReadAheadLimit() throws IOException {
+    _oldGtfs.putAgencies(1);
+    _newGtfs.putAgencies(1);
+    _pugetGtfs = MockGtfs.create();
+    _pugetGtfs.putAgencies(1);
+
+    ReadCountingGtfsMerger merger = new ReadCountingGtfsMerger();
+    merger.setInputReadAhead(0);
+    _merger = merger;
+    merge();
+    assertEquals(3, merger.reads.get());
+    assertEquals(1, merger.maxConcurrentReads.get());
+    assertEquals(0, merger.readsOffCallingThread.get());
+
+    merger = new ReadCountingGtfsMerger();
+    merger.setInputReadAhead(1);
+    _merger = merger;
+    merge();
+    assertEquals(3, merger.reads.get());
+    assertEquals(1, merger.maxConcurrentReads.get());
+    assertEquals(3, merger.readsOffCallingThread.get());
+  }
+
   /**
    * Test that when renaming trips stop times are preserved (issue 14)
    */
@@ -476,4 +545,36 @@ public class GtfsMergerTest {
     reader.run();
     return dao;
   }
+
+  private static class ReadCountingGtfsMerger extends GtfsMerger {
+
+    private final Thread callingThread = Thread.currentThread();
+
+    private final AtomicInteger concurrentReads = new AtomicInteger();
+
+    final AtomicInteger reads = new AtomicInteger();
+
+    final AtomicInteger maxConcurrentReads = new AtomicInteger();
+
+    final AtomicInteger readsOffCallingThread = new AtomicInteger();
+
+    @Override
+    protected GtfsRelationalDaoImpl read(File inputPath) throws IOException {
+      reads.incrementAndGet();
+      if (Thread.currentThread() != callingThread) {
+        readsOffCallingThread.incrementAndGet();
+      }
+      maxConcurrentReads.accumulateAndGet(concurrentReads.incrementAndGet(),
+          Math::max);
+      try {
+        // Give any other reads that were submitted a chance to overlap
+        Thread.sleep(50);
+        return super.read(inputPath);
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      } finally {
+        concurrentReads.decrementAndGet();
+      }
+    }
+  }
 }
@@ -16,9 +16,12 @@
 package org.onebusaway.gtfs_merge.strategies;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +36,8 @@ import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs_merge.GtfsMergeContext;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringListener;
+import org.onebusaway.gtfs_merge.strategies.scoring.DuplicateScoringStrategy;
 
 public class AgencyMergeStrategyTest extends EntityMergeTestSupport {
 
@@ -122,6 +127,101 @@ public class AgencyMergeStrategyTest extends EntityMergeTestSupport {
     assertSame(agencyB, _target.getAgencyForId("b-1"));
   }
 
+  @Test
+  public void testFuzzyMatchInPool() {
+
+    GtfsRelationalDaoImpl sourceA = new GtfsRelationalDaoImpl();
+    GtfsRelationalDaoImpl sourceB = new GtfsRelationalDaoImpl();
+    for (int i = 0; i < 300; i++) {
+      Agency agencyA = new Agency();
+      agencyA.setId("a" + i);
+      agencyA.setName("Metro " + i);
+      agencyA.setUrl("http://metro.gov/" + i);
+      sourceA.saveEntity(agencyA);
+
+      Agency agencyB = new Agency();
+      agencyB.setId("b" + i);
+      agencyB.setName("Metro " + i);
+      agencyB.setUrl("http://metro.gov/" + i);
+      sourceB.saveEntity(agencyB);
+    }
+
+    final AtomicInteger entitiesScored = new AtomicInteger();
+    ForkJoinPool executor = new ForkJoinPool(4);
+    try {
+      _strategy.merge(context(sourceA, _target, "a-"));
+
+      GtfsMergeContext contextB = context(sourceB, _target, "b-");
+      contextB.setExecutor(executor);
+      contextB.setDuplicateScoringListener(new DuplicateScoringListener() {
+        @Override
+        public void handleScoringProgress(Class<?> entityType,
+            int scored, int total) {
+          assertEquals(Agency.class, entityType);
+          assertEquals(300, total);
+          entitiesScored.accumulateAndGet(scored, Math::max);
+        }
+      });
+      _strategy.merge(contextB);
+      assertEquals(EDuplicateDetectionStrategy.FUZZY,
+          contextB.getResolvedDuplicateDetectionStrategy());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(300, entitiesScored.get());
+    assertEquals(300, _target.getAllAgencies().size());
+    assertNull(_target.getAgencyForId("b0"));
+  }
+
+  @Test
+  public void testNoFuzzyMatchInPool() {
+
+    /**
+     * Only a third of the agencies match well, the rest score below the minimum
+     * and must not count towards the overlap between the feeds.
+     */
+    _strategy._duplicateScoringStrategy.addStrategy(new DuplicateScoringStrategy<Agency>() {
+      @Override
+      public double score(GtfsMergeContext context, Agency source,
+          Agency target) {
+        return source.getPhone().equals(target.getPhone()) ? 1.0 : 0.4;
+      }
+    });
+
+    GtfsRelationalDaoImpl sourceA = new GtfsRelationalDaoImpl();
+    GtfsRelationalDaoImpl sourceB = new GtfsRelationalDaoImpl();
+    for (int i = 0; i < 300; i++) {
+      Agency agencyA = new Agency();
+      agencyA.setId("a" + i);
+      agencyA.setName("Metro " + i);
+      agencyA.setUrl("http://metro.gov/" + i);
+      agencyA.setPhone("555-" + i);
+      sourceA.saveEntity(agencyA);
+
+      Agency agencyB = new Agency();
+      agencyB.setId("b" + i);
+      agencyB.setName("Metro " + i);
+      agencyB.setUrl("http://metro.gov/" + i);
+      agencyB.setPhone(i % 3 == 0 ? "555-" + i : "556-" + i);
+      sourceB.saveEntity(agencyB);
+    }
+
+    ForkJoinPool executor = new ForkJoinPool(4);
+    try {
+      _strategy.merge(context(sourceA, _target, "a-"));
+
+      GtfsMergeContext contextB = context(sourceB, _target, "b-");
+      contextB.setExecutor(executor);
+      _strategy.merge(contextB);
+      assertEquals(EDuplicateDetectionStrategy.NONE,
+          contextB.getResolvedDuplicateDetectionStrategy());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(600, _target.getAllAgencies().size());
+    assertSame(sourceB.getAgencyForId("b0"), _target.getAgencyForId("b0"));
+  }
+
   @Test
   public void testRenameAllAgencyIdReferences() {
 
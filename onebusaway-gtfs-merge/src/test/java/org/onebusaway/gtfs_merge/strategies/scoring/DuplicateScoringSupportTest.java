@@ -17,10 +17,14 @@ package org.onebusaway.gtfs_merge.strategies.scoring;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
 
 public class DuplicateScoringSupportTest {
 
@@ -47,6 +51,39 @@ public class DuplicateScoringSupportTest {
     assertEquals(0.0, DuplicateScoringSupport.scoreElementOverlap(a, b), 0.0);
   }
 
+  @Test
+  public void testScoreElementOverlapOfOrdinals() {
+    assertEquals(0.0, DuplicateScoringSupport.scoreElementOverlap(new int[0],
+        new int[] {1}), 0.0);
+    assertEquals(1.0, DuplicateScoringSupport.scoreElementOverlap(
+        new int[] {1}, new int[] {1}), 0.0);
+    assertEquals(0.75, DuplicateScoringSupport.scoreElementOverlap(new int[] {
+        1, 2}, new int[] {1}), 0.0);
+    assertEquals(0.5, DuplicateScoringSupport.scoreElementOverlap(new int[] {
+        1, 2}, new int[] {1, 3}), 0.0);
+    assertEquals(0.0, DuplicateScoringSupport.scoreElementOverlap(
+        new int[] {2}, new int[] {1, 3}), 0.0);
+  }
+
+  @Test
+  public void testStopOrdinals() {
+    StopOrdinals ordinals = new StopOrdinals();
+    Stop stopA = stop("a");
+    Stop stopB = stop("b");
+    Stop stopC = stop("c");
+    int[] stops = ordinals.getStopSet(Arrays.asList(stopTime(stopC),
+        stopTime(stopA), stopTime(stopC), stopTime(stop("a"))));
+    assertEquals(2, stops.length);
+    assertEquals(ordinals.getOrdinal(stopA), stops[1]);
+    assertEquals(ordinals.getOrdinal(stopC), stops[0]);
+
+    int[] otherStops = ordinals.getStopSet(Arrays.asList(stopTime(stopB),
+        stopTime(stopC)));
+    assertEquals(0.5, DuplicateScoringSupport.scoreElementOverlap(stops,
+        otherStops), 0.0);
+    assertEquals(3, StopOrdinals.union(Arrays.asList(stops, otherStops)).length);
+  }
+
   @Test
   public void testScoreIntervalOverlap() {
     assertEquals(1.0, DuplicateScoringSupport.scoreIntervalOverlap(new int[] {
@@ -60,4 +97,16 @@ public class DuplicateScoringSupportTest {
     assertEquals(0.0, DuplicateScoringSupport.scoreIntervalOverlap(new int[] {
         0, 5}, new int[] {5, 10}), 0.0);
   }
+
+  private Stop stop(String id) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("1", id));
+    return stop;
+  }
+
+  private StopTime stopTime(Stop stop) {
+    StopTime stopTime = new StopTime();
+    stopTime.setStop(stop);
+    return stopTime;
+  }
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Trip;
+
+public class PropertyMatchCandidateIndexTest {
+
+  @Test
+  public void testCandidates() {
+    Route routeA = route("A");
+    Route routeB = route("B");
+    List<Trip> trips = new ArrayList<Trip>();
+    trips.add(trip("t0", routeA, "weekday"));
+    trips.add(trip("t1", routeB, "weekday"));
+    trips.add(trip("t2", routeA, "weekend"));
+    trips.add(trip("t3", routeA, "weekday"));
+    trips.add(trip("t4", routeA, null));
+
+    AndDuplicateScoringStrategy<Trip> scoring = new AndDuplicateScoringStrategy<Trip>();
+    scoring.addPropertyMatch("route");
+    scoring.addPropertyMatch("serviceId");
+    PropertyMatchCandidateIndex<Trip> index = new PropertyMatchCandidateIndex<Trip>(
+        scoring.getPropertyMatches(), trips);
+
+    // An equal route from the other feed
+    Trip trip = trip("t5", route("A"), "weekday");
+    assertEquals(Arrays.asList(trips.get(0), trips.get(3)),
+        index.getCandidates(trip));
+
+    for (Trip source : trips) {
+      List<Trip> expected = new ArrayList<Trip>();
+      for (Trip target : trips) {
+        if (scoring.score(null, source, target) > 0) {
+          expected.add(target);
+        }
+      }
+      assertEquals(expected, index.getCandidates(source));
+    }
+
+    assertTrue(index.getCandidates(trip("t6", routeB, "weekend")).isEmpty());
+  }
+
+  private Route route(String id) {
+    Route route = new Route();
+    route.setId(new AgencyAndId("1", id));
+    return route;
+  }
+
+  private Trip trip(String id, Route route, String serviceId) {
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("1", id));
+    trip.setRoute(route);
+    if (serviceId != null) {
+      trip.setServiceId(new AgencyAndId("1", serviceId));
+    }
+    return trip;
+  }
+}
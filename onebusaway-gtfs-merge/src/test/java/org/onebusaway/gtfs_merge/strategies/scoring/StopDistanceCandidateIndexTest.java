@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_merge.strategies.scoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+
+public class StopDistanceCandidateIndexTest {
+
+  private StopDistanceDuplicateScoringStrategy _scoring = new StopDistanceDuplicateScoringStrategy();
+
+  @Test
+  public void testCandidates() {
+    Random random = new Random(42);
+    List<Stop> stops = new ArrayList<Stop>();
+    // Around Seattle, across the date line and around the north pole
+    double[][] centers = { {47.6, -122.3}, {-16.8, 179.99}, {89.95, 0.0}};
+    for (double[] center : centers) {
+      for (int i = 0; i < 300; i++) {
+        stops.add(stop(stops.size(), center[0] + random.nextGaussian() * 0.01,
+            normalizeLon(center[1] + random.nextGaussian() * 0.01)));
+      }
+    }
+    StopDistanceCandidateIndex index = new StopDistanceCandidateIndex(stops);
+    for (Stop stop : stops) {
+      List<Stop> expected = new ArrayList<Stop>();
+      for (Stop other : stops) {
+        if (_scoring.score(null, stop, other) > 0) {
+          expected.add(other);
+        }
+      }
+      Collection<Stop> candidates = index.getCandidates(stop);
+      assertTrue(candidates.size() < stops.size() / 2);
+      List<Stop> scored = new ArrayList<Stop>();
+      for (Stop candidate : candidates) {
+        if (_scoring.score(null, stop, candidate) > 0) {
+          scored.add(candidate);
+        }
+      }
+      assertEquals(expected, scored);
+    }
+  }
+
+  @Test
+  public void testOutOfRange() {
+    List<Stop> stops = new ArrayList<Stop>();
+    stops.add(stop(0, 47.6, -122.3));
+    stops.add(stop(1, 122.3, 47.6));
+    stops.add(stop(2, Double.NaN, -122.3));
+    StopDistanceCandidateIndex index = new StopDistanceCandidateIndex(stops);
+    assertEquals(stops.subList(0, 2), index.getCandidates(stops.get(0)));
+    assertEquals(stops, index.getCandidates(stops.get(1)));
+    assertTrue(index.getCandidates(stops.get(2)).isEmpty());
+  }
+
+  private Stop stop(int id, double lat, double lon) {
+    Stop stop = new Stop();
+    stop.setId(new AgencyAndId("1", Integer.toString(id)));
+    stop.setLat(lat);
+    stop.setLon(lon);
+    return stop;
+  }
+
+  private double normalizeLon(double lon) {
+    return lon > 180 ? lon - 360 : lon;
+  }
+}
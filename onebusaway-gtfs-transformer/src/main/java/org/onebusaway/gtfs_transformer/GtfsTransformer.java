@@ -252,6 +252,8 @@ public class GtfsTransformer {
       } catch (Throwable t) {
         _log.error("Exception in strategy (v1) " + strategyName, t);
         throw new RuntimeException(t);
+      } finally {
+        _context.endStrategy();
       }
       _log.info("Strategy {} complete.", strategyName);
     }
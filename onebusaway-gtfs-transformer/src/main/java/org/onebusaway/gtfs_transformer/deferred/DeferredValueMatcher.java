@@ -15,6 +15,8 @@
  */
 package org.onebusaway.gtfs_transformer.deferred;
 
+import java.util.regex.Pattern;
+
 import org.apache.commons.beanutils.Converter;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.IdentityBean;
@@ -27,14 +29,32 @@ public class DeferredValueMatcher implements ValueMatcher {
 
   private final Object _value;
 
+  /**
+   * Compiled once if the value is a "m/.../" regex, null otherwise
+   */
+  private final Pattern _pattern;
+
   private Object _resolvedValue = null;
 
   private boolean _resolvedValueSet = false;
 
+  /**
+   * The comparison for the type of the last matched value, which is usually
+   * the same from one entity to the next
+   */
+  private Class<?> _comparisonValueType = null;
+
+  private Comparison _comparison = null;
+
   public DeferredValueMatcher(GtfsReader reader, EntitySchemaCache schemaCache,
       Object value) {
     _support = new DeferredValueSupport(reader, schemaCache);
     _value = value;
+    if (value instanceof String && isRegex((String) value)) {
+      _pattern = Pattern.compile(getRegexFromPattern((String) value));
+    } else {
+      _pattern = null;
+    }
   }
 
   public boolean matches(Class<?> parentEntityType, String propertyName,
@@ -48,22 +68,23 @@ public class DeferredValueMatcher implements ValueMatcher {
       return value.equals(_resolvedValue);
     }
     Class<?> expectedValueType = value.getClass();
-    Class<?> actualValueType = _value.getClass();
-    if (expectedValueType.isAssignableFrom(actualValueType)) {
-      if (isRegexObj(_value)) {
-        return regexMatch((String)value, ((String)_value));
-      }
-      return value.equals(_value);
+    if (expectedValueType != _comparisonValueType) {
+      _comparison = getComparison(expectedValueType);
+      _comparisonValueType = expectedValueType;
     }
-    if (actualValueType == String.class) {
-      String actualValue = (String) _value;
-      if (expectedValueType == AgencyAndId.class) {
+    switch (_comparison) {
+      case EQUALS:
+        return value.equals(_value);
+      case REGEX:
+        return regexMatch((String) value);
+      case ID: {
         AgencyAndId expectedId = (AgencyAndId) value;
-        if (isRegexObj(_value)) {
-          return regexMatch(expectedId.getId(), actualValue);
+        if (_pattern != null) {
+          return regexMatch(expectedId.getId());
         }
-        return expectedId.getId().equals(actualValue);
-      } else if (IdentityBean.class.isAssignableFrom(expectedValueType)) {
+        return expectedId.getId().equals(_value);
+      }
+      case BEAN_ID: {
         IdentityBean<?> bean = (IdentityBean<?>) value;
         Object expectedId = bean.getId();
         if (expectedId == null) {
@@ -71,11 +92,13 @@ public class DeferredValueMatcher implements ValueMatcher {
         }
         if (expectedId instanceof AgencyAndId) {
           AgencyAndId expectedFullId = (AgencyAndId) expectedId;
-          return expectedFullId.getId().equals(actualValue);
+          return expectedFullId.getId().equals(_value);
         } else if (expectedId instanceof String) {
-          return expectedId.equals(actualValue);
+          return expectedId.equals(_value);
         }
-      } else {
+        break;
+      }
+      case CONVERTED: {
         Converter converter = _support.resolveConverter(parentEntityType,
             propertyName, expectedValueType);
         if (converter != null) {
@@ -88,28 +111,82 @@ public class DeferredValueMatcher implements ValueMatcher {
                   + expectedValueType.getName() + "\" for value comparison");
         }
       }
+      default:
+        break;
     }
     throw new IllegalStateException("no type conversion from type \""
-        + actualValueType.getName() + "\" to type \""
+        + _value.getClass().getName() + "\" to type \""
         + expectedValueType.getName() + "\" for value comparison");
   }
 
-  private Boolean isRegexObj = null;
-  private boolean isRegexObj(Object value) {
-    if (isRegexObj == null) {
-      isRegexObj = (_value instanceof String && isRegex((String) _value));
+  /**
+   * @return the value if it is a string that is matched by equality, or null
+   *         if it is not a string or is a regex
+   */
+  public String getLiteralStringValue() {
+    if (!(_value instanceof String) || _pattern != null) {
+      return null;
+    }
+    return (String) _value;
+  }
+
+  /**
+   * @param value a non-null property value
+   * @return the string that a literal string value, see
+   *         {@link #getLiteralStringValue()}, has to equal to match the
+   *         property value, or null if the property value is not compared as a
+   *         string
+   */
+  public static String getStringValueForComparison(Object value) {
+    if (value instanceof String) {
+      return (String) value;
+    } else if (value.getClass() == AgencyAndId.class) {
+      return ((AgencyAndId) value).getId();
+    } else if (value instanceof IdentityBean) {
+      Object id = ((IdentityBean<?>) value).getId();
+      if (id instanceof AgencyAndId) {
+        return ((AgencyAndId) id).getId();
+      } else if (id instanceof String) {
+        return (String) id;
+      }
     }
-    return isRegexObj;
+    return null;
   }
-  private boolean isRegex(String pattern) {
+
+  /****
+   * Private Methods
+   ****/
+
+  private Comparison getComparison(Class<?> expectedValueType) {
+    Class<?> actualValueType = _value.getClass();
+    if (expectedValueType.isAssignableFrom(actualValueType)) {
+      return _pattern != null ? Comparison.REGEX : Comparison.EQUALS;
+    }
+    if (actualValueType == String.class) {
+      if (expectedValueType == AgencyAndId.class) {
+        return Comparison.ID;
+      } else if (IdentityBean.class.isAssignableFrom(expectedValueType)) {
+        return Comparison.BEAN_ID;
+      } else {
+        return Comparison.CONVERTED;
+      }
+    }
+    return Comparison.NONE;
+  }
+
+  private static boolean isRegex(String pattern) {
     return pattern.startsWith("m/") && pattern.endsWith("/");
   }
-  private String getRegexFromPattern(String pattern) {
+
+  private static String getRegexFromPattern(String pattern) {
     return pattern.substring(2, pattern.length()-1);
   }
-  private boolean regexMatch(String value, String pattern) {
-    String regexPattern = getRegexFromPattern(pattern);
-    boolean rc = value.matches(regexPattern);
-    return rc;
+
+  private boolean regexMatch(String value) {
+    return _pattern.matcher(value).matches();
+  }
+
+  private enum Comparison {
+    EQUALS, REGEX, ID, BEAN_ID, CONVERTED, NONE
   }
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.deferred;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.onebusaway.collections.beans.PropertyMethod;
+
+/**
+ * The getter and setter of a bean property, compiled once per bean type into
+ * direct calls with {@link LambdaMetafactory}, instead of being looked up and
+ * invoked reflectively for every bean. Falls back to reflection for methods
+ * that can't be compiled.
+ */
+public final class PropertyAccessor implements PropertyMethod {
+
+  private static final ClassValue<Map<String, PropertyAccessor>> _accessorsByType = new ClassValue<Map<String, PropertyAccessor>>() {
+    @Override
+    protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+      return createAccessors(type);
+    }
+  };
+
+  private final String _propertyName;
+
+  private final Class<?> _propertyType;
+
+  private final Function<Object, Object> _getter;
+
+  private final BiConsumer<Object, Object> _setter;
+
+  private PropertyAccessor(String propertyName, Class<?> propertyType,
+      Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+    _propertyName = propertyName;
+    _propertyType = propertyType;
+    _getter = getter;
+    _setter = setter;
+  }
+
+  /**
+   * @param type
+   * @param propertyName
+   * @return the accessor for the property of the type, or null if the type has
+   *         no such property
+   */
+  public static PropertyAccessor getAccessor(Class<?> type,
+      String propertyName) {
+    return _accessorsByType.get(type).get(propertyName);
+  }
+
+  public String getPropertyName() {
+    return _propertyName;
+  }
+
+  public Class<?> getPropertyType() {
+    return _propertyType;
+  }
+
+  public boolean isReadable() {
+    return _getter != null;
+  }
+
+  public boolean isWritable() {
+    return _setter != null;
+  }
+
+  public Object getValue(Object bean) {
+    if (_getter == null) {
+      throw new IllegalStateException("property is not readable: "
+          + _propertyName);
+    }
+    return _getter.apply(bean);
+  }
+
+  public void setValue(Object bean, Object value) {
+    if (_setter == null) {
+      throw new IllegalStateException("property is not writable: "
+          + _propertyName);
+    }
+    _setter.accept(bean, value);
+  }
+
+  /****
+   * {@link PropertyMethod} Interface
+   ****/
+
+  @Override
+  public Object invoke(Object value) {
+    return getValue(value);
+  }
+
+  @Override
+  public Class<?> getReturnType() {
+    return _propertyType;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static Map<String, PropertyAccessor> createAccessors(Class<?> type) {
+    PropertyDescriptor[] descriptors;
+    try {
+      descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+    } catch (IntrospectionException ex) {
+      throw new IllegalStateException("error introspecting type "
+          + type.getName(), ex);
+    }
+    Map<String, PropertyAccessor> accessors = new HashMap<String, PropertyAccessor>();
+    for (PropertyDescriptor descriptor : descriptors) {
+      if (descriptor.getPropertyType() == null
+          || descriptor.getName().equals("class")) {
+        continue;
+      }
+      Method readMethod = descriptor.getReadMethod();
+      Method writeMethod = descriptor.getWriteMethod();
+      Function<Object, Object> getter = readMethod == null ? null
+          : compileGetter(readMethod);
+      BiConsumer<Object, Object> setter = writeMethod == null ? null
+          : compileSetter(writeMethod);
+      accessors.put(descriptor.getName(), new PropertyAccessor(
+          descriptor.getName(), descriptor.getPropertyType(), getter, setter));
+    }
+    return Collections.unmodifiableMap(accessors);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> compileGetter(final Method method) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle handle = lookup.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+          MethodType.methodType(Function.class),
+          MethodType.methodType(Object.class, Object.class), handle,
+          MethodType.methodType(Object.class, method.getDeclaringClass()));
+      return (Function<Object, Object>) site.getTarget().invoke();
+    } catch (Throwable ex) {
+      return bean -> invoke(method, bean);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> compileSetter(final Method method) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle handle = lookup.unreflect(method);
+      Class<?> valueType = MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType();
+      CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+          MethodType.methodType(BiConsumer.class),
+          MethodType.methodType(void.class, Object.class, Object.class),
+          handle, MethodType.methodType(void.class,
+              method.getDeclaringClass(), valueType));
+      BiConsumer<Object, Object> setter = (BiConsumer<Object, Object>) site.getTarget().invoke();
+      if (!method.getParameterTypes()[0].isPrimitive()) {
+        return setter;
+      }
+      // Reflection also widens and rejects null values for primitives
+      return (bean, value) -> {
+        if (value != null && value.getClass() == valueType) {
+          setter.accept(bean, value);
+        } else {
+          invoke(method, bean, value);
+        }
+      };
+    } catch (Throwable ex) {
+      return (bean, value) -> invoke(method, bean, value);
+    }
+  }
+
+  private static Object invoke(Method method, Object bean, Object... args) {
+    try {
+      return method.invoke(bean, args);
+    } catch (InvocationTargetException ex) {
+      throw new IllegalStateException("error invoking method "
+          + method.getName(), ex.getCause());
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("error invoking method "
+          + method.getName(), ex);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.deferred;
+
+import org.onebusaway.csv_entities.schema.BeanWrapper;
+import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
+
+/**
+ * A {@link BeanWrapper} that goes through the compiled
+ * {@link PropertyAccessor}s of the bean type, and is cheap to create for each
+ * entity that is modified. Properties without an accessor are left to the
+ * wrapper of {@link BeanWrapperFactory}.
+ */
+public class PropertyAccessorBeanWrapper implements BeanWrapper {
+
+  private final Object _wrappedInstance;
+
+  private BeanWrapper _defaultWrapper = null;
+
+  public PropertyAccessorBeanWrapper(Object wrappedInstance) {
+    _wrappedInstance = wrappedInstance;
+  }
+
+  @Override
+  public Class<?> getPropertyType(String propertyName) {
+    PropertyAccessor accessor = getAccessor(propertyName);
+    if (accessor == null) {
+      return getDefaultWrapper().getPropertyType(propertyName);
+    }
+    return accessor.getPropertyType();
+  }
+
+  @Override
+  public Object getPropertyValue(String propertyName) {
+    PropertyAccessor accessor = getAccessor(propertyName);
+    if (accessor == null || !accessor.isReadable()) {
+      return getDefaultWrapper().getPropertyValue(propertyName);
+    }
+    return accessor.getValue(_wrappedInstance);
+  }
+
+  @Override
+  public void setPropertyValue(String propertyName, Object value) {
+    PropertyAccessor accessor = getAccessor(propertyName);
+    if (accessor == null || !accessor.isWritable()) {
+      getDefaultWrapper().setPropertyValue(propertyName, value);
+      return;
+    }
+    accessor.setValue(_wrappedInstance, value);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getWrappedInstance(Class<T> type) {
+    return (T) _wrappedInstance;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private PropertyAccessor getAccessor(String propertyName) {
+    return PropertyAccessor.getAccessor(_wrappedInstance.getClass(),
+        propertyName);
+  }
+
+  private BeanWrapper getDefaultWrapper() {
+    if (_defaultWrapper == null) {
+      _defaultWrapper = BeanWrapperFactory.wrap(_wrappedInstance);
+    }
+    return _defaultWrapper;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package org.onebusaway.gtfs_transformer.deferred;
 
+import java.util.regex.Pattern;
+
 import org.onebusaway.csv_entities.schema.BeanWrapper;
 import org.onebusaway.gtfs.model.AgencyAndId;
 
@@ -24,11 +26,11 @@ import org.onebusaway.gtfs.model.AgencyAndId;
  */
 public class ReplaceValueSetter implements ValueSetter {
 
-  private String matchRegex;
+  private Pattern matchPattern;
   private String replacementValue;
 
   public ReplaceValueSetter(String matchRegex, String replacementValue) {
-    this.matchRegex = matchRegex;
+    this.matchPattern = Pattern.compile(matchRegex);
     this.replacementValue = replacementValue;
   }
 
@@ -39,7 +41,8 @@ public class ReplaceValueSetter implements ValueSetter {
       return;
     }
     String stringValue = value.toString();
-    String updatedValue = stringValue.replaceAll(matchRegex, replacementValue);
+    String updatedValue = matchPattern.matcher(stringValue).replaceAll(
+        replacementValue);
     if (!stringValue.equals(updatedValue)) {
       if (bean.getPropertyType(propertyName) == AgencyAndId.class) {
         AgencyAndId aid = (AgencyAndId)bean.getPropertyValue(propertyName);
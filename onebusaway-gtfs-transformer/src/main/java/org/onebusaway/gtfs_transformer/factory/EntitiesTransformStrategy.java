@@ -16,22 +16,58 @@
  */
 package org.onebusaway.gtfs_transformer.factory;
 
+import org.onebusaway.collections.beans.PropertyInvocationResult;
+import org.onebusaway.collections.beans.PropertyPathExpression;
+import org.onebusaway.csv_entities.schema.SingleFieldMapping;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs_transformer.collections.IdKey;
 import org.onebusaway.gtfs_transformer.collections.IdKeyMatch;
+import org.onebusaway.gtfs_transformer.deferred.DeferredValueMatcher;
+import org.onebusaway.gtfs_transformer.deferred.EntitySchemaCache;
+import org.onebusaway.gtfs_transformer.impl.SimpleModificationStrategy;
+import org.onebusaway.gtfs_transformer.impl.StringModificationStrategy;
+import org.onebusaway.gtfs_transformer.match.EntityMatch;
+import org.onebusaway.gtfs_transformer.match.EntityMatchCollection;
+import org.onebusaway.gtfs_transformer.match.PropertyValueEntityMatch;
 import org.onebusaway.gtfs_transformer.match.TypedEntityMatch;
 import org.onebusaway.gtfs_transformer.services.EntityTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.TransformContext;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Applies modifications to the entities they match, in order.
+ *
+ * Consecutive modifications of the same entity type that only update
+ * properties of the matched entity are applied together in a single pass over
+ * the entities, each entity getting the modifications in order. Within such a
+ * pass, and for any other modification, a match with a literal string value
+ * for a property is looked up in a hash index from property value to
+ * modifications, instead of being evaluated against every entity. A match on
+ * a property updated earlier in the pass is evaluated against every entity, so
+ * it sees the updated value. Without a schema cache to resolve csv field names
+ * to properties, no match is indexed after the first update of a pass.
+ */
 public class EntitiesTransformStrategy implements GtfsTransformStrategy {
 
   private List<MatchAndTransform> _modifications = new ArrayList<MatchAndTransform>();
+
+  private EntitySchemaCache _schemaCache = null;
   
+  public void setSchemaCache(EntitySchemaCache schemaCache) {
+    _schemaCache = schemaCache;
+  }
+
   public List<MatchAndTransform> getModifications() {
     return _modifications;
   }
@@ -49,21 +85,203 @@ public class EntitiesTransformStrategy implements GtfsTransformStrategy {
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
-    for (MatchAndTransform modification : _modifications) {
+    int index = 0;
+    while (index < _modifications.size()) {
+      MatchAndTransform modification = _modifications.get(index);
       TypedEntityMatch match = modification.getMatch();
       Class<?> entityType = match.getType();
       EntityTransformStrategy transform = modification.getTransform();
       if (IdKey.class.isAssignableFrom(entityType)) {
         IdKeyMatch keyMatch = (IdKeyMatch) match.getPropertyMatches();
         transform.run(context, dao, keyMatch.getKey());
-      } else {
-        Collection<Object> entities = new ArrayList<Object>(dao.getAllEntitiesForType(entityType));
-        for (Object object : entities) {
-          if (match.isApplicableToObject(object)) {
-            transform.run(context, dao, object);
+        index++;
+        continue;
+      }
+      int to = index + 1;
+      if (getUpdatedProperties(transform) != null) {
+        while (to < _modifications.size()) {
+          MatchAndTransform next = _modifications.get(to);
+          if (next.getMatch().getType() != entityType
+              || getUpdatedProperties(next.getTransform()) == null) {
+            break;
           }
+          to++;
+        }
+      }
+      applyModifications(context, dao, entityType,
+          _modifications.subList(index, to));
+      index = to;
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void applyModifications(TransformContext context,
+      GtfsMutableRelationalDao dao, Class<?> entityType,
+      List<MatchAndTransform> modifications) {
+
+    BitSet unindexedModifications = new BitSet(modifications.size());
+    Map<String, PropertyValueIndex> indices = new LinkedHashMap<String, PropertyValueIndex>();
+    Set<String> updatedProperties = new HashSet<String>();
+
+    for (int i = 0; i < modifications.size(); i++) {
+      MatchAndTransform modification = modifications.get(i);
+      PropertyValueEntityMatch indexedMatch = getIndexableMatch(entityType,
+          modification.getMatch(), updatedProperties);
+      if (indexedMatch == null) {
+        unindexedModifications.set(i);
+      } else {
+        PropertyPathExpression expression = indexedMatch.getExpression();
+        PropertyValueIndex index = indices.get(expression.getPath());
+        if (index == null) {
+          index = new PropertyValueIndex(expression);
+          indices.put(expression.getPath(), index);
+        }
+        DeferredValueMatcher matcher = (DeferredValueMatcher) indexedMatch.getMatcher();
+        index.add(matcher.getLiteralStringValue(), i);
+      }
+      Set<String> properties = getUpdatedProperties(modification.getTransform());
+      if (properties != null) {
+        for (String property : properties) {
+          updatedProperties.add(getPropertyName(entityType,
+              getFirstProperty(property)));
+        }
+      }
+    }
+
+    Collection<Object> entities = new ArrayList<Object>(dao.getAllEntitiesForType(entityType));
+    BitSet candidates = new BitSet(modifications.size());
+    for (Object object : entities) {
+      candidates.or(unindexedModifications);
+      for (PropertyValueIndex index : indices.values()) {
+        index.addCandidates(object, candidates);
+      }
+      for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+        MatchAndTransform modification = modifications.get(i);
+        if (modification.getMatch().isApplicableToObject(object)) {
+          modification.getTransform().run(context, dao, object);
         }
       }
+      candidates.clear();
+    }
+  }
+
+  /**
+   * @return the properties of the matched entity that the transform updates,
+   *         or null if the transform might do anything else, such as removing
+   *         the entity or updating other entities
+   */
+  private static Set<String> getUpdatedProperties(
+      EntityTransformStrategy transform) {
+    if (transform instanceof SimpleModificationStrategy) {
+      return ((SimpleModificationStrategy) transform).getPropertyUpdates().keySet();
+    } else if (transform instanceof StringModificationStrategy) {
+      return ((StringModificationStrategy) transform).getPropertyUpdates().keySet();
+    }
+    return null;
+  }
+
+  /**
+   * @param entityType
+   * @param updatedProperties properties updated by the modifications applied
+   *          to an entity before this match is evaluated, whose values can't be
+   *          indexed ahead of time
+   * @return a property match of the match that compares the property value
+   *         with a literal string, or null if there is none
+   */
+  private PropertyValueEntityMatch getIndexableMatch(Class<?> entityType,
+      TypedEntityMatch match, Set<String> updatedProperties) {
+    if (_schemaCache == null && !updatedProperties.isEmpty()) {
+      return null;
+    }
+    EntityMatch propertyMatches = match.getPropertyMatches();
+    List<EntityMatch> matches = Collections.singletonList(propertyMatches);
+    if (propertyMatches instanceof EntityMatchCollection) {
+      matches = ((EntityMatchCollection) propertyMatches).getMatches();
+    }
+    for (EntityMatch entityMatch : matches) {
+      if (!(entityMatch instanceof PropertyValueEntityMatch)) {
+        continue;
+      }
+      PropertyValueEntityMatch propertyMatch = (PropertyValueEntityMatch) entityMatch;
+      if (!(propertyMatch.getMatcher() instanceof DeferredValueMatcher)) {
+        continue;
+      }
+      DeferredValueMatcher matcher = (DeferredValueMatcher) propertyMatch.getMatcher();
+      String path = propertyMatch.getExpression().getPath();
+      if (matcher.getLiteralStringValue() != null
+          && !updatedProperties.contains(getPropertyName(entityType,
+              getFirstProperty(path)))) {
+        return propertyMatch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the property for a csv field name or property name, so that
+   *         updates and matches naming the same field compare equal
+   */
+  private String getPropertyName(Class<?> entityType, String name) {
+    if (_schemaCache != null) {
+      SingleFieldMapping mapping = _schemaCache.getFieldMappingForCsvFieldName(
+          entityType, name);
+      if (mapping != null) {
+        return mapping.getObjFieldName();
+      }
+    }
+    return name;
+  }
+
+  private static String getFirstProperty(String path) {
+    int index = path.indexOf('.');
+    return index == -1 ? path : path.substring(0, index);
+  }
+
+  /**
+   * Indexes the modifications that match a property path against a literal
+   * string value by that value. The index only narrows down the modifications
+   * that can match an entity, which are still evaluated in full.
+   */
+  private static class PropertyValueIndex {
+
+    private final PropertyPathExpression _expression;
+
+    private final Map<String, BitSet> _modificationsByValue = new HashMap<String, BitSet>();
+
+    private final BitSet _allModifications = new BitSet();
+
+    public PropertyValueIndex(PropertyPathExpression expression) {
+      _expression = expression;
+    }
+
+    public void add(String value, int modificationIndex) {
+      BitSet modifications = _modificationsByValue.get(value);
+      if (modifications == null) {
+        modifications = new BitSet();
+        _modificationsByValue.put(value, modifications);
+      }
+      modifications.set(modificationIndex);
+      _allModifications.set(modificationIndex);
+    }
+
+    public void addCandidates(Object object, BitSet candidates) {
+      PropertyInvocationResult result = _expression.invokeReturningFullResult(object);
+      String value = null;
+      if (result.value != null) {
+        value = DeferredValueMatcher.getStringValueForComparison(result.value);
+      }
+      if (value == null) {
+        // Not compared as a string, leave it to the full match
+        candidates.or(_allModifications);
+        return;
+      }
+      BitSet modifications = _modificationsByValue.get(value);
+      if (modifications != null) {
+        candidates.or(modifications);
+      }
     }
   }
 
@@ -30,6 +30,7 @@ import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.gtfs_transformer.deferred.EntitySchemaCache;
+import org.onebusaway.gtfs_transformer.deferred.PropertyAccessor;
 
 class PropertyMethodResolverImpl extends DefaultPropertyMethodResolver {
 
@@ -72,6 +73,11 @@ class PropertyMethodResolverImpl extends DefaultPropertyMethodResolver {
     if (mapping != null) {
       propertyName = mapping.getObjFieldName();
     }
+    PropertyAccessor accessor = PropertyAccessor.getAccessor(targetType,
+        propertyName);
+    if (accessor != null && accessor.isReadable()) {
+      return accessor;
+    }
     return super.getPropertyMethod(targetType, propertyName);
   }
 
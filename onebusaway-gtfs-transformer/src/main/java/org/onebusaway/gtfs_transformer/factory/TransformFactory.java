@@ -384,6 +384,7 @@ public class TransformFactory {
       throws JSONException, TransformSpecificationException {
 
     EntitiesTransformStrategy strategy = getStrategy(EntitiesTransformStrategy.class);
+    strategy.setSchemaCache(_schemaCache);
 
     TypedEntityMatch match = getMatch(line, json);
 
@@ -452,6 +453,7 @@ public class TransformFactory {
     TypedEntityMatch match = getMatch(line, json);
 
     EntitiesTransformStrategy strategy = getStrategy(EntitiesTransformStrategy.class);
+    strategy.setSchemaCache(_schemaCache);
     RemoveEntityUpdateStrategy mod = new RemoveEntityUpdateStrategy();
     strategy.addModification(match, mod);
   }
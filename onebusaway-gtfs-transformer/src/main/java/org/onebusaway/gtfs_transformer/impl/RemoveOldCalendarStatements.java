@@ -15,10 +15,12 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.TransformContext;
+import org.onebusaway.gtfs_transformer.updates.UpdateLibrary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,8 +45,11 @@ public class RemoveOldCalendarStatements implements GtfsTransformStrategy {
                 serviceCalendarsToRemove.add(calendar);
             }
         }
+        Set<AgencyAndId> removedServiceIds = new HashSet<AgencyAndId>();
         for (ServiceCalendar serviceCalendar : serviceCalendarsToRemove) {
             removeEntityLibrary.removeCalendar(gtfsMutableRelationalDao, serviceCalendar.getServiceId());
+            removedServiceIds.add(serviceCalendar.getServiceId());
         }
+        UpdateLibrary.updateCalendarServiceData(transformContext, gtfsMutableRelationalDao, removedServiceIds);
     }
 }
\ No newline at end of file
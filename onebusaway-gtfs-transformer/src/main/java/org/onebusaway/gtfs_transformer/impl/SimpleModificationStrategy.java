@@ -18,8 +18,8 @@ package org.onebusaway.gtfs_transformer.impl;
 import java.util.Map;
 
 import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs_transformer.deferred.PropertyAccessorBeanWrapper;
 import org.onebusaway.gtfs_transformer.deferred.ValueSetter;
 import org.onebusaway.gtfs_transformer.services.EntityTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.TransformContext;
@@ -33,11 +33,15 @@ public class SimpleModificationStrategy implements EntityTransformStrategy {
     _propertyUpdates = propertyUpdates;
   }
 
+  public Map<String, ValueSetter> getPropertyUpdates() {
+    return _propertyUpdates;
+  }
+
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao,
       Object entity) {
 
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(entity);
+    BeanWrapper wrapper = new PropertyAccessorBeanWrapper(entity);
     for (Map.Entry<String, ValueSetter> entry : _propertyUpdates.entrySet()) {
       String propertyName = entry.getKey();
       ValueSetter setter = entry.getValue();
@@ -15,12 +15,14 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.onebusaway.collections.tuple.Pair;
 import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.onebusaway.gtfs_transformer.deferred.PropertyAccessorBeanWrapper;
 import org.onebusaway.gtfs_transformer.services.EntityTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.TransformContext;
 
@@ -28,20 +30,31 @@ public class StringModificationStrategy implements EntityTransformStrategy {
 
   private Map<String, Pair<String>> _propertyUpdates;
 
+  private Map<String, Pattern> _patternsByProperty = new HashMap<String, Pattern>();
+
   public StringModificationStrategy(Map<String, Pair<String>> propertyUpdates) {
     _propertyUpdates = propertyUpdates;
+    for (Map.Entry<String, Pair<String>> entry : propertyUpdates.entrySet()) {
+      _patternsByProperty.put(entry.getKey(),
+          Pattern.compile(entry.getValue().getFirst()));
+    }
+  }
+
+  public Map<String, Pair<String>> getPropertyUpdates() {
+    return _propertyUpdates;
   }
 
   public void run(TransformContext context, GtfsMutableRelationalDao dao,
       Object entity) {
-    BeanWrapper wrapper = BeanWrapperFactory.wrap(entity);
+    BeanWrapper wrapper = new PropertyAccessorBeanWrapper(entity);
     for (Map.Entry<String, Pair<String>> entry : _propertyUpdates.entrySet()) {
       String property = entry.getKey();
       Pair<String> value = entry.getValue();
       Object propertyValue = wrapper.getPropertyValue(property);
       if (propertyValue != null) {
         String propertyStringValue = propertyValue.toString();
-        propertyStringValue = propertyStringValue.replaceAll(value.getFirst(),
+        Pattern pattern = _patternsByProperty.get(property);
+        propertyStringValue = pattern.matcher(propertyStringValue).replaceAll(
             value.getSecond());
         wrapper.setPropertyValue(property, propertyStringValue);
       }
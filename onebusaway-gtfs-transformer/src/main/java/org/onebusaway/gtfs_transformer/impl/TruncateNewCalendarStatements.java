@@ -15,11 +15,13 @@
  */
 package org.onebusaway.gtfs_transformer.impl;
 
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 import org.onebusaway.gtfs_transformer.services.GtfsTransformStrategy;
 import org.onebusaway.gtfs_transformer.services.TransformContext;
+import org.onebusaway.gtfs_transformer.updates.UpdateLibrary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +49,7 @@ public class TruncateNewCalendarStatements implements GtfsTransformStrategy {
         Calendar c = Calendar.getInstance();
         c.roll(Calendar.MONTH, 1);
         java.util.Date oneMonthFromNow = c.getTime();
+        Set<AgencyAndId> changedServiceIds = new HashSet<AgencyAndId>();
         Set<ServiceCalendar> serviceCalendarsToRemove = new HashSet<ServiceCalendar>();
         for (ServiceCalendar calendar: gtfsMutableRelationalDao.getAllCalendars()) {
             if (calendar.getStartDate().getAsDate().after(oneMonthFromNow)){
@@ -56,6 +59,7 @@ public class TruncateNewCalendarStatements implements GtfsTransformStrategy {
         for (ServiceCalendar serviceCalendar : serviceCalendarsToRemove) {
             // this method also deletes trips belonging to this calendar
             removeEntityLibrary.removeCalendar(gtfsMutableRelationalDao, serviceCalendar.getServiceId());
+            changedServiceIds.add(serviceCalendar.getServiceId());
         }
 
         Set<ServiceCalendarDate> serviceCalendarDatesToRemove = new HashSet<ServiceCalendarDate>();
@@ -67,7 +71,9 @@ public class TruncateNewCalendarStatements implements GtfsTransformStrategy {
         for (ServiceCalendarDate serviceCalendarDate : serviceCalendarDatesToRemove) {
             // here we can't delete the trips as the serviceid may be active elsewhere
             removeEntityLibrary.removeServiceCalendarDate(gtfsMutableRelationalDao, serviceCalendarDate);
+            changedServiceIds.add(serviceCalendarDate.getServiceId());
         }
+        UpdateLibrary.updateCalendarServiceData(transformContext, gtfsMutableRelationalDao, changedServiceIds);
 
     }
 
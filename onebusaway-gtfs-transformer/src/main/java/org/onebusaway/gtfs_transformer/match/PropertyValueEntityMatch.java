@@ -31,6 +31,14 @@ public class PropertyValueEntityMatch implements EntityMatch {
     _matcher = matcher;
   }
 
+  public PropertyPathExpression getExpression() {
+    return _expression;
+  }
+
+  public ValueMatcher getMatcher() {
+    return _matcher;
+  }
+
   public boolean isApplicableToObject(Object object) {
     PropertyInvocationResult result = _expression.invokeReturningFullResult(object);
     return _matcher.matches(result.parent.getClass(), result.propertyName,
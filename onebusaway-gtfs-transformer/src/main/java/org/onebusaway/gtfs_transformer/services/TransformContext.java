@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 
 public class TransformContext {
@@ -31,6 +32,10 @@ public class TransformContext {
 
   private Map<String, Object> _parameters = new HashMap<String, Object>();
 
+  private CalendarServiceData _calendarServiceData;
+
+  private boolean _calendarServiceDataKept = false;
+
   public void setDefaultAgencyId(String agencyId) {
     _defaultAgencyId = agencyId;
   }
@@ -67,4 +72,34 @@ public class TransformContext {
   public <T> T getParameter(String key) {
     return (T) _parameters.get(key);
   }
+
+  /**
+   * @return the calendar data of the dao, if it was built by an earlier
+   *         strategy and kept up to date, or null
+   */
+  public CalendarServiceData getCalendarServiceData() {
+    return _calendarServiceData;
+  }
+
+  public void setCalendarServiceData(CalendarServiceData calendarServiceData) {
+    _calendarServiceData = calendarServiceData;
+  }
+
+  /**
+   * Marks the calendar data as up to date with the changes the current
+   * strategy made to the dao, so it is kept for the next strategy.
+   */
+  public void keepCalendarServiceData() {
+    _calendarServiceDataKept = true;
+  }
+
+  /**
+   * Called after each strategy. Any strategy may change calendars or trips,
+   * so the calendar data is dropped unless the strategy kept it.
+   */
+  public void endStrategy() {
+    if (!_calendarServiceDataKept)
+      _calendarServiceData = null;
+    _calendarServiceDataKept = false;
+  }
 }
@@ -23,7 +23,6 @@ import java.util.Set;
 import java.util.TimeZone;
 
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
-import org.onebusaway.gtfs.impl.calendar.CalendarServiceDataFactoryImpl;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
@@ -69,8 +68,9 @@ public class CalendarExtensionStrategy implements GtfsTransformStrategy {
   @Override
   public void run(TransformContext context, GtfsMutableRelationalDao dao) {
 
-    CalendarService service = CalendarServiceDataFactoryImpl.createService(dao);
+    CalendarService service = UpdateLibrary.getCalendarService(context, dao);
     CalendarSimplicationLibrary simplication = new CalendarSimplicationLibrary();
+    Set<AgencyAndId> extendedServiceIds = new HashSet<AgencyAndId>();
 
     for (AgencyAndId serviceId : dao.getAllServiceIds()) {
 
@@ -112,15 +112,17 @@ public class CalendarExtensionStrategy implements GtfsTransformStrategy {
             scd.setExceptionType(ServiceCalendarDate.EXCEPTION_TYPE_ADD);
             scd.setServiceId(serviceId);
             dao.saveEntity(scd);
+            extendedServiceIds.add(serviceId);
           }
         }
       } else {
         if (calendar.getEndDate().compareTo(inactiveCalendarCutoff) >= 0) {
           calendar.setEndDate(endDate);
+          extendedServiceIds.add(serviceId);
         }
       }
     }
-    UpdateLibrary.clearDaoCache(dao);
+    UpdateLibrary.updateCalendarServiceData(context, dao, extendedServiceIds);
   }
 
   /**
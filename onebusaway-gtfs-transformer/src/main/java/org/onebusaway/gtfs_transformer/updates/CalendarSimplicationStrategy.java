@@ -27,7 +27,6 @@ import java.util.regex.Pattern;
 
 import org.onebusaway.collections.FactoryMap;
 import org.onebusaway.csv_entities.schema.annotations.CsvField;
-import org.onebusaway.gtfs.impl.calendar.CalendarServiceDataFactoryImpl;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.ServiceCalendar;
@@ -128,7 +127,11 @@ public class CalendarSimplicationStrategy implements GtfsTransformStrategy {
       }
     }
 
-    CalendarService calendarService = CalendarServiceDataFactoryImpl.createService(dao);
+    /**
+     * Only trips have changed so far, which leaves service dates as they were
+     */
+    CalendarService calendarService = UpdateLibrary.getCalendarService(context,
+        dao);
     List<Object> newEntities = new ArrayList<Object>();
     for (Map.Entry<Set<AgencyAndId>, AgencyAndId> entry : serviceIdsToUpdatedServiceId.entrySet()) {
       Set<ServiceDate> allServiceDates = getServiceDatesForServiceIds(
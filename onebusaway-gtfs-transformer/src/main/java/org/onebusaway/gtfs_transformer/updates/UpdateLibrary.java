@@ -15,8 +15,16 @@
  */
 package org.onebusaway.gtfs_transformer.updates;
 
+import java.util.Collection;
+
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.impl.calendar.CalendarServiceDataFactoryImpl;
+import org.onebusaway.gtfs.impl.calendar.CalendarServiceImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
+import org.onebusaway.gtfs.services.calendar.CalendarService;
+import org.onebusaway.gtfs_transformer.services.TransformContext;
 
 public class UpdateLibrary {
   public static void clearDaoCache(GtfsRelationalDao dao) {
@@ -25,4 +33,33 @@ public class UpdateLibrary {
       daoImpl.clearAllCaches();
     }
   }
+
+  /**
+   * @return a calendar service for the dao, reusing the calendar data left in
+   *         the context by an earlier strategy when there is some
+   */
+  public static CalendarService getCalendarService(TransformContext context,
+      GtfsRelationalDao dao) {
+    CalendarServiceData data = context.getCalendarServiceData();
+    if (data == null) {
+      data = new CalendarServiceDataFactoryImpl(dao).createData();
+      context.setCalendarServiceData(data);
+    }
+    return new CalendarServiceImpl(data);
+  }
+
+  /**
+   * Clears the dao caches and recomputes the calendar data in the context, if
+   * there is any, for service ids whose calendars, calendar dates or trips
+   * were changed, then keeps it for the next strategy. Strategies must report
+   * every service id they changed.
+   */
+  public static void updateCalendarServiceData(TransformContext context,
+      GtfsRelationalDao dao, Collection<AgencyAndId> serviceIds) {
+    clearDaoCache(dao);
+    CalendarServiceData data = context.getCalendarServiceData();
+    if (data != null && !serviceIds.isEmpty())
+      new CalendarServiceDataFactoryImpl(dao).updateData(data, serviceIds);
+    context.keepCalendarServiceData();
+  }
 }
@@ -89,6 +89,15 @@ public class DeferredValueMatcherTest {
     assertFalse(matcher.matches(Route.class, "id", new AgencyAndId("1", "R20")));
   }
 
+  @Test
+  public void testRegex() {
+    DeferredValueMatcher matcher = matcher("m/^R1[0-9]$/");
+    assertTrue(matcher.matches(Route.class, "shortName", "R10"));
+    assertFalse(matcher.matches(Route.class, "shortName", "R20"));
+    assertTrue(matcher.matches(Route.class, "id", new AgencyAndId("1", "R11")));
+    assertFalse(matcher.matches(Route.class, "id", new AgencyAndId("1", "R110")));
+  }
+
   private DeferredValueMatcher matcher(Object value) {
     return new DeferredValueMatcher(_reader, _schemaCache, value);
   }
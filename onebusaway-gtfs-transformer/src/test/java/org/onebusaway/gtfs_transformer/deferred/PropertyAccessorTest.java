@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs_transformer.deferred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+
+public class PropertyAccessorTest {
+
+  @Test
+  public void testGetAndSet() {
+    Trip trip = new Trip();
+    PropertyAccessor accessor = PropertyAccessor.getAccessor(Trip.class,
+        "tripHeadsign");
+    assertEquals(String.class, accessor.getPropertyType());
+    accessor.setValue(trip, "Downtown");
+    assertEquals("Downtown", trip.getTripHeadsign());
+    assertEquals("Downtown", accessor.getValue(trip));
+
+    Route route = new Route();
+    PropertyAccessor routeAccessor = PropertyAccessor.getAccessor(Trip.class,
+        "route");
+    routeAccessor.setValue(trip, route);
+    assertSame(route, routeAccessor.invoke(trip));
+  }
+
+  @Test
+  public void testPrimitiveProperty() {
+    Route route = new Route();
+    PropertyAccessor accessor = PropertyAccessor.getAccessor(Route.class,
+        "type");
+    accessor.setValue(route, 3);
+    assertEquals(3, route.getType());
+    assertEquals(3, accessor.getValue(route));
+
+    // Widened like a reflective call
+    Stop stop = new Stop();
+    PropertyAccessor latAccessor = PropertyAccessor.getAccessor(Stop.class,
+        "lat");
+    latAccessor.setValue(stop, 47.5f);
+    assertEquals(47.5, stop.getLat(), 0.0);
+  }
+
+  @Test
+  public void testUnknownProperty() {
+    assertNull(PropertyAccessor.getAccessor(Trip.class, "noSuchProperty"));
+  }
+
+  @Test
+  public void testBeanWrapper() {
+    Trip trip = new Trip();
+    AgencyAndId id = new AgencyAndId("1", "t0");
+    PropertyAccessorBeanWrapper wrapper = new PropertyAccessorBeanWrapper(trip);
+    wrapper.setPropertyValue("id", id);
+    wrapper.setPropertyValue("tripShortName", "X41");
+    assertSame(id, trip.getId());
+    assertEquals("X41", wrapper.getPropertyValue("tripShortName"));
+    assertEquals(String.class, wrapper.getPropertyType("tripShortName"));
+    assertSame(trip, wrapper.getWrappedInstance(Trip.class));
+  }
+}
@@ -17,6 +17,7 @@ package org.onebusaway.gtfs_transformer.factory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -181,6 +182,93 @@ public class TransformFactoryTest {
   }
 
 
+  @Test
+  public void testUpdatesAppliedInOrder() throws IOException,
+      TransformSpecificationException {
+    _factory.addModificationsFromString("{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_id': '1'}, "
+        + "'update':{'trip_headsign': 'A'}}\n"
+        + "{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_headsign': 'A'}, "
+        + "'update':{'trip_short_name': 'X'}}\n"
+        + "{'op':'update', "
+        + "'match':{'file':'trips.txt', 'route_id': 'r1'}, "
+        + "'update':{'trip_headsign': 'B'}}");
+    GtfsTransformStrategy transform = _transformer.getLastTransform();
+    TransformContext context = new TransformContext();
+    GtfsMutableRelationalDao dao = new GtfsRelationalDaoImpl();
+
+    Route routeA = new Route();
+    routeA.setId(new AgencyAndId("1", "r1"));
+    dao.saveEntity(routeA);
+    Route routeB = new Route();
+    routeB.setId(new AgencyAndId("1", "r2"));
+    dao.saveEntity(routeB);
+
+    Trip tripA = new Trip();
+    tripA.setId(new AgencyAndId("1", "1"));
+    tripA.setRoute(routeA);
+    dao.saveEntity(tripA);
+    Trip tripB = new Trip();
+    tripB.setId(new AgencyAndId("1", "2"));
+    tripB.setRoute(routeB);
+    tripB.setTripHeadsign("A");
+    dao.saveEntity(tripB);
+    Trip tripC = new Trip();
+    tripC.setId(new AgencyAndId("1", "3"));
+    tripC.setRoute(routeA);
+    dao.saveEntity(tripC);
+
+    transform.run(context, dao);
+
+    assertEquals("B", tripA.getTripHeadsign());
+    assertEquals("X", tripA.getTripShortName());
+    assertEquals("A", tripB.getTripHeadsign());
+    assertEquals("X", tripB.getTripShortName());
+    assertEquals("B", tripC.getTripHeadsign());
+    assertNull(tripC.getTripShortName());
+  }
+
+  @Test
+  public void testUpdateThenMatchOnUpdatedValue() throws IOException,
+      TransformSpecificationException {
+    _factory.addModificationsFromString("{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_id': '1'}, "
+        + "'update':{'trip_headsign': 'A'}}\n"
+        + "{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_headsign': 'A'}, "
+        + "'update':{'trip_short_name': 'X'}}\n"
+        + "{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_short_name': 'X'}, "
+        + "'strings':{'tripShortName': {'X': 'Y'}}}\n"
+        + "{'op':'update', "
+        + "'match':{'file':'trips.txt', 'trip_short_name': 'Y'}, "
+        + "'update':{'block_id': 'b1'}}");
+    GtfsTransformStrategy transform = _transformer.getLastTransform();
+    TransformContext context = new TransformContext();
+    GtfsMutableRelationalDao dao = new GtfsRelationalDaoImpl();
+
+    Trip tripA = new Trip();
+    tripA.setId(new AgencyAndId("1", "1"));
+    tripA.setTripHeadsign("Z");
+    tripA.setTripShortName("W");
+    dao.saveEntity(tripA);
+    Trip tripB = new Trip();
+    tripB.setId(new AgencyAndId("1", "2"));
+    tripB.setTripHeadsign("Z");
+    tripB.setTripShortName("W");
+    dao.saveEntity(tripB);
+
+    transform.run(context, dao);
+
+    assertEquals("A", tripA.getTripHeadsign());
+    assertEquals("Y", tripA.getTripShortName());
+    assertEquals("b1", tripA.getBlockId());
+    assertEquals("Z", tripB.getTripHeadsign());
+    assertEquals("W", tripB.getTripShortName());
+    assertNull(tripB.getBlockId());
+  }
+
   @Test
   public void testCalendarSimplification() throws IOException,
       TransformSpecificationException {
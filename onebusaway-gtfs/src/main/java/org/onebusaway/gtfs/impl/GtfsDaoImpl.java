@@ -15,6 +15,9 @@
  */
 package org.onebusaway.gtfs.impl;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
@@ -26,7 +29,7 @@ import org.onebusaway.gtfs.services.GtfsMutableDao;
 public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
 
   public static final String[] OPTIONAL_FILE_NAMES = {"modifications.txt"};
-  private StopTimeArray stopTimes = new StopTimeArray();
+  private PackedStopTimeList stopTimes = new StopTimeArray();
 
   private ShapePointArray shapePoints = new ShapePointArray();
 
@@ -55,6 +58,24 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     this.packStopTimes = packStopTimes;
   }
 
+  /**
+   * Packs stop times into a memory-mapped file rather than on-heap arrays,
+   * see {@link ScratchMappedStopTimeArray}. Implies
+   * {@link #setPackStopTimes(boolean)}, and must be called before any stop
+   * times are saved. The file is scratch space for this dao and can't be
+   * reopened later; its handle is released by {@link #close()}.
+   * 
+   * @param path the backing file, which is created or replaced
+   * @throws IOException if the file can't be created
+   */
+  public void setPackStopTimesScratchFile(File path) throws IOException {
+    if (!stopTimes.isEmpty())
+      throw new IllegalStateException(
+          "stop times have already been packed on the heap");
+    stopTimes = new ScratchMappedStopTimeArray(path);
+    packStopTimes = true;
+  }
+
   public boolean isPackShapePoints() {
     return packShapePoints;
   }
@@ -394,6 +415,13 @@ public class GtfsDaoImpl extends GenericDaoImpl implements GtfsMutableDao {
     if (packStopTimes) {
       stopTimes.trimToSize();
     }
+    if (stopTimes instanceof Closeable) {
+      try {
+        ((Closeable) stopTimes).close();
+      } catch (IOException ex) {
+        throw new IllegalStateException("error closing packed stop times", ex);
+      }
+    }
     if (packShapePoints) {
       shapePoints.trimToSize();
     }
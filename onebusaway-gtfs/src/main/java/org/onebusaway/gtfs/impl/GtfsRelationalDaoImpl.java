@@ -25,10 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
-import org.onebusaway.csv_entities.exceptions.EntityInstantiationException;
-import org.onebusaway.csv_entities.schema.BeanWrapper;
-import org.onebusaway.csv_entities.schema.BeanWrapperFactory;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
 
@@ -37,54 +37,65 @@ import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
  * methods, but only if you have enough memory to load your entire GTFS into
  * memory.
  * 
+ * Relations are built on first use, or all at once with
+ * {@link #buildIndexes()}. Each relation is fully built before it is
+ * published, so concurrent readers never see a partial relation, though two
+ * readers racing on the first use of a relation may both build it. Once the
+ * entities have been loaded, calling {@link #buildIndexes()} leaves the DAO
+ * effectively read-only and safe to share between threads.
+ * 
  * @author bdferris
  * 
  */
 public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     GtfsMutableRelationalDao {
 
-  private Map<AgencyAndId, List<String>> _tripAgencyIdsByServiceId = null;
+  private volatile Map<AgencyAndId, List<String>> _tripAgencyIdsByServiceId = null;
+
+  private volatile Map<Agency, List<Route>> _routesByAgency = null;
 
-  private Map<Agency, List<Route>> _routesByAgency = null;
+  private volatile Map<Stop, List<Stop>> _stopsByStation = null;
 
-  private Map<Stop, List<Stop>> _stopsByStation = null;
+  private volatile Map<String, List<Stop>> _stopsByZoneId = null;
 
-  private Map<String, List<Stop>> _stopsByZoneId = null;
+  private volatile Map<Trip, List<StopTime>> _stopTimesByTrip = null;
 
-  private Map<Trip, List<StopTime>> _stopTimesByTrip = null;
+  private volatile Map<StopLocation, List<StopTime>> _stopTimesByStop = null;
 
-  private Map<Stop, List<StopTime>> _stopTimesByStop = null;
+  private volatile StopTimeArrayIndex _stopTimeArrayIndex = null;
 
-  private Map<Route, List<Trip>> _tripsByRoute = null;
+  private volatile Map<Route, List<Trip>> _tripsByRoute = null;
 
-  private Map<AgencyAndId, List<Trip>> _tripsByShapeId = null;
+  private volatile Map<AgencyAndId, List<Trip>> _tripsByShapeId = null;
 
-  private Map<AgencyAndId, List<Trip>> _tripsByServiceId = null;
+  private volatile Map<AgencyAndId, List<Trip>> _tripsByServiceId = null;
 
-  private Map<AgencyAndId, List<Trip>> _tripsByBlockId = null;
+  private volatile Map<AgencyAndId, List<Trip>> _tripsByBlockId = null;
 
-  private Map<AgencyAndId, List<ShapePoint>> _shapePointsByShapeId = null;
+  private volatile Map<AgencyAndId, List<ShapePoint>> _shapePointsByShapeId = null;
 
-  private Map<Trip, List<Frequency>> _frequenciesByTrip = null;
+  private volatile Map<Trip, List<Frequency>> _frequenciesByTrip = null;
 
-  private Map<AgencyAndId, List<ServiceCalendarDate>> _calendarDatesByServiceId = null;
+  private volatile Map<AgencyAndId, List<ServiceCalendarDate>> _calendarDatesByServiceId = null;
 
-  private Map<AgencyAndId, List<ServiceCalendar>> _calendarsByServiceId = null;
+  private volatile Map<AgencyAndId, List<ServiceCalendar>> _calendarsByServiceId = null;
 
-  private Map<FareAttribute, List<FareRule>> _fareRulesByFareAttribute = null;
+  private volatile Map<FareAttribute, List<FareRule>> _fareRulesByFareAttribute = null;
 
-  private Map<Route, List<FareRule>> _fareRulesByRoute = null;
+  private volatile Map<Route, List<FareRule>> _fareRulesByRoute = null;
 
-  private Map<String, List<FareRule>> _fareRulesByZoneId = null;
+  private volatile Map<String, List<FareRule>> _fareRulesByZoneId = null;
 
-  private Map<AgencyAndId, List<Ridership>> _ridershipByTrip = null;
+  private volatile Map<AgencyAndId, List<Ridership>> _ridershipByTrip = null;
 
   public void clearAllCaches() {
     _tripAgencyIdsByServiceId = clearMap(_tripAgencyIdsByServiceId);
     _routesByAgency = clearMap(_routesByAgency);
     _stopsByStation = clearMap(_stopsByStation);
+    _stopsByZoneId = clearMap(_stopsByZoneId);
     _stopTimesByTrip = clearMap(_stopTimesByTrip);
     _stopTimesByStop = clearMap(_stopTimesByStop);
+    _stopTimeArrayIndex = null;
     _tripsByRoute = clearMap(_tripsByRoute);
     _tripsByShapeId = clearMap(_tripsByShapeId);
     _tripsByServiceId = clearMap(_tripsByServiceId);
@@ -99,36 +110,54 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     _ridershipByTrip = clearMap(_ridershipByTrip);
   }
 
-  @Override
-  public List<String> getTripAgencyIdsReferencingServiceId(AgencyAndId serviceId) {
-
-    if (_tripAgencyIdsByServiceId == null) {
-
-      Map<AgencyAndId, Set<String>> agencyIdsByServiceIds = new HashMap<AgencyAndId, Set<String>>();
-
-      for (Trip trip : getAllTrips()) {
-        AgencyAndId tripId = trip.getId();
-        String tripAgencyId = tripId.getAgencyId();
-        AgencyAndId tripServiceId = trip.getServiceId();
-        Set<String> agencyIds = agencyIdsByServiceIds.get(tripServiceId);
-        if (agencyIds == null) {
-          agencyIds = new HashSet<String>();
-          agencyIdsByServiceIds.put(tripServiceId, agencyIds);
-        }
-        agencyIds.add(tripAgencyId);
-      }
-
-      _tripAgencyIdsByServiceId = new HashMap<AgencyAndId, List<String>>();
+  /**
+   * Builds every relation now, on the common fork-join pool, instead of on
+   * first use. See {@link #buildIndexes(ForkJoinPool)}.
+   */
+  public void buildIndexes() {
+    buildIndexes(ForkJoinPool.commonPool());
+  }
 
-      for (Map.Entry<AgencyAndId, Set<String>> entry : agencyIdsByServiceIds.entrySet()) {
-        AgencyAndId tripServiceId = entry.getKey();
-        List<String> agencyIds = new ArrayList<String>(entry.getValue());
-        Collections.sort(agencyIds);
-        _tripAgencyIdsByServiceId.put(tripServiceId, agencyIds);
-      }
+  /**
+   * Builds every relation now instead of on first use, with one fork-join
+   * task per relation, and sorts the stop times of each trip and the points
+   * of each shape in parallel. Call this once all entities have been loaded,
+   * typically right after {@link org.onebusaway.gtfs.serialization.GtfsReader#run()},
+   * so that later readers never pay for building a relation. Modifying the
+   * entities afterwards requires {@link #clearAllCaches()}, as before.
+   * 
+   * @param pool the pool to build the relations on
+   */
+  public void buildIndexes(ForkJoinPool pool) {
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    tasks.add(ForkJoinTask.adapt(this::ensureTripAgencyIdsByServiceIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureRoutesByAgencyRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureStopsByStationRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureStopsByZoneIdRelation));
+    if (isPackStopTimes()) {
+      tasks.add(ForkJoinTask.adapt(() -> ensureStopTimeArrayIndex(true)));
+    } else {
+      tasks.add(ForkJoinTask.adapt(() -> ensureStopTimesByTripRelation(true)));
+      tasks.add(ForkJoinTask.adapt(this::ensureStopTimesByStopRelation));
     }
+    tasks.add(ForkJoinTask.adapt(this::ensureTripsByRouteRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureTripsByShapeIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureTripsByServiceIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureTripsByBlockIdRelation));
+    tasks.add(ForkJoinTask.adapt(() -> ensureShapePointRelation(true)));
+    tasks.add(ForkJoinTask.adapt(this::ensureFrequenciesByTripRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureCalendarDatesByServiceIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureCalendarsByServiceIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureFareRulesByFareAttributeRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureFareRulesByRouteRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureFareRulesByZoneIdRelation));
+    tasks.add(ForkJoinTask.adapt(this::ensureRidershipByTripRelation));
+    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+  }
 
-    List<String> agencyIds = _tripAgencyIdsByServiceId.get(serviceId);
+  @Override
+  public List<String> getTripAgencyIdsReferencingServiceId(AgencyAndId serviceId) {
+    List<String> agencyIds = ensureTripAgencyIdsByServiceIdRelation().get(serviceId);
     if (agencyIds == null)
       agencyIds = new ArrayList<String>();
     return agencyIds;
@@ -136,146 +165,85 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   @Override
   public List<Route> getRoutesForAgency(Agency agency) {
-    if (_routesByAgency == null)
-      _routesByAgency = mapToValueList(getAllRoutes(), "agency", Agency.class);
-    return list(_routesByAgency.get(agency));
+    return list(ensureRoutesByAgencyRelation().get(agency));
   }
 
   @Override
   public List<Stop> getStopsForStation(Stop station) {
-    if (_stopsByStation == null) {
-      _stopsByStation = new HashMap<Stop, List<Stop>>();
-      for (Stop stop : getAllStops()) {
-        if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
-          Stop parentStation = getStopForId(new AgencyAndId(
-              stop.getId().getAgencyId(), stop.getParentStation()));
-          List<Stop> subStops = _stopsByStation.get(parentStation);
-          if (subStops == null) {
-            subStops = new ArrayList<Stop>(2);
-            _stopsByStation.put(parentStation, subStops);
-          }
-          subStops.add(stop);
-        }
-      }
-    }
-    return list(_stopsByStation.get(station));
+    return list(ensureStopsByStationRelation().get(station));
   }
 
   @Override
   public List<Stop> getStopsForZoneId(String zoneId) {
-    if (_stopsByZoneId == null) {
-      _stopsByZoneId = mapToValueList(getAllStops(), "zoneId", String.class);
-    }
-    return list(_stopsByZoneId.get(zoneId));
+    return list(ensureStopsByZoneIdRelation().get(zoneId));
   }
 
   @Override
   public List<AgencyAndId> getAllShapeIds() {
-    ensureShapePointRelation();
-    return new ArrayList<AgencyAndId>(_shapePointsByShapeId.keySet());
+    return new ArrayList<AgencyAndId>(ensureShapePointRelation(false).keySet());
   }
 
   @Override
   public List<ShapePoint> getShapePointsForShapeId(AgencyAndId shapeId) {
-    ensureShapePointRelation();
-    return list(_shapePointsByShapeId.get(shapeId));
+    return list(ensureShapePointRelation(false).get(shapeId));
   }
 
   @Override
   public List<StopTime> getStopTimesForTrip(Trip trip) {
-
-    if (_stopTimesByTrip == null) {
-      _stopTimesByTrip = mapToValueList(getAllStopTimes(), "trip", Trip.class);
-      for (List<StopTime> stopTimes : _stopTimesByTrip.values())
-        Collections.sort(stopTimes);
-    }
-
-    return list(_stopTimesByTrip.get(trip));
+    if (isPackStopTimes())
+      return list(ensureStopTimeArrayIndex(false).getStopTimesForTrip(trip));
+    return list(ensureStopTimesByTripRelation(false).get(trip));
   }
 
   @Override
   public List<StopTime> getStopTimesForStop(Stop stop) {
-    if (_stopTimesByStop == null)
-      _stopTimesByStop = mapToValueList(getAllStopTimes(), "stop", Stop.class);
-    return list(_stopTimesByStop.get(stop));
+    if (isPackStopTimes())
+      return list(ensureStopTimeArrayIndex(false).getStopTimesForStop(stop));
+    return list(ensureStopTimesByStopRelation().get(stop));
   }
 
   @Override
   public List<Trip> getTripsForRoute(Route route) {
-    if (_tripsByRoute == null)
-      _tripsByRoute = mapToValueList(getAllTrips(), "route", Route.class);
-    return list(_tripsByRoute.get(route));
+    return list(ensureTripsByRouteRelation().get(route));
   }
 
   @Override
   public List<Trip> getTripsForShapeId(AgencyAndId shapeId) {
-    if (_tripsByShapeId == null) {
-      _tripsByShapeId = mapToValueList(getAllTrips(), "shapeId",
-          AgencyAndId.class);
-    }
-    return list(_tripsByShapeId.get(shapeId));
+    return list(ensureTripsByShapeIdRelation().get(shapeId));
   }
 
   @Override
   public List<Trip> getTripsForServiceId(AgencyAndId serviceId) {
-    if (_tripsByServiceId == null) {
-      _tripsByServiceId = mapToValueList(getAllTrips(), "serviceId",
-          AgencyAndId.class);
-    }
-    return list(_tripsByServiceId.get(serviceId));
+    return list(ensureTripsByServiceIdRelation().get(serviceId));
   }
 
   @Override
   public List<Trip> getTripsForBlockId(AgencyAndId blockId) {
-
-    if (_tripsByBlockId == null) {
-      _tripsByBlockId = new HashMap<AgencyAndId, List<Trip>>();
-      for (Trip trip : getAllTrips()) {
-        if (trip.getBlockId() != null) {
-          AgencyAndId bid = new AgencyAndId(trip.getId().getAgencyId(),
-              trip.getBlockId());
-          List<Trip> trips = _tripsByBlockId.get(bid);
-          if (trips == null) {
-            trips = new ArrayList<Trip>();
-            _tripsByBlockId.put(bid, trips);
-          }
-          trips.add(trip);
-        }
-      }
-    }
-
-    return list(_tripsByBlockId.get(blockId));
+    return list(ensureTripsByBlockIdRelation().get(blockId));
   }
 
   @Override
   public List<Frequency> getFrequenciesForTrip(Trip trip) {
-    if (_frequenciesByTrip == null)
-      _frequenciesByTrip = mapToValueList(getAllFrequencies(), "trip",
-          Trip.class);
-    return list(_frequenciesByTrip.get(trip));
+    return list(ensureFrequenciesByTripRelation().get(trip));
   }
 
   @Override
   public List<AgencyAndId> getAllServiceIds() {
-    ensureCalendarDatesByServiceIdRelation();
-    ensureCalendarsByServiceIdRelation();
     Set<AgencyAndId> serviceIds = new HashSet<AgencyAndId>();
-    serviceIds.addAll(_calendarDatesByServiceId.keySet());
-    serviceIds.addAll(_calendarsByServiceId.keySet());
+    serviceIds.addAll(ensureCalendarDatesByServiceIdRelation().keySet());
+    serviceIds.addAll(ensureCalendarsByServiceIdRelation().keySet());
     return new ArrayList<AgencyAndId>(serviceIds);
   }
 
   @Override
   public List<ServiceCalendarDate> getCalendarDatesForServiceId(
       AgencyAndId serviceId) {
-    ensureCalendarDatesByServiceIdRelation();
-    return list(_calendarDatesByServiceId.get(serviceId));
+    return list(ensureCalendarDatesByServiceIdRelation().get(serviceId));
   }
 
   @Override
   public ServiceCalendar getCalendarForServiceId(AgencyAndId serviceId) {
-    ensureCalendarsByServiceIdRelation();
-    List<ServiceCalendar> calendars = list(_calendarsByServiceId.get(serviceId));
+    List<ServiceCalendar> calendars = list(ensureCalendarsByServiceIdRelation().get(serviceId));
     switch (calendars.size()) {
       case 0:
         return null;
@@ -287,20 +255,12 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   @Override
   public List<FareRule> getFareRulesForFareAttribute(FareAttribute fareAttribute) {
-    if (_fareRulesByFareAttribute == null) {
-      _fareRulesByFareAttribute = mapToValueList(getAllFareRules(), "fare",
-          FareAttribute.class);
-    }
-    return list(_fareRulesByFareAttribute.get(fareAttribute));
+    return list(ensureFareRulesByFareAttributeRelation().get(fareAttribute));
   }
 
   @Override
   public List<FareRule> getFareRulesForRoute(Route route) {
-    if (_fareRulesByRoute == null) {
-      _fareRulesByRoute = mapToValueList(getAllFareRules(), "route",
-              Route.class);
-    }
-    return list(_fareRulesByRoute.get(route));
+    return list(ensureFareRulesByRouteRelation().get(route));
   }
 
   private static Set<String> getUniqueValues(String... values) {
@@ -315,66 +275,289 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   @Override
   public List<FareRule> getFareRulesForZoneId(String zoneId) {
-    if (_fareRulesByZoneId == null) {
-      _fareRulesByZoneId = new HashMap<>();
+    return list(ensureFareRulesByZoneIdRelation().get(zoneId));
+  }
+
+  @Override
+  public List<Ridership> getRidershipForTrip(AgencyAndId tripId) {
+    return ensureRidershipByTripRelation().get(tripId);
+  }
+
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Each ensure method builds its relation into a local map and only then
+   * publishes it through the volatile field, so readers see either no
+   * relation or a complete one.
+   */
+  private Map<AgencyAndId, List<String>> ensureTripAgencyIdsByServiceIdRelation() {
+    Map<AgencyAndId, List<String>> tripAgencyIdsByServiceId = _tripAgencyIdsByServiceId;
+    if (tripAgencyIdsByServiceId == null) {
+
+      Map<AgencyAndId, Set<String>> agencyIdsByServiceIds = new HashMap<AgencyAndId, Set<String>>();
+
+      for (Trip trip : getAllTrips()) {
+        AgencyAndId tripId = trip.getId();
+        String tripAgencyId = tripId.getAgencyId();
+        AgencyAndId tripServiceId = trip.getServiceId();
+        Set<String> agencyIds = agencyIdsByServiceIds.get(tripServiceId);
+        if (agencyIds == null) {
+          agencyIds = new HashSet<String>();
+          agencyIdsByServiceIds.put(tripServiceId, agencyIds);
+        }
+        agencyIds.add(tripAgencyId);
+      }
+
+      tripAgencyIdsByServiceId = new HashMap<AgencyAndId, List<String>>();
+
+      for (Map.Entry<AgencyAndId, Set<String>> entry : agencyIdsByServiceIds.entrySet()) {
+        AgencyAndId tripServiceId = entry.getKey();
+        List<String> agencyIds = new ArrayList<String>(entry.getValue());
+        Collections.sort(agencyIds);
+        tripAgencyIdsByServiceId.put(tripServiceId, agencyIds);
+      }
+      _tripAgencyIdsByServiceId = tripAgencyIdsByServiceId;
+    }
+    return tripAgencyIdsByServiceId;
+  }
+
+  private Map<Agency, List<Route>> ensureRoutesByAgencyRelation() {
+    Map<Agency, List<Route>> routesByAgency = _routesByAgency;
+    if (routesByAgency == null) {
+      routesByAgency = mapToValueList(getAllRoutes(), Route::getAgency,
+          getAllAgencies().size());
+      _routesByAgency = routesByAgency;
+    }
+    return routesByAgency;
+  }
+
+  private Map<Stop, List<Stop>> ensureStopsByStationRelation() {
+    Map<Stop, List<Stop>> stopsByStation = _stopsByStation;
+    if (stopsByStation == null) {
+      stopsByStation = new HashMap<Stop, List<Stop>>();
+      for (Stop stop : getAllStops()) {
+        if (stop.getLocationType() == 0 && stop.getParentStation() != null) {
+          Stop parentStation = getStopForId(new AgencyAndId(
+              stop.getId().getAgencyId(), stop.getParentStation()));
+          List<Stop> subStops = stopsByStation.get(parentStation);
+          if (subStops == null) {
+            subStops = new ArrayList<Stop>(2);
+            stopsByStation.put(parentStation, subStops);
+          }
+          subStops.add(stop);
+        }
+      }
+      _stopsByStation = stopsByStation;
+    }
+    return stopsByStation;
+  }
+
+  private Map<String, List<Stop>> ensureStopsByZoneIdRelation() {
+    Map<String, List<Stop>> stopsByZoneId = _stopsByZoneId;
+    if (stopsByZoneId == null) {
+      stopsByZoneId = mapToValueList(getAllStops(), Stop::getZoneId, 0);
+      _stopsByZoneId = stopsByZoneId;
+    }
+    return stopsByZoneId;
+  }
+
+  private Map<Trip, List<StopTime>> ensureStopTimesByTripRelation(
+      boolean parallelSort) {
+    Map<Trip, List<StopTime>> stopTimesByTrip = _stopTimesByTrip;
+    if (stopTimesByTrip == null) {
+      stopTimesByTrip = mapToValueList(getAllStopTimes(), StopTime::getTrip,
+          getAllTrips().size());
+      sortValues(stopTimesByTrip, parallelSort);
+      _stopTimesByTrip = stopTimesByTrip;
+    }
+    return stopTimesByTrip;
+  }
+
+  /**
+   * With packed stop times, both stop time relations are served by a single
+   * index over the packed rows rather than by lists of proxies.
+   */
+  private StopTimeArrayIndex ensureStopTimeArrayIndex(boolean parallelSort) {
+    StopTimeArrayIndex stopTimeArrayIndex = _stopTimeArrayIndex;
+    if (stopTimeArrayIndex == null) {
+      stopTimeArrayIndex = new StopTimeArrayIndex(
+          (PackedStopTimeList) getAllStopTimes(), getAllTrips().size(),
+          getAllStops().size(), parallelSort);
+      _stopTimeArrayIndex = stopTimeArrayIndex;
+    }
+    return stopTimeArrayIndex;
+  }
+
+  private Map<StopLocation, List<StopTime>> ensureStopTimesByStopRelation() {
+    Map<StopLocation, List<StopTime>> stopTimesByStop = _stopTimesByStop;
+    if (stopTimesByStop == null) {
+      stopTimesByStop = mapToValueList(getAllStopTimes(), StopTime::getStop,
+          getAllStops().size());
+      _stopTimesByStop = stopTimesByStop;
+    }
+    return stopTimesByStop;
+  }
+
+  private Map<Route, List<Trip>> ensureTripsByRouteRelation() {
+    Map<Route, List<Trip>> tripsByRoute = _tripsByRoute;
+    if (tripsByRoute == null) {
+      tripsByRoute = mapToValueList(getAllTrips(), Trip::getRoute,
+          getAllRoutes().size());
+      _tripsByRoute = tripsByRoute;
+    }
+    return tripsByRoute;
+  }
+
+  private Map<AgencyAndId, List<Trip>> ensureTripsByShapeIdRelation() {
+    Map<AgencyAndId, List<Trip>> tripsByShapeId = _tripsByShapeId;
+    if (tripsByShapeId == null) {
+      tripsByShapeId = mapToValueList(getAllTrips(), Trip::getShapeId, 0);
+      _tripsByShapeId = tripsByShapeId;
+    }
+    return tripsByShapeId;
+  }
+
+  private Map<AgencyAndId, List<Trip>> ensureTripsByServiceIdRelation() {
+    Map<AgencyAndId, List<Trip>> tripsByServiceId = _tripsByServiceId;
+    if (tripsByServiceId == null) {
+      tripsByServiceId = mapToValueList(getAllTrips(), Trip::getServiceId, 0);
+      _tripsByServiceId = tripsByServiceId;
+    }
+    return tripsByServiceId;
+  }
+
+  private Map<AgencyAndId, List<Trip>> ensureTripsByBlockIdRelation() {
+    Map<AgencyAndId, List<Trip>> tripsByBlockId = _tripsByBlockId;
+    if (tripsByBlockId == null) {
+      tripsByBlockId = new HashMap<AgencyAndId, List<Trip>>();
+      for (Trip trip : getAllTrips()) {
+        if (trip.getBlockId() != null) {
+          AgencyAndId bid = new AgencyAndId(trip.getId().getAgencyId(),
+              trip.getBlockId());
+          List<Trip> trips = tripsByBlockId.get(bid);
+          if (trips == null) {
+            trips = new ArrayList<Trip>();
+            tripsByBlockId.put(bid, trips);
+          }
+          trips.add(trip);
+        }
+      }
+      _tripsByBlockId = tripsByBlockId;
+    }
+    return tripsByBlockId;
+  }
+
+  private Map<Trip, List<Frequency>> ensureFrequenciesByTripRelation() {
+    Map<Trip, List<Frequency>> frequenciesByTrip = _frequenciesByTrip;
+    if (frequenciesByTrip == null) {
+      frequenciesByTrip = mapToValueList(getAllFrequencies(),
+          Frequency::getTrip, 0);
+      _frequenciesByTrip = frequenciesByTrip;
+    }
+    return frequenciesByTrip;
+  }
+
+  private Map<AgencyAndId, List<ServiceCalendarDate>> ensureCalendarDatesByServiceIdRelation() {
+    Map<AgencyAndId, List<ServiceCalendarDate>> calendarDatesByServiceId = _calendarDatesByServiceId;
+    if (calendarDatesByServiceId == null) {
+      calendarDatesByServiceId = mapToValueList(getAllCalendarDates(),
+          ServiceCalendarDate::getServiceId, 0);
+      _calendarDatesByServiceId = calendarDatesByServiceId;
+    }
+    return calendarDatesByServiceId;
+  }
+
+  private Map<AgencyAndId, List<ServiceCalendar>> ensureCalendarsByServiceIdRelation() {
+    Map<AgencyAndId, List<ServiceCalendar>> calendarsByServiceId = _calendarsByServiceId;
+    if (calendarsByServiceId == null) {
+      calendarsByServiceId = mapToValueList(getAllCalendars(),
+          ServiceCalendar::getServiceId, getAllCalendars().size());
+      _calendarsByServiceId = calendarsByServiceId;
+    }
+    return calendarsByServiceId;
+  }
+
+  private Map<FareAttribute, List<FareRule>> ensureFareRulesByFareAttributeRelation() {
+    Map<FareAttribute, List<FareRule>> fareRulesByFareAttribute = _fareRulesByFareAttribute;
+    if (fareRulesByFareAttribute == null) {
+      fareRulesByFareAttribute = mapToValueList(getAllFareRules(),
+          FareRule::getFare, getAllFareAttributes().size());
+      _fareRulesByFareAttribute = fareRulesByFareAttribute;
+    }
+    return fareRulesByFareAttribute;
+  }
+
+  private Map<Route, List<FareRule>> ensureFareRulesByRouteRelation() {
+    Map<Route, List<FareRule>> fareRulesByRoute = _fareRulesByRoute;
+    if (fareRulesByRoute == null) {
+      fareRulesByRoute = mapToValueList(getAllFareRules(), FareRule::getRoute,
+          0);
+      _fareRulesByRoute = fareRulesByRoute;
+    }
+    return fareRulesByRoute;
+  }
+
+  private Map<String, List<FareRule>> ensureFareRulesByZoneIdRelation() {
+    Map<String, List<FareRule>> fareRulesByZoneId = _fareRulesByZoneId;
+    if (fareRulesByZoneId == null) {
+      fareRulesByZoneId = new HashMap<>();
       for (FareRule rule : getAllFareRules()) {
         Set<String> uniqueIds = getUniqueValues(rule.getOriginId(), rule.getContainsId(), rule.getDestinationId());
         for (String id : uniqueIds) {
-          List<FareRule> fareRules = _fareRulesByZoneId.get(id);
+          List<FareRule> fareRules = fareRulesByZoneId.get(id);
           if (fareRules == null) {
             fareRules = new ArrayList<>();
-            _fareRulesByZoneId.put(id, fareRules);
+            fareRulesByZoneId.put(id, fareRules);
           }
           fareRules.add(rule);
         }
       }
+      _fareRulesByZoneId = fareRulesByZoneId;
     }
-    return list(_fareRulesByZoneId.get(zoneId));
+    return fareRulesByZoneId;
   }
 
-  @Override
-  public List<Ridership> getRidershipForTrip(AgencyAndId tripId) {
-    if (_ridershipByTrip == null) {
-      _ridershipByTrip = new HashMap<>();
+  private Map<AgencyAndId, List<Ridership>> ensureRidershipByTripRelation() {
+    Map<AgencyAndId, List<Ridership>> ridershipByTrip = _ridershipByTrip;
+    if (ridershipByTrip == null) {
+      ridershipByTrip = new HashMap<>();
       for (Ridership r : getAllRiderships()) {
         AgencyAndId aid = new AgencyAndId(r.getAgencyId(), r.getTripId());
-        if (_ridershipByTrip.containsKey(aid)) {
-          _ridershipByTrip.get(aid).add(r);
+        if (ridershipByTrip.containsKey(aid)) {
+          ridershipByTrip.get(aid).add(r);
         } else {
           List<Ridership> list = new ArrayList<>();
           list.add(r);
-          _ridershipByTrip.put(aid, list);
+          ridershipByTrip.put(aid, list);
         }
       }
+      _ridershipByTrip = ridershipByTrip;
     }
-    return _ridershipByTrip.get(tripId);
-  }
-
-
-  /****
-   * Private Methods
-   ****/
-
-  private void ensureCalendarDatesByServiceIdRelation() {
-    if (_calendarDatesByServiceId == null) {
-      _calendarDatesByServiceId = mapToValueList(getAllCalendarDates(),
-          "serviceId", AgencyAndId.class);
-    }
+    return ridershipByTrip;
   }
 
-  private void ensureCalendarsByServiceIdRelation() {
-    if (_calendarsByServiceId == null) {
-      _calendarsByServiceId = mapToValueList(getAllCalendars(), "serviceId",
-          AgencyAndId.class);
+  private Map<AgencyAndId, List<ShapePoint>> ensureShapePointRelation(
+      boolean parallelSort) {
+    Map<AgencyAndId, List<ShapePoint>> shapePointsByShapeId = _shapePointsByShapeId;
+    if (shapePointsByShapeId == null) {
+      shapePointsByShapeId = mapToValueList(getAllShapePoints(),
+          ShapePoint::getShapeId, 0);
+      sortValues(shapePointsByShapeId, parallelSort);
+      _shapePointsByShapeId = shapePointsByShapeId;
     }
+    return shapePointsByShapeId;
   }
 
-  private void ensureShapePointRelation() {
-    if (_shapePointsByShapeId == null) {
-      _shapePointsByShapeId = mapToValueList(getAllShapePoints(), "shapeId",
-          AgencyAndId.class);
-      for (List<ShapePoint> shapePoints : _shapePointsByShapeId.values())
-        Collections.sort(shapePoints);
+  private static <K, V extends Comparable<? super V>> void sortValues(
+      Map<K, List<V>> valuesByKey, boolean parallel) {
+    if (parallel) {
+      valuesByKey.values().parallelStream().forEach(Collections::sort);
+    } else {
+      for (List<V> values : valuesByKey.values())
+        Collections.sort(values);
     }
   }
 
@@ -384,33 +567,30 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     return Collections.unmodifiableList(list);
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V> Map<K, List<V>> mapToValueList(Iterable<V> values,
-      String property, Class<K> keyType) {
-    return mapToValueCollection(values, property, keyType,
-        new ArrayList<V>().getClass());
-  }
-
-  @SuppressWarnings("unchecked")
-  private static <K, V, C extends Collection<V>, CIMPL extends C> Map<K, C> mapToValueCollection(
-      Iterable<V> values, String property, Class<K> keyType,
-      Class<CIMPL> collectionType) {
-
-    Map<K, C> byKey = new HashMap<K, C>();
-    SimplePropertyQuery query = new SimplePropertyQuery(property);
+  /**
+   * Groups values by the key returned by {@code keyFunction}, keeping the
+   * iteration order of the values within each group.
+   * 
+   * @param expectedKeyCount the expected number of distinct keys, used to size
+   *          the map and the value lists, or zero if unknown
+   */
+  private static <K, V> Map<K, List<V>> mapToValueList(Collection<V> values,
+      Function<? super V, ? extends K> keyFunction, int expectedKeyCount) {
+
+    int listCapacity = 10;
+    Map<K, List<V>> byKey;
+    if (expectedKeyCount > 0) {
+      byKey = new HashMap<K, List<V>>((int) (expectedKeyCount / 0.75f) + 1);
+      listCapacity = Math.max(1, values.size() / expectedKeyCount);
+    } else {
+      byKey = new HashMap<K, List<V>>();
+    }
 
     for (V value : values) {
-
-      K key = (K) query.invoke(value);
-      C valuesForKey = byKey.get(key);
+      K key = keyFunction.apply(value);
+      List<V> valuesForKey = byKey.get(key);
       if (valuesForKey == null) {
-
-        try {
-          valuesForKey = collectionType.newInstance();
-        } catch (Exception ex) {
-          throw new EntityInstantiationException(collectionType, ex);
-        }
-
+        valuesForKey = new ArrayList<V>(listCapacity);
         byKey.put(key, valuesForKey);
       }
       valuesForKey.add(value);
@@ -425,21 +605,4 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     return null;
   }
 
-  private static final class SimplePropertyQuery {
-
-    private String[] _properties;
-
-    public SimplePropertyQuery(String query) {
-      _properties = query.split("\\.");
-    }
-
-    public Object invoke(Object value) {
-      for (String property : _properties) {
-        BeanWrapper wrapper = BeanWrapperFactory.wrap(value);
-        value = wrapper.getPropertyValue(property);
-      }
-      return value;
-    }
-  }
-
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * Common base of the packed stop time stores used by {@link GtfsDaoImpl} when
+ * {@link GtfsDaoImpl#setPackStopTimes(boolean)} is enabled. Stop times are
+ * addressed by row, and {@link #get(int)} returns a {@link StopTime} proxy
+ * backed by the row.
+ *
+ * @see StopTimeArray
+ * @see ScratchMappedStopTimeArray
+ */
+abstract class PackedStopTimeList extends AbstractList<StopTime> {
+
+  /**
+   * Called once loading is done, to release any spare capacity.
+   */
+  public abstract void trimToSize();
+
+  /****
+   * Row Access
+   *
+   * Reads a single column of a row without materializing a {@link StopTime},
+   * for building indexes over the packed rows.
+   ****/
+
+  abstract Trip getTripForRow(int index);
+
+  abstract StopLocation getStopForRow(int index);
+
+  abstract int getStopSequenceForRow(int index);
+}
@@ -0,0 +1,655 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.model.Area;
+import org.onebusaway.gtfs.model.BookingRule;
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.StopTimeProxy;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * A packed stop time store like {@link StopTimeArray}, but with the rows kept
+ * in a memory-mapped scratch file instead of on-heap arrays, so that large
+ * feeds live mostly outside the garbage-collected heap and in the OS page
+ * cache. The file belongs to this list in this process alone; it can't be
+ * shared with other processes or kept across restarts.
+ *
+ * Each row is a fixed-size record of the primitive columns. Object columns
+ * (trips, stops, areas, booking rules and strings) are stored as int
+ * references into on-heap dictionaries of distinct values, which are small
+ * compared to the rows. The file is mapped in segments, so it can grow past
+ * the 2 GB limit of a single mapping.
+ *
+ * The file can't be reopened, as the object columns refer to the on-heap
+ * dictionaries, which are not written out. {@link #close()} releases the file handle, which is opened
+ * again if rows are added afterwards.
+ *
+ * Like {@link StopTimeArray}, adding rows is not thread-safe, but once loaded
+ * the rows can be read from any number of threads.
+ *
+ * @see GtfsDaoImpl#setPackStopTimesScratchFile(File)
+ */
+public class ScratchMappedStopTimeArray extends PackedStopTimeList implements
+    Closeable {
+
+  private static final int MAGIC = 0x47535431; // "GST1"
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 64;
+
+  /****
+   * Record layout, with the doubles first to keep them aligned
+   ****/
+
+  private static final int SHAPE_DIST_TRAVELED = 0;
+
+  private static final int MEAN_DURATION_FACTOR = 8;
+
+  private static final int MEAN_DURATION_OFFSET = 16;
+
+  private static final int SAFE_DURATION_FACTOR = 24;
+
+  private static final int SAFE_DURATION_OFFSET = 32;
+
+  private static final int ARRIVAL_TIME = 40;
+
+  private static final int DEPARTURE_TIME = 44;
+
+  private static final int TIMEPOINT = 48;
+
+  private static final int STOP_SEQUENCE = 52;
+
+  private static final int PICKUP_TYPE = 56;
+
+  private static final int DROP_OFF_TYPE = 60;
+
+  private static final int TRIP = 64;
+
+  private static final int STOP = 68;
+
+  private static final int LOCATION = 72;
+
+  private static final int LOCATION_GROUP = 76;
+
+  private static final int START_SERVICE_AREA = 80;
+
+  private static final int END_SERVICE_AREA = 84;
+
+  private static final int PICKUP_BOOKING_RULE = 88;
+
+  private static final int DROP_OFF_BOOKING_RULE = 92;
+
+  private static final int STOP_HEADSIGN = 96;
+
+  private static final int ROUTE_SHORT_NAME = 100;
+
+  private static final int FREE_RUNNING_FLAG = 104;
+
+  static final int RECORD_SIZE = 112;
+
+  private static final int ROWS_PER_SEGMENT_SHIFT = 18;
+
+  private static final int ROWS_PER_SEGMENT = 1 << ROWS_PER_SEGMENT_SHIFT;
+
+  private static final int SEGMENT_SIZE = ROWS_PER_SEGMENT * RECORD_SIZE;
+
+  private final File _path;
+
+  private FileChannel _channel;
+
+  private final ByteBuffer _header;
+
+  private ByteBuffer[] _segments = new ByteBuffer[0];
+
+  private int _size = 0;
+
+  private final Dictionary<Trip> _trips = new Dictionary<Trip>(true);
+
+  private final Dictionary<StopLocation> _stopLocations = new Dictionary<StopLocation>(
+      true);
+
+  private final Dictionary<Area> _areas = new Dictionary<Area>(true);
+
+  private final Dictionary<BookingRule> _bookingRules = new Dictionary<BookingRule>(
+      true);
+
+  private final Dictionary<String> _strings = new Dictionary<String>(false);
+
+  /**
+   * Creates the backing file, replacing any existing file at the path.
+   *
+   * @param path the backing file
+   * @throws IOException if the file can't be created or mapped
+   */
+  public ScratchMappedStopTimeArray(File path) throws IOException {
+    _path = path;
+    _channel = FileChannel.open(path.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    _header = _channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE).order(
+        ByteOrder.nativeOrder());
+    _header.putInt(0, MAGIC);
+    _header.putInt(4, VERSION);
+    _header.putInt(8, RECORD_SIZE);
+    _header.putInt(12, ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1
+        : 0);
+    writeRowCount();
+  }
+
+  /**
+   * Records the row count in the file header, for inspecting the file while
+   * it is in use. The backing file stays mapped in whole segments, so it may
+   * be up to one segment larger than the rows.
+   */
+  @Override
+  public void trimToSize() {
+    writeRowCount();
+  }
+
+  /**
+   * Closes the backing file. The mapped rows remain readable and writable
+   * until the list is garbage collected, as the JDK offers no way to unmap
+   * them sooner.
+   */
+  @Override
+  public void close() throws IOException {
+    if (_channel.isOpen()) {
+      writeRowCount();
+      _channel.close();
+    }
+  }
+
+  /****
+   * {@link PackedStopTimeList} Row Access
+   ****/
+
+  @Override
+  Trip getTripForRow(int index) {
+    return _trips.getValue(getInt(index, TRIP));
+  }
+
+  @Override
+  StopLocation getStopForRow(int index) {
+    return _stopLocations.getValue(getInt(index, STOP));
+  }
+
+  @Override
+  int getStopSequenceForRow(int index) {
+    return getInt(index, STOP_SEQUENCE);
+  }
+
+  /****
+   * {@link java.util.Collection} Interface
+   ****/
+
+  @Override
+  public boolean add(StopTime stopTime) {
+    int index = _size;
+    ensureCapacity(index + 1);
+    _size++;
+
+    putDouble(index, SHAPE_DIST_TRAVELED, stopTime.getShapeDistTraveled());
+    putDouble(index, MEAN_DURATION_FACTOR, stopTime.getMeanDurationFactor());
+    putDouble(index, MEAN_DURATION_OFFSET, stopTime.getMeanDurationOffset());
+    putDouble(index, SAFE_DURATION_FACTOR, stopTime.getSafeDurationFactor());
+    putDouble(index, SAFE_DURATION_OFFSET, stopTime.getSafeDurationOffset());
+    putInt(index, ARRIVAL_TIME, stopTime.getArrivalTime());
+    putInt(index, DEPARTURE_TIME, stopTime.getDepartureTime());
+    putInt(index, TIMEPOINT, stopTime.getTimepoint());
+    putInt(index, STOP_SEQUENCE, stopTime.getStopSequence());
+    putInt(index, PICKUP_TYPE, stopTime.getPickupType());
+    putInt(index, DROP_OFF_TYPE, stopTime.getDropOffType());
+    putInt(index, TRIP, _trips.getOrdinal(stopTime.getTrip()));
+    putInt(index, STOP, _stopLocations.getOrdinal(stopTime.getStop()));
+    putInt(index, LOCATION, _stopLocations.getOrdinal(stopTime.getLocation()));
+    putInt(index, LOCATION_GROUP,
+        _stopLocations.getOrdinal(stopTime.getLocationGroup()));
+    putInt(index, START_SERVICE_AREA,
+        _areas.getOrdinal(stopTime.getStartServiceArea()));
+    putInt(index, END_SERVICE_AREA,
+        _areas.getOrdinal(stopTime.getEndServiceArea()));
+    putInt(index, PICKUP_BOOKING_RULE,
+        _bookingRules.getOrdinal(stopTime.getPickupBookingRule()));
+    putInt(index, DROP_OFF_BOOKING_RULE,
+        _bookingRules.getOrdinal(stopTime.getDropOffBookingRule()));
+    putInt(index, STOP_HEADSIGN, _strings.getOrdinal(stopTime.getStopHeadsign()));
+    putInt(index, ROUTE_SHORT_NAME,
+        _strings.getOrdinal(stopTime.getRouteShortName()));
+    putInt(index, FREE_RUNNING_FLAG,
+        _strings.getOrdinal(stopTime.getFreeRunningFlag()));
+
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    _size = 0;
+    _trips.clear();
+    _stopLocations.clear();
+    _areas.clear();
+    _bookingRules.clear();
+    _strings.clear();
+    writeRowCount();
+  }
+
+  @Override
+  public StopTime get(int index) {
+    if (index < 0 || index >= _size) {
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + _size);
+    }
+    StopTime stopTime = new StopTime();
+    stopTime.setProxy(new StopTimeProxyImpl(index));
+    return stopTime;
+  }
+
+  @Override
+  public int size() {
+    return _size;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeRowCount() {
+    _header.putInt(16, _size);
+  }
+
+  private void ensureCapacity(int capacity) {
+    int segmentCount = (capacity + ROWS_PER_SEGMENT - 1) >>> ROWS_PER_SEGMENT_SHIFT;
+    if (segmentCount <= _segments.length)
+      return;
+    ByteBuffer[] segments = Arrays.copyOf(_segments, segmentCount);
+    for (int i = _segments.length; i < segmentCount; i++) {
+      try {
+        if (!_channel.isOpen()) {
+          _channel = FileChannel.open(_path.toPath(), StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+        }
+        segments[i] = _channel.map(MapMode.READ_WRITE,
+            HEADER_SIZE + (long) i * SEGMENT_SIZE, SEGMENT_SIZE).order(
+            ByteOrder.nativeOrder());
+      } catch (IOException ex) {
+        throw new IllegalStateException("error mapping stop time segment " + i,
+            ex);
+      }
+    }
+    _segments = segments;
+  }
+
+  private int getInt(int index, int field) {
+    return _segments[index >>> ROWS_PER_SEGMENT_SHIFT].getInt(offset(index)
+        + field);
+  }
+
+  private void putInt(int index, int field, int value) {
+    _segments[index >>> ROWS_PER_SEGMENT_SHIFT].putInt(offset(index) + field,
+        value);
+  }
+
+  private double getDouble(int index, int field) {
+    return _segments[index >>> ROWS_PER_SEGMENT_SHIFT].getDouble(offset(index)
+        + field);
+  }
+
+  private void putDouble(int index, int field, double value) {
+    _segments[index >>> ROWS_PER_SEGMENT_SHIFT].putDouble(
+        offset(index) + field, value);
+  }
+
+  private static int offset(int index) {
+    return (index & (ROWS_PER_SEGMENT - 1)) * RECORD_SIZE;
+  }
+
+  /**
+   * Distinct values of an object column, referenced by ordinal from the rows,
+   * with -1 for null. Entities are matched by identity, since their ids may
+   * change after they have been added.
+   */
+  private static class Dictionary<T> {
+
+    private final List<T> _values = new ArrayList<T>();
+
+    private final Map<T, Integer> _ordinals;
+
+    public Dictionary(boolean identity) {
+      _ordinals = identity ? new IdentityHashMap<T, Integer>()
+          : new HashMap<T, Integer>();
+    }
+
+    public int getOrdinal(T value) {
+      if (value == null)
+        return -1;
+      Integer ordinal = _ordinals.get(value);
+      if (ordinal == null) {
+        ordinal = _values.size();
+        _values.add(value);
+        _ordinals.put(value, ordinal);
+      }
+      return ordinal;
+    }
+
+    public T getValue(int ordinal) {
+      if (ordinal == -1)
+        return null;
+      return _values.get(ordinal);
+    }
+
+    public void clear() {
+      _values.clear();
+      _ordinals.clear();
+    }
+  }
+
+  private class StopTimeProxyImpl implements StopTimeProxy {
+
+    private final int index;
+
+    public StopTimeProxyImpl(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Integer getId() {
+      return index;
+    }
+
+    @Override
+    public void setId(Integer id) {
+      // ignored
+    }
+
+    @Override
+    public Trip getTrip() {
+      return _trips.getValue(getInt(index, TRIP));
+    }
+
+    @Override
+    public void setTrip(Trip trip) {
+      putInt(index, TRIP, _trips.getOrdinal(trip));
+    }
+
+    @Override
+    public Area getStartServiceArea() {
+      return _areas.getValue(getInt(index, START_SERVICE_AREA));
+    }
+
+    @Override
+    public void setStartServiceArea(Area area) {
+      putInt(index, START_SERVICE_AREA, _areas.getOrdinal(area));
+    }
+
+    @Override
+    public Area getEndServiceArea() {
+      return _areas.getValue(getInt(index, END_SERVICE_AREA));
+    }
+
+    @Override
+    public void setEndServiceArea(Area area) {
+      putInt(index, END_SERVICE_AREA, _areas.getOrdinal(area));
+    }
+
+    @Override
+    public int getStopSequence() {
+      return getInt(index, STOP_SEQUENCE);
+    }
+
+    @Override
+    public void setStopSequence(int stopSequence) {
+      putInt(index, STOP_SEQUENCE, stopSequence);
+    }
+
+    @Override
+    public StopLocation getStop() {
+      return _stopLocations.getValue(getInt(index, STOP));
+    }
+
+    @Override
+    public StopLocation getLocation() {
+      return _stopLocations.getValue(getInt(index, LOCATION));
+    }
+
+    @Override
+    public StopLocation getLocationGroup() {
+      return _stopLocations.getValue(getInt(index, LOCATION_GROUP));
+    }
+
+    @Override
+    public void setStop(StopLocation stop) {
+      putInt(index, STOP, _stopLocations.getOrdinal(stop));
+    }
+
+    @Override
+    public void setLocation(StopLocation location) {
+      putInt(index, LOCATION, _stopLocations.getOrdinal(location));
+    }
+
+    @Override
+    public void setLocationGroup(StopLocation group) {
+      putInt(index, LOCATION_GROUP, _stopLocations.getOrdinal(group));
+    }
+
+    @Override
+    public boolean isArrivalTimeSet() {
+      return getArrivalTime() != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getArrivalTime() {
+      return getInt(index, ARRIVAL_TIME);
+    }
+
+    @Override
+    public void setArrivalTime(int arrivalTime) {
+      putInt(index, ARRIVAL_TIME, arrivalTime);
+    }
+
+    @Override
+    public void clearArrivalTime() {
+      putInt(index, ARRIVAL_TIME, StopTime.MISSING_VALUE);
+    }
+
+    @Override
+    public boolean isDepartureTimeSet() {
+      return getDepartureTime() != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getDepartureTime() {
+      return getInt(index, DEPARTURE_TIME);
+    }
+
+    @Override
+    public void setDepartureTime(int departureTime) {
+      putInt(index, DEPARTURE_TIME, departureTime);
+    }
+
+    @Override
+    public void clearDepartureTime() {
+      putInt(index, DEPARTURE_TIME, StopTime.MISSING_VALUE);
+    }
+
+    @Override
+    public boolean isTimepointSet() {
+      return getTimepoint() != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public int getTimepoint() {
+      return getInt(index, TIMEPOINT);
+    }
+
+    @Override
+    public void setTimepoint(int timepoint) {
+      putInt(index, TIMEPOINT, timepoint);
+    }
+
+    @Override
+    public void clearTimepoint() {
+      putInt(index, TIMEPOINT, StopTime.MISSING_VALUE);
+    }
+
+    @Override
+    public String getStopHeadsign() {
+      return _strings.getValue(getInt(index, STOP_HEADSIGN));
+    }
+
+    @Override
+    public void setStopHeadsign(String headSign) {
+      putInt(index, STOP_HEADSIGN, _strings.getOrdinal(headSign));
+    }
+
+    @Override
+    public String getRouteShortName() {
+      return _strings.getValue(getInt(index, ROUTE_SHORT_NAME));
+    }
+
+    @Override
+    public void setRouteShortName(String routeShortName) {
+      putInt(index, ROUTE_SHORT_NAME, _strings.getOrdinal(routeShortName));
+    }
+
+    @Override
+    public int getPickupType() {
+      return getInt(index, PICKUP_TYPE);
+    }
+
+    @Override
+    public void setPickupType(int pickupType) {
+      putInt(index, PICKUP_TYPE, pickupType);
+    }
+
+    @Override
+    public int getDropOffType() {
+      return getInt(index, DROP_OFF_TYPE);
+    }
+
+    @Override
+    public void setDropOffType(int dropOffType) {
+      putInt(index, DROP_OFF_TYPE, dropOffType);
+    }
+
+    @Override
+    public boolean isShapeDistTraveledSet() {
+      return getShapeDistTraveled() != StopTime.MISSING_VALUE;
+    }
+
+    @Override
+    public double getShapeDistTraveled() {
+      return getDouble(index, SHAPE_DIST_TRAVELED);
+    }
+
+    @Override
+    public void setShapeDistTraveled(double shapeDistTraveled) {
+      putDouble(index, SHAPE_DIST_TRAVELED, shapeDistTraveled);
+    }
+
+    @Override
+    public void clearShapeDistTraveled() {
+      putDouble(index, SHAPE_DIST_TRAVELED, StopTime.MISSING_VALUE);
+    }
+
+    @Override
+    public BookingRule getPickupBookingRule() {
+      return _bookingRules.getValue(getInt(index, PICKUP_BOOKING_RULE));
+    }
+
+    @Override
+    public void setPickupBookingRule(BookingRule pickupBookingRule) {
+      putInt(index, PICKUP_BOOKING_RULE,
+          _bookingRules.getOrdinal(pickupBookingRule));
+    }
+
+    @Override
+    public BookingRule getDropOffBookingRule() {
+      return _bookingRules.getValue(getInt(index, DROP_OFF_BOOKING_RULE));
+    }
+
+    @Override
+    public void setDropOffBookingRule(BookingRule dropOffBookingRule) {
+      putInt(index, DROP_OFF_BOOKING_RULE,
+          _bookingRules.getOrdinal(dropOffBookingRule));
+    }
+
+    @Override
+    public double getMeanDurationFactor() {
+      return getDouble(index, MEAN_DURATION_FACTOR);
+    }
+
+    @Override
+    public void setMeanDurationFactor(double meanDurationFactor) {
+      putDouble(index, MEAN_DURATION_FACTOR, meanDurationFactor);
+    }
+
+    @Override
+    public double getMeanDurationOffset() {
+      return getDouble(index, MEAN_DURATION_OFFSET);
+    }
+
+    @Override
+    public void setMeanDurationOffset(double meanDurationOffset) {
+      putDouble(index, MEAN_DURATION_OFFSET, meanDurationOffset);
+    }
+
+    @Override
+    public double getSafeDurationFactor() {
+      return getDouble(index, SAFE_DURATION_FACTOR);
+    }
+
+    @Override
+    public void setSafeDurationFactor(double safeDurationFactor) {
+      putDouble(index, SAFE_DURATION_FACTOR, safeDurationFactor);
+    }
+
+    @Override
+    public double getSafeDurationOffset() {
+      return getDouble(index, SAFE_DURATION_OFFSET);
+    }
+
+    @Override
+    public void setSafeDurationOffset(double safeDurationOffset) {
+      putDouble(index, SAFE_DURATION_OFFSET, safeDurationOffset);
+    }
+
+    @Override
+    public String getFreeRunningFlag() {
+      return _strings.getValue(getInt(index, FREE_RUNNING_FLAG));
+    }
+
+    @Override
+    public void setFreeRunningFlag(String freeRunningFlag) {
+      putInt(index, FREE_RUNNING_FLAG, _strings.getOrdinal(freeRunningFlag));
+    }
+  }
+}
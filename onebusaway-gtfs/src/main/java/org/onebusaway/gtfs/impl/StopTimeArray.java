@@ -15,7 +15,6 @@
  */
 package org.onebusaway.gtfs.impl;
 
-import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -23,7 +22,7 @@ import java.util.NoSuchElementException;
 
 import org.onebusaway.gtfs.model.*;
 
-public class StopTimeArray extends AbstractList<StopTime> {
+public class StopTimeArray extends PackedStopTimeList {
 
   private int size = 0;
 
@@ -71,10 +70,30 @@ public class StopTimeArray extends AbstractList<StopTime> {
 
   private String[] freeRunningFlags = new String[0];
   
+  @Override
   public void trimToSize() {
     setLength(size);
   }
 
+  /****
+   * {@link PackedStopTimeList} Row Access
+   ****/
+
+  @Override
+  Trip getTripForRow(int index) {
+    return trips[index];
+  }
+
+  @Override
+  StopLocation getStopForRow(int index) {
+    return stops[index];
+  }
+
+  @Override
+  int getStopSequenceForRow(int index) {
+    return stopSequences[index];
+  }
+
   /****
    * {@link Collection} Interface
    ****/
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * Indexes the rows of a {@link PackedStopTimeList} by trip and by stop in
+ * compressed sparse row form: each trip and stop gets a dense ordinal, and the
+ * rows of ordinal {@code i} are {@code rows[offsets[i]]} through
+ * {@code rows[offsets[i + 1] - 1]}. Rows of a trip are sorted by stop
+ * sequence, rows of a stop keep their order in the list. Lookups return
+ * read-only views that only materialize a {@link StopTime} proxy on access, so
+ * the whole index costs two ints per stop time plus one map entry per trip and
+ * stop, instead of a list of {@link StopTime} objects per key.
+ *
+ * The index is a snapshot: it must be rebuilt if stop times are added to the
+ * list.
+ *
+ * @see GtfsRelationalDaoImpl
+ */
+class StopTimeArrayIndex {
+
+  private final PackedStopTimeList _stopTimes;
+
+  private final Map<Trip, Integer> _tripOrdinals;
+
+  private final int[] _tripOffsets;
+
+  private final int[] _tripRows;
+
+  private final Map<StopLocation, Integer> _stopOrdinals;
+
+  private final int[] _stopOffsets;
+
+  private final int[] _stopRows;
+
+  /**
+   * @param stopTimes the packed stop times to index
+   * @param expectedTripCount a hint for the number of trips, or 0 if unknown
+   * @param expectedStopCount a hint for the number of stops, or 0 if unknown
+   * @param parallelSort whether to sort the rows of each trip in parallel
+   */
+  public StopTimeArrayIndex(PackedStopTimeList stopTimes, int expectedTripCount,
+      int expectedStopCount, boolean parallelSort) {
+    _stopTimes = stopTimes;
+
+    int rowCount = stopTimes.size();
+    int[] rowOrdinals = new int[rowCount];
+
+    _tripOrdinals = assignOrdinals(rowCount, stopTimes::getTripForRow,
+        expectedTripCount, rowOrdinals);
+    _tripOffsets = new int[_tripOrdinals.size() + 1];
+    _tripRows = groupRows(rowOrdinals, _tripOffsets);
+    sortTripRows(parallelSort);
+
+    _stopOrdinals = assignOrdinals(rowCount, stopTimes::getStopForRow,
+        expectedStopCount, rowOrdinals);
+    _stopOffsets = new int[_stopOrdinals.size() + 1];
+    _stopRows = groupRows(rowOrdinals, _stopOffsets);
+  }
+
+  /**
+   * @return the stop times of the trip, ordered by stop sequence, or null if
+   *         the trip has none
+   */
+  public List<StopTime> getStopTimesForTrip(Trip trip) {
+    return getView(_tripOrdinals.get(trip), _tripOffsets, _tripRows);
+  }
+
+  /**
+   * @return the stop times serving the stop, or null if there are none
+   */
+  public List<StopTime> getStopTimesForStop(StopLocation stop) {
+    return getView(_stopOrdinals.get(stop), _stopOffsets, _stopRows);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Assigns each distinct non-null key a dense ordinal in order of first
+   * appearance, and records the ordinal of each row, or -1 for rows without
+   * a key.
+   */
+  private static <K> Map<K, Integer> assignOrdinals(int rowCount,
+      IntFunction<K> keyForRow, int expectedKeyCount, int[] rowOrdinals) {
+    Map<K, Integer> ordinals = expectedKeyCount > 0
+        ? new HashMap<K, Integer>((int) (expectedKeyCount / 0.75f) + 1)
+        : new HashMap<K, Integer>();
+    for (int row = 0; row < rowCount; row++) {
+      K key = keyForRow.apply(row);
+      if (key == null) {
+        rowOrdinals[row] = -1;
+        continue;
+      }
+      Integer ordinal = ordinals.get(key);
+      if (ordinal == null) {
+        ordinal = ordinals.size();
+        ordinals.put(key, ordinal);
+      }
+      rowOrdinals[row] = ordinal;
+    }
+    return ordinals;
+  }
+
+  /**
+   * Counting sort of the rows by ordinal, filling in {@code offsets} and
+   * returning the grouped rows. Rows keep their relative order within a
+   * group.
+   */
+  private static int[] groupRows(int[] rowOrdinals, int[] offsets) {
+    for (int ordinal : rowOrdinals) {
+      if (ordinal >= 0)
+        offsets[ordinal + 1]++;
+    }
+    for (int i = 1; i < offsets.length; i++)
+      offsets[i] += offsets[i - 1];
+
+    int[] rows = new int[offsets[offsets.length - 1]];
+    int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+    for (int row = 0; row < rowOrdinals.length; row++) {
+      int ordinal = rowOrdinals[row];
+      if (ordinal >= 0)
+        rows[next[ordinal]++] = row;
+    }
+    return rows;
+  }
+
+  private void sortTripRows(boolean parallel) {
+    IntStream ordinals = IntStream.range(0, _tripOffsets.length - 1);
+    if (parallel)
+      ordinals = ordinals.parallel();
+    ordinals.forEach(this::sortTripRows);
+  }
+
+  /**
+   * Sorts the rows of one trip by stop sequence. Feeds almost always list
+   * stop times in order, so the already sorted case is checked first. Ties
+   * keep their row order, matching the stable sort of the unpacked relation.
+   */
+  private void sortTripRows(int ordinal) {
+    int from = _tripOffsets[ordinal];
+    int to = _tripOffsets[ordinal + 1];
+
+    boolean sorted = true;
+    for (int i = from + 1; i < to && sorted; i++) {
+      sorted = _stopTimes.getStopSequenceForRow(_tripRows[i - 1]) <= _stopTimes.getStopSequenceForRow(_tripRows[i]);
+    }
+    if (sorted)
+      return;
+
+    // Rows are non-negative ints, so packing the stop sequence above the row
+    // sorts by sequence, then by row
+    long[] keys = new long[to - from];
+    for (int i = from; i < to; i++) {
+      int row = _tripRows[i];
+      keys[i - from] = ((long) _stopTimes.getStopSequenceForRow(row) << 32)
+          | row;
+    }
+    Arrays.sort(keys);
+    for (int i = from; i < to; i++)
+      _tripRows[i] = (int) keys[i - from];
+  }
+
+  private List<StopTime> getView(Integer ordinal, int[] offsets, int[] rows) {
+    if (ordinal == null)
+      return null;
+    int from = offsets[ordinal];
+    return new StopTimeView(rows, from, offsets[ordinal + 1] - from);
+  }
+
+  private class StopTimeView extends AbstractList<StopTime> implements
+      RandomAccess {
+
+    private final int[] _rows;
+
+    private final int _from;
+
+    private final int _size;
+
+    public StopTimeView(int[] rows, int from, int size) {
+      _rows = rows;
+      _from = from;
+      _size = size;
+    }
+
+    @Override
+    public StopTime get(int index) {
+      if (index < 0 || index >= _size)
+        throw new IndexOutOfBoundsException("index=" + index + " size="
+            + _size);
+      return _stopTimes.get(_rows[_from + index]);
+    }
+
+    @Override
+    public int size() {
+      return _size;
+    }
+  }
+}
@@ -17,7 +17,14 @@
  */
 package org.onebusaway.gtfs.impl.calendar;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -44,12 +51,18 @@ import org.slf4j.LoggerFactory;
 public class CalendarServiceDataFactoryImpl implements
         CalendarServiceDataFactory {
 
+  private static final int MIN_SERVICE_IDS_PER_TASK = 64;
+
   private final Logger _log = LoggerFactory.getLogger(CalendarServiceDataFactoryImpl.class);
 
   private GtfsRelationalDao _dao;
 
   private int _excludeFutureServiceDatesInDays;
 
+  private int _parallelism = Runtime.getRuntime().availableProcessors();
+
+  private ExecutorService _executor = ForkJoinPool.commonPool();
+
   public static CalendarService createService(GtfsRelationalDao dao) {
     CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
             dao);
@@ -73,6 +86,32 @@ public class CalendarServiceDataFactoryImpl implements
     _excludeFutureServiceDatesInDays = excludeFutureServiceDatesInDays;
   }
 
+  /**
+   * Sets the number of threads that service ids are expanded on, including
+   * the calling thread. The dao is only read on the calling thread, before
+   * the expansion starts. Small sets of service ids, such as most updates,
+   * are expanded on the calling thread alone. Defaults to the number of
+   * available processors.
+   *
+   * @param parallelism the number of worker threads
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + parallelism);
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Sets the pool that service ids are expanded on alongside the calling
+   * thread. The pool is not shut down. Defaults to the common pool.
+   *
+   * @param executor
+   */
+  public void setExecutor(ExecutorService executor) {
+    _executor = executor;
+  }
+
   @Override
   public CalendarServiceData createData() {
 
@@ -117,64 +156,80 @@ public class CalendarServiceDataFactoryImpl implements
 
     List<AgencyAndId> serviceIds = _dao.getAllServiceIds();
 
-    int index = 0;
+    _log.info("expanding service dates: serviceIds=" + serviceIds.size());
+
+    List<ServiceIdExpansion> expansions = new ArrayList<ServiceIdExpansion>(
+            serviceIds.size());
 
     for (AgencyAndId serviceId : serviceIds) {
+      expansions.add(createExpansion(data, serviceId,
+              _dao.getCalendarForServiceId(serviceId),
+              _dao.getCalendarDatesForServiceId(serviceId),
+              tripAgencyIdsReferencingServiceId.get(serviceId),
+              timeZoneMapByAgencyId));
+    }
 
-      index++;
+    expand(new ServiceDateExpander(getLastIncludedDay()), expansions);
+    putExpansions(data, expansions);
 
-      _log.info("serviceId=" + serviceId + " (" + index + "/"
-              + serviceIds.size() + ")");
+    return data;
+  }
 
-      TimeZone serviceIdTimeZone = data.getTimeZoneForAgencyId(serviceId.getAgencyId());
-      if (serviceIdTimeZone == null) {
-        serviceIdTimeZone = TimeZone.getDefault();
-      }
+  @Override
+  public void updateData(CalendarServiceData data,
+                         Collection<AgencyAndId> serviceIds) {
 
-      Set<ServiceDate> activeDates = getServiceDatesForServiceId(serviceId,
-              serviceIdTimeZone);
+    Set<AgencyAndId> updatedServiceIds = new LinkedHashSet<AgencyAndId>(
+            serviceIds);
 
-      List<ServiceDate> serviceDates = new ArrayList<ServiceDate>(activeDates);
-      Collections.sort(serviceDates);
+    _log.info("updating service dates: serviceIds=" + updatedServiceIds.size());
 
-      data.putServiceDatesForServiceId(serviceId, serviceDates);
+    Map<String, TimeZone> timeZoneMapByAgencyId = new HashMap<String, TimeZone>();
+    for (Agency a : _dao.getAllAgencies()) {
+      timeZoneMapByAgencyId.put(a.getId(), TimeZone.getTimeZone(a.getTimezone()));
+    }
 
-      List<String> tripAgencyIds = tripAgencyIdsReferencingServiceId.get(serviceId);
+    List<ServiceIdExpansion> expansions = new ArrayList<ServiceIdExpansion>(
+            updatedServiceIds.size());
 
-      Set<TimeZone> timeZones = new HashSet<TimeZone>();
-      for (String tripAgencyId : tripAgencyIds) {
-        TimeZone timeZone = timeZoneMapByAgencyId.get(tripAgencyId);
-        if (timeZone == null) {
-          throw new IllegalStateException("no timezone for agency " + tripAgencyId);
-        }
-        timeZones.add(timeZone);
+    for (AgencyAndId serviceId : updatedServiceIds) {
+      ServiceCalendar calendar = _dao.getCalendarForServiceId(serviceId);
+      List<ServiceCalendarDate> calendarDates = _dao.getCalendarDatesForServiceId(serviceId);
+      if (calendar == null && calendarDates.isEmpty()) {
+        data.removeServiceId(serviceId);
+        continue;
       }
+      expansions.add(createExpansion(data, serviceId, calendar, calendarDates,
+              _dao.getTripAgencyIdsReferencingServiceId(serviceId),
+              timeZoneMapByAgencyId));
+    }
 
-      for (TimeZone timeZone : timeZones) {
+    expand(new ServiceDateExpander(getLastIncludedDay()), expansions);
 
-        List<Date> dates = new ArrayList<Date>(serviceDates.size());
-        for (ServiceDate serviceDate : serviceDates) {
-          dates.add(serviceDate.getAsDate(timeZone));
-        }
-
-        LocalizedServiceId id = new LocalizedServiceId(serviceId, timeZone);
-        data.putDatesForLocalizedServiceId(id, dates);
+    /**
+     * The trips of a service id may have moved between agencies, so its
+     * localized dates are replaced rather than overwritten
+     */
+    for (LocalizedServiceId id : new ArrayList<LocalizedServiceId>(
+            data.getLocalizedServiceIds())) {
+      if (updatedServiceIds.contains(id.getId())) {
+        data.removeDatesForLocalizedServiceId(id);
       }
     }
 
-    return data;
+    putExpansions(data, expansions);
   }
 
   public Set<ServiceDate> getServiceDatesForServiceId(AgencyAndId serviceId,
                                                       TimeZone serviceIdTimeZone) {
+    ServiceDateExpander expander = new ServiceDateExpander(getLastIncludedDay());
+    List<LocalDate> days = expander.expand(
+            _dao.getCalendarForServiceId(serviceId),
+            _dao.getCalendarDatesForServiceId(serviceId),
+            serviceIdTimeZone.toZoneId());
     Set<ServiceDate> activeDates = new HashSet<ServiceDate>();
-    ServiceCalendar c = _dao.getCalendarForServiceId(serviceId);
-
-    if (c != null) {
-      addDatesFromCalendar(c, serviceIdTimeZone, activeDates);
-    }
-    for (ServiceCalendarDate cd : _dao.getCalendarDatesForServiceId(serviceId)) {
-      addAndRemoveDatesFromCalendarDate(cd, serviceIdTimeZone, activeDates);
+    for (LocalDate day : days) {
+      activeDates.add(new ServiceDate(day));
     }
     return activeDates;
   }
@@ -194,100 +249,130 @@ public class CalendarServiceDataFactoryImpl implements
     }
   }
 
-  private void addDatesFromCalendar(ServiceCalendar calendar,
-                                    TimeZone timeZone, Set<ServiceDate> activeDates) {
+  private ServiceIdExpansion createExpansion(CalendarServiceData data,
+                                             AgencyAndId serviceId,
+                                             ServiceCalendar calendar,
+                                             List<ServiceCalendarDate> calendarDates,
+                                             List<String> tripAgencyIds,
+                                             Map<String, TimeZone> timeZoneMapByAgencyId) {
 
-    /**
-     * We calculate service dates relative to noon so as to avoid any weirdness
-     * relative to DST.
-     */
-    Date startDate = getServiceDateAsNoon(calendar.getStartDate(), timeZone);
-    Date endDate = getServiceDateAsNoon(calendar.getEndDate(), timeZone);
-
-    java.util.Calendar c = java.util.Calendar.getInstance(timeZone);
-    c.setTime(startDate);
-
-    while (true) {
-      Date date = c.getTime();
-      if (date.after(endDate))
-        break;
-
-      int day = c.get(java.util.Calendar.DAY_OF_WEEK);
-      boolean active = false;
-
-      switch (day) {
-        case java.util.Calendar.MONDAY:
-          active = calendar.getMonday() == 1;
-          break;
-        case java.util.Calendar.TUESDAY:
-          active = calendar.getTuesday() == 1;
-          break;
-        case java.util.Calendar.WEDNESDAY:
-          active = calendar.getWednesday() == 1;
-          break;
-        case java.util.Calendar.THURSDAY:
-          active = calendar.getThursday() == 1;
-          break;
-        case java.util.Calendar.FRIDAY:
-          active = calendar.getFriday() == 1;
-          break;
-        case java.util.Calendar.SATURDAY:
-          active = calendar.getSaturday() == 1;
-          break;
-        case java.util.Calendar.SUNDAY:
-          active = calendar.getSunday() == 1;
-          break;
-      }
+    TimeZone serviceIdTimeZone = data.getTimeZoneForAgencyId(serviceId.getAgencyId());
+    if (serviceIdTimeZone == null) {
+      serviceIdTimeZone = TimeZone.getDefault();
+    }
 
-      if (active) {
-        addServiceDate(activeDates, new ServiceDate(c), timeZone);
+    Set<TimeZone> timeZones = new HashSet<TimeZone>();
+    for (String tripAgencyId : tripAgencyIds) {
+      TimeZone timeZone = timeZoneMapByAgencyId.get(tripAgencyId);
+      if (timeZone == null) {
+        throw new IllegalStateException("no timezone for agency " + tripAgencyId);
       }
-
-      c.add(java.util.Calendar.DAY_OF_YEAR, 1);
+      timeZones.add(timeZone);
     }
+
+    return new ServiceIdExpansion(serviceId, serviceIdTimeZone, calendar,
+            calendarDates, timeZones);
   }
 
-  private void addAndRemoveDatesFromCalendarDate(
-          ServiceCalendarDate calendarDate, TimeZone serviceIdTimeZone,
-          Set<ServiceDate> activeDates) {
-
-    ServiceDate serviceDate = calendarDate.getDate();
-    Date targetDate = calendarDate.getDate().getAsDate();
-    Calendar c = Calendar.getInstance();
-    c.setTime(targetDate);
-
-    switch (calendarDate.getExceptionType()) {
-      case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
-        addServiceDate(activeDates, serviceDate, serviceIdTimeZone);
-        break;
-      case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
-        activeDates.remove(serviceDate);
-        break;
-      default:
-        _log.warn("unknown CalendarDate exception type: "
-                + calendarDate.getExceptionType());
-        break;
+  private void putExpansions(CalendarServiceData data,
+                             List<ServiceIdExpansion> expansions) {
+    for (ServiceIdExpansion expansion : expansions) {
+      data.putServiceDatesForServiceId(expansion.serviceId,
+              expansion.serviceDates);
+      for (Map.Entry<TimeZone, List<Date>> entry : expansion.datesByTimeZone.entrySet()) {
+        LocalizedServiceId id = new LocalizedServiceId(expansion.serviceId,
+                entry.getKey());
+        data.putDatesForLocalizedServiceId(id, entry.getValue());
+      }
     }
   }
 
-  private void addServiceDate(Set<ServiceDate> activeDates,
-                              ServiceDate serviceDate, TimeZone timeZone) {
-    if (_excludeFutureServiceDatesInDays > 0) {
-      int days = (int) ((serviceDate.getAsDate().getTime() - System.currentTimeMillis()) / (24 * 60 * 60 * 1000));
-      if (days > _excludeFutureServiceDatesInDays)
-        return;
+  /**
+   * Service ids are split into a few chunks per thread, as their calendars
+   * vary a lot in length. The calling thread expands chunks too, so the
+   * expansion finishes even while the pool is busy with other work.
+   */
+  private void expand(final ServiceDateExpander expander,
+                      final List<ServiceIdExpansion> expansions) {
+
+    int parallelism = Math.min(_parallelism,
+            expansions.size() / MIN_SERVICE_IDS_PER_TASK);
+    if (parallelism <= 1) {
+      for (ServiceIdExpansion expansion : expansions) {
+        expansion.run(expander);
+      }
+      return;
     }
 
-    activeDates.add(new ServiceDate(serviceDate));
+    final int chunkCount = Math.min(parallelism * 4,
+            expansions.size() / MIN_SERVICE_IDS_PER_TASK);
+    final AtomicInteger nextChunk = new AtomicInteger();
+    Runnable worker = () -> {
+      for (int i = nextChunk.getAndIncrement(); i < chunkCount;
+           i = nextChunk.getAndIncrement()) {
+        for (ServiceIdExpansion expansion : expansions.subList(
+                expansions.size() * i / chunkCount,
+                expansions.size() * (i + 1) / chunkCount)) {
+          expansion.run(expander);
+        }
+      }
+    };
+
+    List<Future<?>> tasks = new ArrayList<Future<?>>(parallelism - 1);
+    for (int i = 1; i < parallelism; i++) {
+      tasks.add(_executor.submit(worker));
+    }
+    try {
+      worker.run();
+    } catch (RuntimeException | Error ex) {
+      // Keeps the other workers from starting any more chunks
+      nextChunk.set(chunkCount);
+      throw ex;
+    }
+    for (Future<?> task : tasks) {
+      waitFor(task);
+    }
   }
 
-  private static Date getServiceDateAsNoon(ServiceDate serviceDate,
-                                           TimeZone timeZone) {
-    Calendar c = serviceDate.getAsCalendar(timeZone);
-    c.add(Calendar.HOUR_OF_DAY, 12);
-    return c.getTime();
+  private static void waitFor(Future<?> task) {
+    try {
+      task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while expanding service dates");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * @return the last day a service date may fall on when future service dates
+   *         are excluded, or {@link Long#MAX_VALUE}
+   */
+  private long getLastIncludedDay() {
+    if (_excludeFutureServiceDatesInDays <= 0)
+      return Long.MAX_VALUE;
+    ZoneId zone = TimeZone.getDefault().toZoneId();
+    long now = System.currentTimeMillis();
+    long day = LocalDate.now(zone).toEpochDay()
+            + _excludeFutureServiceDatesInDays;
+    while (isIncluded(day + 1, zone, now))
+      day++;
+    while (!isIncluded(day, zone, now))
+      day--;
+    return day;
   }
 
+  private boolean isIncluded(long day, ZoneId zone, long now) {
+    Date date = ServiceDateExpander.getAsDate(LocalDate.ofEpochDay(day), zone);
+    int days = (int) ((date.getTime() - now) / (24 * 60 * 60 * 1000));
+    return days <= _excludeFutureServiceDatesInDays;
+  }
 
   private Map<AgencyAndId, ServiceCalendar> getCalendarsByServiceId(
           Collection<ServiceCalendar> calendars) {
@@ -311,4 +396,56 @@ public class CalendarServiceDataFactoryImpl implements
     }
     return calendarDatesByServiceId;
   }
+
+  /**
+   * The inputs and results of expanding one service id, gathered from the dao
+   * beforehand so the expansion does not touch it
+   */
+  private static class ServiceIdExpansion {
+
+    private final AgencyAndId serviceId;
+
+    private final TimeZone timeZone;
+
+    private final ServiceCalendar calendar;
+
+    private final List<ServiceCalendarDate> calendarDates;
+
+    private final Set<TimeZone> timeZones;
+
+    private List<ServiceDate> serviceDates;
+
+    private Map<TimeZone, List<Date>> datesByTimeZone;
+
+    public ServiceIdExpansion(AgencyAndId serviceId, TimeZone timeZone,
+                              ServiceCalendar calendar,
+                              List<ServiceCalendarDate> calendarDates,
+                              Set<TimeZone> timeZones) {
+      this.serviceId = serviceId;
+      this.timeZone = timeZone;
+      this.calendar = calendar;
+      this.calendarDates = calendarDates;
+      this.timeZones = timeZones;
+    }
+
+    public void run(ServiceDateExpander expander) {
+      List<LocalDate> days = expander.expand(calendar, calendarDates,
+              timeZone.toZoneId());
+
+      serviceDates = new ArrayList<ServiceDate>(days.size());
+      for (LocalDate day : days) {
+        serviceDates.add(new ServiceDate(day));
+      }
+
+      datesByTimeZone = new HashMap<TimeZone, List<Date>>();
+      for (TimeZone timeZone : timeZones) {
+        ZoneId zone = timeZone.toZoneId();
+        List<Date> dates = new ArrayList<Date>(days.size());
+        for (LocalDate day : days) {
+          dates.add(ServiceDateExpander.getAsDate(day, zone));
+        }
+        datesByTimeZone.put(timeZone, dates);
+      }
+    }
+  }
 }
@@ -115,11 +115,9 @@ public class CalendarServiceImpl implements CalendarService {
   @Override
   public boolean isLocalizedServiceIdActiveOnDate(
       LocalizedServiceId localizedServiceId, Date serviceDate) {
-
-    // TODO : Make this more efficient?
     CalendarServiceData data = getData();
-    List<Date> dates = data.getDatesForLocalizedServiceId(localizedServiceId);
-    return Collections.binarySearch(dates, serviceDate) >= 0;
+    return data.isLocalizedServiceIdActiveOnDate(localizedServiceId,
+        serviceDate);
   }
 
   /**
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.impl.calendar;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.onebusaway.gtfs.model.ServiceCalendar;
+import org.onebusaway.gtfs.model.ServiceCalendarDate;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expands the {@link ServiceCalendar} and {@link ServiceCalendarDate} entries
+ * of a service id into its active days. Days are epoch days, as counted by
+ * {@link LocalDate#toEpochDay()}: the days of a calendar are marked in a
+ * bitset with one stride per active day of the week, and the calendar dates
+ * are then applied to it in order.
+ *
+ * The result matches stepping a {@link java.util.Calendar} in the service id's
+ * time zone from noon on the start date to noon on the end date, including
+ * for days that do not exist in the zone, such as when it moves across the
+ * date line.
+ *
+ * @see CalendarServiceDataFactoryImpl
+ */
+final class ServiceDateExpander {
+
+  private static final Logger _log = LoggerFactory.getLogger(ServiceDateExpander.class);
+
+  private static final long TWELVE_HOURS = 12 * 60 * 60 * 1000;
+
+  private final long _lastIncludedDay;
+
+  /**
+   * @param lastIncludedDay the last day that calendars and added calendar
+   *          dates may make active, or {@link Long#MAX_VALUE} for no limit
+   */
+  public ServiceDateExpander(long lastIncludedDay) {
+    _lastIncludedDay = lastIncludedDay;
+  }
+
+  /**
+   * @param calendar the calendar of the service id, or null if it has none
+   * @param calendarDates the calendar dates of the service id
+   * @param zone the time zone of the service id
+   * @return the active days, sorted
+   */
+  public List<LocalDate> expand(ServiceCalendar calendar,
+      List<ServiceCalendarDate> calendarDates, ZoneId zone) {
+
+    long firstDay = Long.MAX_VALUE;
+    long lastDay = Long.MIN_VALUE;
+
+    long calendarFirstDay = 0;
+    long calendarLastDay = -1;
+    if (calendar != null) {
+      calendarFirstDay = getNoonDay(calendar.getStartDate(), zone);
+      calendarLastDay = Math.min(getNoonDay(calendar.getEndDate(), zone),
+          _lastIncludedDay);
+      if (calendarFirstDay <= calendarLastDay) {
+        firstDay = calendarFirstDay;
+        lastDay = calendarLastDay;
+      }
+    }
+
+    long[] calendarDateDays = new long[calendarDates.size()];
+    for (int i = 0; i < calendarDateDays.length; i++) {
+      long day = calendarDates.get(i).getDate().getAsLocalDate().toEpochDay();
+      calendarDateDays[i] = day;
+      firstDay = Math.min(firstDay, day);
+      lastDay = Math.max(lastDay, day);
+    }
+
+    if (firstDay > lastDay)
+      return Collections.emptyList();
+
+    BitSet days = new BitSet(Math.toIntExact(lastDay - firstDay + 1));
+
+    if (calendarFirstDay <= calendarLastDay) {
+      int firstDayOfWeek = getDayOfWeek(calendarFirstDay);
+      int mask = getDayOfWeekMask(calendar);
+      for (int dayOfWeek = 0; dayOfWeek < 7; dayOfWeek++) {
+        if ((mask & (1 << dayOfWeek)) == 0)
+          continue;
+        long day = calendarFirstDay
+            + Math.floorMod(dayOfWeek - firstDayOfWeek, 7);
+        for (; day <= calendarLastDay; day += 7)
+          days.set((int) (day - firstDay));
+      }
+      clearSkippedDays(days, firstDay, calendarFirstDay, calendarLastDay, zone);
+    }
+
+    for (int i = 0; i < calendarDateDays.length; i++) {
+      ServiceCalendarDate calendarDate = calendarDates.get(i);
+      int index = (int) (calendarDateDays[i] - firstDay);
+      switch (calendarDate.getExceptionType()) {
+        case ServiceCalendarDate.EXCEPTION_TYPE_ADD:
+          if (calendarDateDays[i] <= _lastIncludedDay)
+            days.set(index);
+          break;
+        case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
+          days.clear(index);
+          break;
+        default:
+          _log.warn("unknown CalendarDate exception type: "
+              + calendarDate.getExceptionType());
+          break;
+      }
+    }
+
+    List<LocalDate> activeDays = new ArrayList<LocalDate>(days.cardinality());
+    for (int i = days.nextSetBit(0); i >= 0; i = days.nextSetBit(i + 1))
+      activeDays.add(LocalDate.ofEpochDay(firstDay + i));
+    return activeDays;
+  }
+
+  /**
+   * The same instant as {@link ServiceDate#getAsDate(java.util.TimeZone)}:
+   * "noon minus twelve hours" on the date, where an ambiguous noon resolves to
+   * the later offset and a noon in a gap is pushed forward, as
+   * {@link java.util.Calendar} does.
+   */
+  public static Date getAsDate(LocalDate date, ZoneId zone) {
+    ZonedDateTime noon = ZonedDateTime.of(date, LocalTime.NOON, zone).withLaterOffsetAtOverlap();
+    return new Date(noon.toInstant().toEpochMilli() - TWELVE_HOURS);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the day of noon on the service date in the zone, which is a later
+   *         day if noon falls in a gap
+   */
+  private static long getNoonDay(ServiceDate serviceDate, ZoneId zone) {
+    LocalDate date = serviceDate.getAsLocalDate();
+    return ZonedDateTime.of(date, LocalTime.NOON, zone).toLocalDate().toEpochDay();
+  }
+
+  /**
+   * @return the day of the week, from Monday = 0 to Sunday = 6
+   */
+  private static int getDayOfWeek(long day) {
+    // 1970-01-01 was a Thursday
+    return Math.floorMod(day + 3, 7);
+  }
+
+  private static int getDayOfWeekMask(ServiceCalendar calendar) {
+    int mask = 0;
+    if (calendar.getMonday() == 1)
+      mask |= 1;
+    if (calendar.getTuesday() == 1)
+      mask |= 1 << 1;
+    if (calendar.getWednesday() == 1)
+      mask |= 1 << 2;
+    if (calendar.getThursday() == 1)
+      mask |= 1 << 3;
+    if (calendar.getFriday() == 1)
+      mask |= 1 << 4;
+    if (calendar.getSaturday() == 1)
+      mask |= 1 << 5;
+    if (calendar.getSunday() == 1)
+      mask |= 1 << 6;
+    return mask;
+  }
+
+  /**
+   * Clears the days in [from, to] whose noon falls in a gap that pushes it
+   * onto the next day. Stepping a calendar from day to day never lands on
+   * them.
+   */
+  private static void clearSkippedDays(BitSet days, long firstDay, long from,
+      long to, ZoneId zone) {
+    ZoneRules rules = zone.getRules();
+    if (rules.isFixedOffset())
+      return;
+    Instant start = LocalDate.ofEpochDay(from - 2).atStartOfDay(
+        ZoneOffset.UTC).toInstant();
+    for (ZoneOffsetTransition transition = rules.nextTransition(start); transition != null
+        && transition.getDateTimeBefore().toLocalDate().toEpochDay() <= to; transition = rules.nextTransition(transition.getInstant())) {
+      if (!transition.isGap())
+        continue;
+      LocalDate date = transition.getDateTimeBefore().toLocalDate();
+      LocalDate last = transition.getDateTimeAfter().toLocalDate();
+      for (; !date.isAfter(last); date = date.plusDays(1)) {
+        long day = date.toEpochDay();
+        if (day < from || day > to)
+          continue;
+        if (!ZonedDateTime.of(date, LocalTime.NOON, zone).toLocalDate().equals(
+            date))
+          days.clear((int) (day - firstDay));
+      }
+    }
+  }
+}
@@ -29,19 +29,56 @@ import org.onebusaway.gtfs.services.translation.TranslationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class implements the GTFS Translations extension proposal, documented here: http://bit.ly/gtfs-translations
+ *
+ * Translated instances are cached, up to {@link #setCacheSize(int)} of them, with the least
+ * recently used evicted first. The same translated instance is returned for repeated calls with
+ * the same instance and language, so it should not be modified. Stop times are not cached, as
+ * there are too many of them and packed stop times are new instances on every lookup.
  */
 public class TranslationServiceImpl implements TranslationService  {
 
     private static final Logger _log = LoggerFactory.getLogger(TranslationServiceImpl.class);
 
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+
     private TranslationServiceData _data;
 
+    private int _cacheSize = DEFAULT_CACHE_SIZE;
+
+    private final Map<InstanceKey, Object> _cache = new LinkedHashMap<InstanceKey, Object>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InstanceKey, Object> eldest) {
+            return size() > _cacheSize;
+        }
+    };
+
     public void setData(TranslationServiceData data) {
         _data = data;
+        synchronized (_cache) {
+            _cache.clear();
+        }
+    }
+
+    /**
+     * @param cacheSize maximum number of translated instances to keep, or 0 to disable the cache
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative: " + cacheSize);
+        }
+        synchronized (_cache) {
+            _cacheSize = cacheSize;
+            _cache.clear();
+        }
     }
 
     @Override
@@ -56,6 +93,31 @@ public class TranslationServiceImpl implements TranslationService  {
             return instance;
         }
 
+        InstanceKey key = null;
+        if (!(instance instanceof StopTime)) {
+            key = new InstanceKey(language, type, instance);
+            synchronized (_cache) {
+                Object cached = _cache.get(key);
+                if (cached != null) {
+                    return type.cast(cached);
+                }
+            }
+        }
+
+        // Only translations that reference this entity or one of its property values apply
+        BeanWrapper instanceWrapper = BeanWrapperFactory.wrap(instance);
+        List<PropertyTranslation> translations;
+        if (instance instanceof FeedInfo) {
+            // only one
+            translations = translationsForClass;
+        } else {
+            translations = _data.getTranslationsForEntity(type, language, getEntityId(instance),
+                    getEntitySubId(instance), instanceWrapper::getPropertyValue);
+        }
+        if (translations.isEmpty()) {
+            return instance;
+        }
+
         // Get cloned entity via typical OBA model constructor
         T translatedInstance;
         try {
@@ -65,41 +127,74 @@ public class TranslationServiceImpl implements TranslationService  {
             return instance;
         }
 
-        // Wrap instance, and set translated properties if applicable.
+        // Wrap instance, and set translated properties.
         BeanWrapper wrapper = BeanWrapperFactory.wrap(translatedInstance);
-        for (PropertyTranslation translation : translationsForClass) {
-            String propertyName = translation.getPropertyName();
-            String translationStr = null;
-            if (objectIdMatches(translatedInstance, translation.getEntityId(), translation.getEntitySubId())) {
-                translationStr = translation.getTranslation();
-            } else if (translation.getPropertyValue() != null
-                    && translation.getPropertyValue().equals(wrapper.getPropertyValue(propertyName))) {
-                translationStr = translation.getTranslation();
-            }
-            if (translationStr != null) {
-                wrapper.setPropertyValue(propertyName, translationStr);
-            }
+        for (PropertyTranslation translation : translations) {
+            wrapper.setPropertyValue(translation.getPropertyName(), translation.getTranslation());
         }
+        translatedInstance = wrapper.getWrappedInstance(type);
 
-        return wrapper.getWrappedInstance(type);
+        if (key != null) {
+            synchronized (_cache) {
+                if (_cacheSize > 0) {
+                    _cache.put(key, translatedInstance);
+                }
+            }
+        }
+        return translatedInstance;
     }
 
-    private boolean objectIdMatches(Object object, String id, String subId) {
+    private String getEntityId(Object object) {
         if (object instanceof Agency) {
-            return ((Agency) object).getId().equals(id);
+            return ((Agency) object).getId();
         } else if (object instanceof Stop) {
-            return ((Stop) object).getId().getId().equals(id);
+            return ((Stop) object).getId().getId();
         } else if (object instanceof Route) {
-            return ((Route) object).getId().getId().equals(id);
+            return ((Route) object).getId().getId();
         } else if (object instanceof Trip) {
-            return ((Trip) object).getId().getId().equals(id);
+            return ((Trip) object).getId().getId();
         } else if (object instanceof StopTime) {
-            return ((StopTime) object).getTrip().getId().getId().equals(id) &&
-                    ((StopTime) object).getStopSequence() == Integer.parseInt(subId);
-        } else if (object instanceof FeedInfo) {
-            // only one
-            return true;
+            return ((StopTime) object).getTrip().getId().getId();
+        }
+        return null;
+    }
+
+    private String getEntitySubId(Object object) {
+        if (object instanceof StopTime) {
+            return Integer.toString(((StopTime) object).getStopSequence());
+        }
+        return null;
+    }
+
+    /**
+     * Instances are compared by identity, as entities compare by id alone
+     */
+    private static final class InstanceKey {
+
+        private final String _language;
+
+        private final Class<?> _type;
+
+        private final Object _instance;
+
+        public InstanceKey(String language, Class<?> type, Object instance) {
+            _language = language;
+            _type = type;
+            _instance = instance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof InstanceKey)) return false;
+            InstanceKey that = (InstanceKey) o;
+            return _instance == that._instance && _type == that._type
+                    && _language.equals(that._language);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(_instance) + _language.hashCode();
         }
-        return false;
     }
 }
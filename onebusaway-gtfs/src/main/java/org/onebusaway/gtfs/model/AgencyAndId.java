@@ -81,10 +81,16 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
     }
   }
 
+  /**
+   * Combines the two string hashes asymmetrically: with a plain sum, every
+   * pair of ids with swapped values such as ("1", "2") and ("2", "1") shares
+   * a bucket, which is common in feeds with numeric agency and entity ids.
+   */
   @Override
   public int hashCode() {
     int hash = 93;
     if (agencyId != null) hash += agencyId.hashCode();
+    hash *= 31;
     if (id != null) hash += id.hashCode();
     return hash;
   }
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Interns {@link AgencyAndId} values and assigns each distinct id a dense int
+ * ordinal, in registration order starting at zero. Data keyed by id can then
+ * be stored in arrays indexed by ordinal, and callers that hold on to an
+ * ordinal skip hashing the id altogether.
+ *
+ * The id table is open-addressed over a primitive int array, so a lookup
+ * hashes the id once and probes an array without allocating. Registered ids
+ * must not be modified afterwards, since their hash would change under the
+ * table.
+ *
+ * Registration is not thread-safe. Once all ids have been registered, the
+ * registry can be read from any number of threads.
+ */
+public final class AgencyAndIdRegistry implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MIN_CAPACITY = 16;
+
+  private AgencyAndId[] _ids;
+
+  /**
+   * Hash slots holding {@code ordinal + 1}, or 0 for an empty slot. Kept at
+   * most half full, with a power-of-two length.
+   */
+  private int[] _slots;
+
+  private int _size = 0;
+
+  public AgencyAndIdRegistry() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize the number of ids expected, to size the table up
+   *          front
+   */
+  public AgencyAndIdRegistry(int expectedSize) {
+    int capacity = Math.max(MIN_CAPACITY, expectedSize);
+    _ids = new AgencyAndId[capacity];
+    _slots = new int[Integer.highestOneBit(capacity - 1) << 2];
+  }
+
+  /**
+   * @return the number of registered ids, which is also one past the highest
+   *         ordinal
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return the ordinal of the id, or -1 if it is null or has not been
+   *         registered
+   */
+  public int getOrdinal(AgencyAndId id) {
+    if (id == null)
+      return -1;
+    int mask = _slots.length - 1;
+    for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+      int entry = _slots[slot];
+      if (entry == 0)
+        return -1;
+      AgencyAndId existing = _ids[entry - 1];
+      if (existing == id || existing.equals(id))
+        return entry - 1;
+    }
+  }
+
+  /**
+   * @return the ordinal of the id, registering it first if needed
+   */
+  public int getOrCreateOrdinal(AgencyAndId id) {
+    int mask = _slots.length - 1;
+    int slot = hash(id) & mask;
+    for (;; slot = (slot + 1) & mask) {
+      int entry = _slots[slot];
+      if (entry == 0)
+        break;
+      AgencyAndId existing = _ids[entry - 1];
+      if (existing == id || existing.equals(id))
+        return entry - 1;
+    }
+
+    int ordinal = _size++;
+    if (ordinal == _ids.length)
+      _ids = Arrays.copyOf(_ids, _ids.length * 2);
+    _ids[ordinal] = id;
+    _slots[slot] = ordinal + 1;
+
+    if (_size * 2 > _slots.length)
+      rehash(_slots.length * 2);
+    return ordinal;
+  }
+
+  /**
+   * @return the registered instance equal to the id, registering the id
+   *         itself if there is none
+   */
+  public AgencyAndId intern(AgencyAndId id) {
+    return _ids[getOrCreateOrdinal(id)];
+  }
+
+  /**
+   * @return the id registered with the ordinal
+   * @throws IndexOutOfBoundsException if no id has the ordinal
+   */
+  public AgencyAndId getId(int ordinal) {
+    if (ordinal < 0 || ordinal >= _size)
+      throw new IndexOutOfBoundsException("ordinal=" + ordinal + " size="
+          + _size);
+    return _ids[ordinal];
+  }
+
+  /**
+   * @return a read-only view of the registered ids, iterating in ordinal order
+   */
+  public Set<AgencyAndId> asSet() {
+    return new IdSet();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int hash(AgencyAndId id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private void rehash(int length) {
+    int[] slots = new int[length];
+    int mask = length - 1;
+    for (int ordinal = 0; ordinal < _size; ordinal++) {
+      int slot = hash(_ids[ordinal]) & mask;
+      while (slots[slot] != 0)
+        slot = (slot + 1) & mask;
+      slots[slot] = ordinal + 1;
+    }
+    _slots = slots;
+  }
+
+  private class IdSet extends AbstractSet<AgencyAndId> {
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof AgencyAndId && getOrdinal((AgencyAndId) o) != -1;
+    }
+
+    @Override
+    public Iterator<AgencyAndId> iterator() {
+      return new Iterator<AgencyAndId>() {
+
+        private int _next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return _next < _size;
+        }
+
+        @Override
+        public AgencyAndId next() {
+          if (!hasNext())
+            throw new NoSuchElementException();
+          return _ids[_next++];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return _size;
+    }
+  }
+}
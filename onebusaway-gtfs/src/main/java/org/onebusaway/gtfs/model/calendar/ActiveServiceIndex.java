@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model.calendar;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Indexes the active days of each service id as bitsets. Days are counted
+ * from the earliest service date of any service id, so bit {@code d} of the
+ * bitset for a service id ordinal is set if the service id is active on that
+ * day plus {@code d}, and bit {@code i} of the bitset for day {@code d} is set
+ * if the service id with ordinal {@code i} is active on it.
+ *
+ * The index can be updated in place as long as the service dates stay within
+ * the days it covers.
+ *
+ * @see CalendarServiceData
+ */
+final class ActiveServiceIndex {
+
+  private static final long TWELVE_HOURS = 12 * 60 * 60 * 1000;
+
+  private static final BitSet EMPTY = new BitSet();
+
+  private final long _firstDay;
+
+  private BitSet[] _daysByServiceIdOrdinal;
+
+  private final BitSet[] _serviceIdOrdinalsByDay;
+
+  /**
+   * @param serviceDatesByServiceIdOrdinal the sorted service dates of each
+   *          service id, by ordinal, or null for removed service ids
+   */
+  public ActiveServiceIndex(
+      List<List<ServiceDate>> serviceDatesByServiceIdOrdinal) {
+
+    long firstDay = Long.MAX_VALUE;
+    long lastDay = Long.MIN_VALUE;
+    for (List<ServiceDate> serviceDates : serviceDatesByServiceIdOrdinal) {
+      if (serviceDates == null || serviceDates.isEmpty())
+        continue;
+      firstDay = Math.min(firstDay, getDay(serviceDates.get(0)));
+      lastDay = Math.max(lastDay,
+          getDay(serviceDates.get(serviceDates.size() - 1)));
+    }
+
+    int dayCount = firstDay <= lastDay
+        ? Math.toIntExact(lastDay - firstDay + 1) : 0;
+    _firstDay = dayCount > 0 ? firstDay : 0;
+    _daysByServiceIdOrdinal = new BitSet[serviceDatesByServiceIdOrdinal.size()];
+    _serviceIdOrdinalsByDay = new BitSet[dayCount];
+
+    for (int ordinal = 0; ordinal < _daysByServiceIdOrdinal.length; ordinal++) {
+      _daysByServiceIdOrdinal[ordinal] = new BitSet(dayCount);
+      List<ServiceDate> serviceDates = serviceDatesByServiceIdOrdinal.get(ordinal);
+      if (serviceDates != null)
+        setDays(ordinal, serviceDates);
+    }
+  }
+
+  /**
+   * @return the day of the service date as counted by {@link LocalDate},
+   *         which is the same in every time zone
+   */
+  public static long getDay(ServiceDate serviceDate) {
+    return serviceDate.getAsLocalDate().toEpochDay();
+  }
+
+  public boolean isActive(int serviceIdOrdinal, long day) {
+    long offset = day - _firstDay;
+    if (offset < 0 || offset >= _serviceIdOrdinalsByDay.length)
+      return false;
+    return _daysByServiceIdOrdinal[serviceIdOrdinal].get((int) offset);
+  }
+
+  /**
+   * Inverts {@link ServiceDate#getAsDate(TimeZone)}, which returns "noon minus
+   * twelve hours" on the service date, and tests the service date it was
+   * localized from. That is normally the local date twelve hours later, but a
+   * service date whose noon falls in a gap, such as a day skipped when a zone
+   * moves across the date line, is pushed forward onto the next one.
+   *
+   * @return true if the date is a localized service date of the service id
+   */
+  public boolean isActive(int serviceIdOrdinal, Date date, TimeZone timeZone) {
+    ZoneId zone = timeZone.toZoneId();
+    Instant instant = Instant.ofEpochMilli(date.getTime());
+    LocalDate day = instant.plusMillis(TWELVE_HOURS).atZone(zone).toLocalDate();
+    return isActive(serviceIdOrdinal, day, instant, zone)
+        || isActive(serviceIdOrdinal, day.minusDays(1), instant, zone);
+  }
+
+  /**
+   * @return the ordinals of the service ids active on the day. The bitset is
+   *         shared and must not be modified.
+   */
+  public BitSet getServiceIdOrdinals(long day) {
+    long offset = day - _firstDay;
+    if (offset < 0 || offset >= _serviceIdOrdinalsByDay.length)
+      return EMPTY;
+    BitSet ordinals = _serviceIdOrdinalsByDay[(int) offset];
+    return ordinals != null ? ordinals : EMPTY;
+  }
+
+  /**
+   * Replaces the days of a service id, which may be a new one
+   *
+   * @param serviceIdOrdinal
+   * @param serviceDates the new service dates, or null to clear them
+   * @return false, leaving the index unchanged, if a service date falls
+   *         outside the days the index covers, in which case it must be
+   *         rebuilt
+   */
+  public boolean update(int serviceIdOrdinal, List<ServiceDate> serviceDates) {
+    if (serviceDates != null) {
+      for (ServiceDate serviceDate : serviceDates) {
+        long offset = getDay(serviceDate) - _firstDay;
+        if (offset < 0 || offset >= _serviceIdOrdinalsByDay.length)
+          return false;
+      }
+    }
+
+    if (serviceIdOrdinal >= _daysByServiceIdOrdinal.length) {
+      int length = _daysByServiceIdOrdinal.length;
+      _daysByServiceIdOrdinal = Arrays.copyOf(_daysByServiceIdOrdinal,
+          Math.max(serviceIdOrdinal + 1, length * 2));
+      for (int i = length; i < _daysByServiceIdOrdinal.length; i++)
+        _daysByServiceIdOrdinal[i] = new BitSet();
+    }
+
+    BitSet days = _daysByServiceIdOrdinal[serviceIdOrdinal];
+    for (int day = days.nextSetBit(0); day >= 0; day = days.nextSetBit(day + 1))
+      _serviceIdOrdinalsByDay[day].clear(serviceIdOrdinal);
+    days.clear();
+
+    if (serviceDates != null)
+      setDays(serviceIdOrdinal, serviceDates);
+    return true;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void setDays(int serviceIdOrdinal, List<ServiceDate> serviceDates) {
+    BitSet days = _daysByServiceIdOrdinal[serviceIdOrdinal];
+    for (ServiceDate serviceDate : serviceDates) {
+      int day = (int) (getDay(serviceDate) - _firstDay);
+      days.set(day);
+      BitSet ordinals = _serviceIdOrdinalsByDay[day];
+      if (ordinals == null) {
+        ordinals = new BitSet();
+        _serviceIdOrdinalsByDay[day] = ordinals;
+      }
+      ordinals.set(serviceIdOrdinal);
+    }
+  }
+
+  private boolean isActive(int serviceIdOrdinal, LocalDate day,
+      Instant instant, ZoneId zone) {
+    if (!isActive(serviceIdOrdinal, day.toEpochDay()))
+      return false;
+    // Like Calendar, an ambiguous noon resolves to the later offset
+    Instant localized = ZonedDateTime.of(day, LocalTime.NOON, zone).withLaterOffsetAtOverlap().toInstant().minusMillis(
+        TWELVE_HOURS);
+    return localized.equals(instant);
+  }
+}
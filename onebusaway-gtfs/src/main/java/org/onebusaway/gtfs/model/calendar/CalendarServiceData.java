@@ -16,29 +16,51 @@
 package org.onebusaway.gtfs.model.calendar;
 
 import java.io.Serializable;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.AgencyAndIdRegistry;
 
 public class CalendarServiceData implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 4L;
 
   private Map<String, TimeZone> _timeZonesByAgencyId = new HashMap<String, TimeZone>();
 
-  private Map<AgencyAndId, List<ServiceDate>> _serviceDatesByServiceId = new HashMap<AgencyAndId, List<ServiceDate>>();
+  /**
+   * Service ids are interned and given dense ordinals, and per-service data is
+   * indexed by ordinal
+   */
+  private AgencyAndIdRegistry _serviceIds = new AgencyAndIdRegistry();
+
+  /**
+   * Null for service ids that have been removed, which keep their ordinal in
+   * case they are put back
+   */
+  private List<List<ServiceDate>> _serviceDatesByServiceIdOrdinal = new ArrayList<List<ServiceDate>>();
+
+  private int _removedServiceIdCount = 0;
 
   private Map<LocalizedServiceId, List<Date>> _datesByLocalizedServiceId = new HashMap<LocalizedServiceId, List<Date>>();
 
-  private Map<ServiceDate, Set<AgencyAndId>> _serviceIdsByDate = new HashMap<ServiceDate, Set<AgencyAndId>>();
+  /**
+   * Built from the service dates on first use, and patched in place when they
+   * change
+   */
+  private transient volatile ActiveServiceIndex _activeServiceIndex;
+
+  private boolean _readOnly = false;
 
   /**
    * @param agencyId
@@ -54,7 +76,14 @@ public class CalendarServiceData implements Serializable {
   }
 
   public Set<AgencyAndId> getServiceIds() {
-    return Collections.unmodifiableSet(_serviceDatesByServiceId.keySet());
+    if (_removedServiceIdCount == 0)
+      return _serviceIds.asSet();
+    BitSet ordinals = new BitSet(_serviceDatesByServiceIdOrdinal.size());
+    for (int ordinal = 0; ordinal < _serviceDatesByServiceIdOrdinal.size(); ordinal++) {
+      if (_serviceDatesByServiceIdOrdinal.get(ordinal) != null)
+        ordinals.set(ordinal);
+    }
+    return new ServiceIdSet(ordinals);
   }
 
   public Set<LocalizedServiceId> getLocalizedServiceIds() {
@@ -62,30 +91,102 @@ public class CalendarServiceData implements Serializable {
   }
 
   public List<ServiceDate> getServiceDatesForServiceId(AgencyAndId serviceId) {
-    return _serviceDatesByServiceId.get(serviceId);
+    int ordinal = getServiceIdOrdinal(serviceId);
+    if (ordinal == -1)
+      return null;
+    return _serviceDatesByServiceIdOrdinal.get(ordinal);
+  }
+
+  /**
+   * @param serviceId
+   * @return the dense ordinal of the service id, or -1 if the service id is
+   *         unknown. Ordinals are in the range [0, getServiceIds().size())
+   *         unless service ids have been removed, as their ordinals are kept.
+   */
+  public int getServiceIdOrdinal(AgencyAndId serviceId) {
+    int ordinal = _serviceIds.getOrdinal(serviceId);
+    if (ordinal == -1 || _serviceDatesByServiceIdOrdinal.get(ordinal) == null)
+      return -1;
+    return ordinal;
+  }
+
+  /**
+   * @param ordinal a service id ordinal, see
+   *          {@link #getServiceIdOrdinal(AgencyAndId)}
+   * @return the service dates for the service id with the ordinal, or null if
+   *         it has been removed
+   */
+  public List<ServiceDate> getServiceDatesForServiceIdOrdinal(int ordinal) {
+    return _serviceDatesByServiceIdOrdinal.get(ordinal);
   }
 
+  /**
+   * @param date
+   * @return a read-only view of the service ids active on the date, backed by
+   *         the bitset of their ordinals
+   */
   public Set<AgencyAndId> getServiceIdsForDate(ServiceDate date) {
-    Set<AgencyAndId> serviceIds = _serviceIdsByDate.get(date);
-    if (serviceIds == null)
-      serviceIds = new HashSet<AgencyAndId>();
-    return serviceIds;
+    BitSet ordinals = getActiveServiceIndex().getServiceIdOrdinals(
+        ActiveServiceIndex.getDay(date));
+    return new ServiceIdSet(ordinals);
+  }
+
+  /**
+   * @param date
+   * @return the ordinals of the service ids active on the date, see
+   *         {@link #getServiceIdOrdinal(AgencyAndId)}
+   */
+  public BitSet getServiceIdOrdinalsForDate(ServiceDate date) {
+    return (BitSet) getActiveServiceIndex().getServiceIdOrdinals(
+        ActiveServiceIndex.getDay(date)).clone();
+  }
+
+  public boolean isServiceIdActiveOnDate(AgencyAndId serviceId,
+      ServiceDate date) {
+    int ordinal = getServiceIdOrdinal(serviceId);
+    if (ordinal == -1)
+      return false;
+    return isServiceIdOrdinalActiveOnDate(ordinal, date);
+  }
+
+  public boolean isServiceIdOrdinalActiveOnDate(int ordinal, ServiceDate date) {
+    return getActiveServiceIndex().isActive(ordinal,
+        ActiveServiceIndex.getDay(date));
   }
 
   public void putServiceDatesForServiceId(AgencyAndId serviceId,
       List<ServiceDate> serviceDates) {
+    checkWritable();
     serviceDates = new ArrayList<ServiceDate>(serviceDates);
     Collections.sort(serviceDates);
     serviceDates = Collections.unmodifiableList(serviceDates);
-    _serviceDatesByServiceId.put(serviceId, serviceDates);
-    for (ServiceDate serviceDate : serviceDates) {
-      Set<AgencyAndId> serviceIds = _serviceIdsByDate.get(serviceDate);
-      if (serviceIds == null) {
-        serviceIds = new HashSet<AgencyAndId>();
-        _serviceIdsByDate.put(serviceDate, serviceIds);
-      }
-      serviceIds.add(serviceId);
+    int ordinal = _serviceIds.getOrCreateOrdinal(serviceId);
+    if (ordinal == _serviceDatesByServiceIdOrdinal.size()) {
+      _serviceDatesByServiceIdOrdinal.add(serviceDates);
+    } else {
+      if (_serviceDatesByServiceIdOrdinal.get(ordinal) == null)
+        _removedServiceIdCount--;
+      _serviceDatesByServiceIdOrdinal.set(ordinal, serviceDates);
     }
+    updateActiveServiceIndex(ordinal, serviceDates);
+  }
+
+  /**
+   * Removes the service dates of the service id, along with its localized
+   * dates in every time zone
+   *
+   * @param serviceId
+   */
+  public void removeServiceId(AgencyAndId serviceId) {
+    checkWritable();
+    int ordinal = getServiceIdOrdinal(serviceId);
+    if (ordinal == -1)
+      return;
+    _serviceDatesByServiceIdOrdinal.set(ordinal, null);
+    _removedServiceIdCount++;
+    _datesByLocalizedServiceId.keySet().removeIf(
+        id -> id.getId().equals(serviceId));
+    updateActiveServiceIndex(ordinal, null);
   }
 
   public List<Date> getDatesForLocalizedServiceId(LocalizedServiceId serviceId) {
@@ -98,10 +199,109 @@ public class CalendarServiceData implements Serializable {
     _datesByLocalizedServiceId.put(serviceId, dates);
   }
 
+  public void removeDatesForLocalizedServiceId(LocalizedServiceId serviceId) {
+    _datesByLocalizedServiceId.remove(serviceId);
+  }
+
+  /**
+   * Localized dates are expected to be the service dates of the service id,
+   * localized with {@link ServiceDate#getAsDate(TimeZone)}, as
+   * {@link org.onebusaway.gtfs.impl.calendar.CalendarServiceDataFactoryImpl}
+   * builds them. The date is then mapped back to its service date and looked
+   * up in the active service bitsets, instead of searched for in the list.
+   *
+   * @param serviceId
+   * @param date
+   * @return true if the date is one of the localized dates of the service id
+   */
+  public boolean isLocalizedServiceIdActiveOnDate(LocalizedServiceId serviceId,
+      Date date) {
+    List<Date> dates = _datesByLocalizedServiceId.get(serviceId);
+    if (dates == null)
+      return false;
+    int ordinal = getServiceIdOrdinal(serviceId.getId());
+    if (ordinal == -1)
+      return Collections.binarySearch(dates, date) >= 0;
+    return getActiveServiceIndex().isActive(ordinal, date,
+        serviceId.getTimeZone());
+  }
+
   public void makeReadOnly() {
     _timeZonesByAgencyId = Collections.unmodifiableMap(_timeZonesByAgencyId);
-    _serviceDatesByServiceId = Collections.unmodifiableMap(_serviceDatesByServiceId);
+    _readOnly = true;
     _datesByLocalizedServiceId = Collections.unmodifiableMap(_datesByLocalizedServiceId);
-    _serviceIdsByDate = Collections.unmodifiableMap(_serviceIdsByDate);
+    getActiveServiceIndex();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private ActiveServiceIndex getActiveServiceIndex() {
+    ActiveServiceIndex index = _activeServiceIndex;
+    if (index == null) {
+      index = new ActiveServiceIndex(_serviceDatesByServiceIdOrdinal);
+      _activeServiceIndex = index;
+    }
+    return index;
+  }
+
+  private void updateActiveServiceIndex(int ordinal,
+      List<ServiceDate> serviceDates) {
+    ActiveServiceIndex index = _activeServiceIndex;
+    if (index != null && !index.update(ordinal, serviceDates))
+      _activeServiceIndex = null;
+  }
+
+  private void checkWritable() {
+    if (_readOnly)
+      throw new UnsupportedOperationException("calendar service data is read-only");
+  }
+
+  /**
+   * The service ids with the ordinals set in a bitset
+   */
+  private class ServiceIdSet extends AbstractSet<AgencyAndId> {
+
+    private final BitSet _ordinals;
+
+    public ServiceIdSet(BitSet ordinals) {
+      _ordinals = ordinals;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof AgencyAndId))
+        return false;
+      int ordinal = _serviceIds.getOrdinal((AgencyAndId) o);
+      return ordinal != -1 && _ordinals.get(ordinal);
+    }
+
+    @Override
+    public Iterator<AgencyAndId> iterator() {
+      return new Iterator<AgencyAndId>() {
+
+        private int _next = _ordinals.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return _next != -1;
+        }
+
+        @Override
+        public AgencyAndId next() {
+          if (_next == -1)
+            throw new NoSuchElementException();
+          AgencyAndId id = _serviceIds.getId(_next);
+          _next = _ordinals.nextSetBit(_next + 1);
+          return id;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return _ordinals.cardinality();
+    }
   }
 }
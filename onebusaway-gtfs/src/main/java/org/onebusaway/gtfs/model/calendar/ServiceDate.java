@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -74,6 +75,10 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     this(o.year, o.month, o.day);
   }
 
+  public ServiceDate(LocalDate date) {
+    this(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+  }
+
   public ServiceDate(Calendar calendar) {
     this(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
         calendar.get(Calendar.DAY_OF_MONTH));
@@ -125,6 +130,14 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     return day;
   }
 
+  /**
+   * @return the service date as a {@link LocalDate}. Out of range months and
+   *         days roll over, as they do in {@link #getAsCalendar(TimeZone)}.
+   */
+  public LocalDate getAsLocalDate() {
+    return LocalDate.of(year, 1, 1).plusMonths(month - 1).plusDays(day - 1);
+  }
+
   /**
    * @return calls {@link #getAsDate(TimeZone)} with the default timezone for
    *         this VM. Be careful, this may return a time of 00:00:00
@@ -17,16 +17,25 @@ package org.onebusaway.gtfs.model.translation;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class TranslationServiceData implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     // Map: list of translations by entity type and language
-    private Map<TypeAndLanguage, List<PropertyTranslation>> _translationMap = new HashMap<>();;
+    private Map<TypeAndLanguage, List<PropertyTranslation>> _translationMap = new HashMap<>();
+
+    // Map: positions in the lists above by entity type and language, then by record id and sub id
+    private Map<TypeAndLanguage, Map<String, Map<String, List<Integer>>>> _positionsByEntityId = new HashMap<>();
+
+    // Map: positions in the lists above by entity type and language, then by property name and value
+    private Map<TypeAndLanguage, Map<String, Map<String, List<Integer>>>> _positionsByPropertyValue = new HashMap<>();
 
     private String _feedLanguage;
 
@@ -34,10 +43,80 @@ public class TranslationServiceData implements Serializable {
         return _translationMap.get(new TypeAndLanguage(type, language));
     }
 
+    /**
+     * Get the translations of an entity without scanning every translation of its type.
+     *
+     * @param type entity type
+     * @param language language to translate to
+     * @param entityId record id of the entity, or null if it is not referenced by id
+     * @param entitySubId record sub id of the entity, or null to match any sub id
+     * @param propertyValues values of the entity properties, by property name
+     * @return translations that either reference the entity by record id and sub id, or whose
+     *         field value equals the value of their property, in the order they were put
+     */
+    public List<PropertyTranslation> getTranslationsForEntity(Class<?> type, String language,
+            String entityId, String entitySubId, Function<String, Object> propertyValues) {
+        TypeAndLanguage key = new TypeAndLanguage(type, language);
+        List<PropertyTranslation> translations = _translationMap.get(key);
+        if (translations == null) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> positions = new ArrayList<>();
+        Map<String, Map<String, List<Integer>>> positionsByEntityId = _positionsByEntityId.get(key);
+        if (entityId != null && positionsByEntityId != null) {
+            Map<String, List<Integer>> positionsBySubId = positionsByEntityId.get(entityId);
+            if (positionsBySubId != null) {
+                if (entitySubId == null) {
+                    for (List<Integer> subIdPositions : positionsBySubId.values()) {
+                        positions.addAll(subIdPositions);
+                    }
+                } else {
+                    addAll(positions, positionsBySubId.get(getSubIdKey(entitySubId)));
+                }
+            }
+        }
+        Map<String, Map<String, List<Integer>>> positionsByProperty = _positionsByPropertyValue.get(key);
+        if (positionsByProperty != null) {
+            for (Map.Entry<String, Map<String, List<Integer>>> entry : positionsByProperty.entrySet()) {
+                Object value = propertyValues.apply(entry.getKey());
+                if (value != null) {
+                    addAll(positions, entry.getValue().get(value));
+                }
+            }
+        }
+        if (positions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // A translation may match both by id and by value, and order decides which one wins
+        int[] sorted = new int[positions.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = positions.get(i);
+        }
+        Arrays.sort(sorted);
+        List<PropertyTranslation> matches = new ArrayList<>(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                matches.add(translations.get(sorted[i]));
+            }
+        }
+        return matches;
+    }
+
     public void putTranslation(Class<?> type, String language, PropertyTranslation translation) {
         TypeAndLanguage key = new TypeAndLanguage(type, language);
         List<PropertyTranslation> translations = _translationMap.computeIfAbsent(key, k -> new ArrayList<>());
+        int position = translations.size();
         translations.add(translation);
+        if (translation.getEntityId() != null) {
+            put(_positionsByEntityId, key, translation.getEntityId(),
+                    getSubIdKey(translation.getEntitySubId()), position);
+        }
+        if (translation.getPropertyValue() != null) {
+            put(_positionsByPropertyValue, key, translation.getPropertyName(),
+                    translation.getPropertyValue(), position);
+        }
     }
 
     public String getFeedLanguage() {
@@ -47,4 +126,32 @@ public class TranslationServiceData implements Serializable {
     public void setFeedLanguage(String feedLanguage) {
         _feedLanguage = feedLanguage;
     }
+
+    private static void put(Map<TypeAndLanguage, Map<String, Map<String, List<Integer>>>> index,
+            TypeAndLanguage key, String first, String second, int position) {
+        index.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(first, k -> new HashMap<>())
+                .computeIfAbsent(second, k -> new ArrayList<>())
+                .add(position);
+    }
+
+    private static void addAll(List<Integer> positions, List<Integer> values) {
+        if (values != null) {
+            positions.addAll(values);
+        }
+    }
+
+    /**
+     * Sub ids are stop sequences, which compare as numbers
+     */
+    private static String getSubIdKey(String subId) {
+        if (subId == null) {
+            return "";
+        }
+        try {
+            return Integer.toString(Integer.parseInt(subId));
+        } catch (NumberFormatException ex) {
+            return subId;
+        }
+    }
 }
@@ -18,8 +18,12 @@ package org.onebusaway.gtfs.serialization;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.onebusaway.csv_entities.CsvEntityContext;
 import org.onebusaway.csv_entities.CsvEntityReader;
@@ -29,7 +33,6 @@ import org.onebusaway.csv_entities.EntityHandler;
 import org.onebusaway.csv_entities.exceptions.CsvEntityIOException;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
 import org.onebusaway.gtfs.impl.GtfsDaoImpl;
-import org.onebusaway.gtfs.impl.ZipHandler;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.services.GenericMutableDao;
 import org.slf4j.Logger;
@@ -42,6 +45,74 @@ public class GtfsReader extends CsvEntityReader {
   public static final String KEY_CONTEXT = GtfsReader.class.getName()
       + ".context";
 
+  /**
+   * The entity types referenced by each entity type while it is being read,
+   * either through an id field mapping or through {@link EntityHandlerImpl}.
+   * Every type implicitly references {@link Agency}, since the default agency
+   * id is resolved from it. Types missing from this map are assumed to
+   * reference everything read before them.
+   */
+  private static final Map<Class<?>, List<Class<?>>> ENTITY_DEPENDENCIES = new HashMap<Class<?>, List<Class<?>>>();
+
+  /**
+   * Entity types whose rows reference entities created by earlier rows of the
+   * same file, which must therefore be read and handled one row at a time.
+   */
+  private static final Set<Class<?>> SEQUENTIAL_ENTITY_CLASSES = new HashSet<Class<?>>();
+
+  static {
+    putEntityDependencies(Agency.class);
+    putEntityDependencies(Block.class);
+    putEntityDependencies(ShapePoint.class);
+    putEntityDependencies(Note.class);
+    putEntityDependencies(Area.class);
+    putEntityDependencies(BookingRule.class);
+    putEntityDependencies(Route.class);
+    putEntityDependencies(RouteStop.class);
+    putEntityDependencies(RouteShape.class);
+    putEntityDependencies(Level.class);
+    putEntityDependencies(Stop.class, Level.class);
+    putEntityDependencies(Location.class);
+    putEntityDependencies(LocationGroup.class);
+    putEntityDependencies(LocationGroupElement.class, LocationGroup.class,
+        Stop.class, Location.class, StopAreaElement.class);
+    putEntityDependencies(Trip.class, Route.class, Note.class);
+    putEntityDependencies(StopAreaElement.class, Area.class, Stop.class,
+        Location.class, LocationGroup.class);
+    putEntityDependencies(StopTime.class, Trip.class, Stop.class,
+        Location.class, LocationGroup.class, StopAreaElement.class, Area.class,
+        BookingRule.class, Note.class);
+    putEntityDependencies(ServiceCalendar.class);
+    putEntityDependencies(ServiceCalendarDate.class);
+    putEntityDependencies(RiderCategory.class);
+    putEntityDependencies(FareMedium.class, RiderCategory.class);
+    putEntityDependencies(FareProduct.class, RiderCategory.class,
+        FareMedium.class);
+    putEntityDependencies(FareLegRule.class, Area.class);
+    putEntityDependencies(FareAttribute.class);
+    putEntityDependencies(FareRule.class, FareAttribute.class, Route.class);
+    putEntityDependencies(FareTransferRule.class);
+    putEntityDependencies(Frequency.class, Trip.class);
+    putEntityDependencies(Pathway.class, Stop.class);
+    putEntityDependencies(Transfer.class, Stop.class, Route.class, Trip.class);
+    putEntityDependencies(FeedInfo.class);
+    putEntityDependencies(Ridership.class);
+    putEntityDependencies(Translation.class);
+    putEntityDependencies(Vehicle.class);
+    putEntityDependencies(Facility.class, Stop.class);
+    putEntityDependencies(FacilityPropertyDefinition.class);
+    putEntityDependencies(FacilityProperty.class, Facility.class,
+        FacilityPropertyDefinition.class);
+    putEntityDependencies(RouteNameException.class, Route.class);
+    putEntityDependencies(DirectionNameException.class);
+    putEntityDependencies(WrongWayConcurrency.class);
+    putEntityDependencies(DirectionEntry.class);
+    putEntityDependencies(AlternateStopNameException.class);
+
+    SEQUENTIAL_ENTITY_CLASSES.add(Agency.class);
+    SEQUENTIAL_ENTITY_CLASSES.add(StopAreaElement.class);
+  }
+
   private List<Class<?>> _entityClasses = new ArrayList<Class<?>>();
 
   private GtfsReaderContextImpl _context = new GtfsReaderContextImpl();
@@ -58,7 +129,16 @@ public class GtfsReader extends CsvEntityReader {
 
   private boolean _overwriteDuplicates = false;
 
-  private File _inputLocation = null;
+  private int _parallelism = 1;
+
+  private int _parallelChunkSize = 8 * 1024 * 1024;
+
+  private Set<Class<?>> _chunkedEntityClasses = new HashSet<Class<?>>(
+      Arrays.<Class<?>> asList(StopTime.class, ShapePoint.class));
+
+  private boolean _trimValues = false;
+
+  private boolean _internStrings = false;
 
   public GtfsReader() {
 
@@ -104,10 +184,8 @@ public class GtfsReader extends CsvEntityReader {
     _entityClasses.add(DirectionEntry.class);
     _entityClasses.add(AlternateStopNameException.class);
 
-    CsvTokenizerStrategy tokenizerStrategy = new CsvTokenizerStrategy();
-    tokenizerStrategy.getCsvParser().setTrimInitialWhitespace(true);
-    setTokenizerStrategy(tokenizerStrategy);
-    
+    setTokenizerStrategy(createTokenizerStrategy());
+
     setTrimValues(true);
 
     /**
@@ -122,9 +200,15 @@ public class GtfsReader extends CsvEntityReader {
     addEntityHandler(new EntityHandlerImpl());
   }
 
+  /**
+   * A zip file is read through a {@link ZipCsvInputSource}, which opens it
+   * once for both entity and metadata files.
+   */
   public void setInputLocation(File path) throws IOException {
-    super.setInputLocation(path);
-    _inputLocation = path;
+    if (path.isDirectory())
+      super.setInputLocation(path);
+    else
+      setInputSource(new ZipCsvInputSource(path));
   }
 
   public void setLastModifiedTime(Long lastModifiedTime) {
@@ -183,6 +267,82 @@ public class GtfsReader extends CsvEntityReader {
     _overwriteDuplicates = overwriteDuplicates;
   }
 
+  @Override
+  public void setTrimValues(boolean trimValues) {
+    super.setTrimValues(trimValues);
+    _trimValues = trimValues;
+  }
+
+  @Override
+  public void setInternStrings(boolean internStrings) {
+    super.setInternStrings(internStrings);
+    _internStrings = internStrings;
+  }
+
+  public int getParallelism() {
+    return _parallelism;
+  }
+
+  /**
+   * Sets the number of worker threads used by {@link #run(CsvInputSource)}.
+   * The default of one reads each entity file in turn on the calling thread.
+   * With more than one, files whose referenced entities have already been
+   * loaded are tokenized and converted concurrently, and the resulting
+   * entities are then handed to the entity handlers and the entity store on
+   * the calling thread in {@link #getEntityClasses()} order, so the loaded
+   * store matches a serial read. Entities of a file are buffered until the
+   * file, or for {@link #getChunkedEntityClasses()} a batch of chunks, has
+   * been fully read, and nothing is saved while a worker is still parsing.
+   * 
+   * The entity store must allow concurrent
+   * {@link GenericMutableDao#getEntityForId(Class, Serializable)} calls while
+   * nothing is being saved, which holds for {@link GtfsDaoImpl} and its
+   * subclasses but not for session-based stores.
+   * 
+   * @param parallelism the number of worker threads
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + parallelism);
+    _parallelism = parallelism;
+  }
+
+  public int getParallelChunkSize() {
+    return _parallelChunkSize;
+  }
+
+  /**
+   * Sets the approximate size in bytes of the pieces that the files of
+   * {@link #getChunkedEntityClasses()} are split into when reading with a
+   * {@link #setParallelism(int) parallelism} above one. Each piece ends on a
+   * line break and is parsed on its own worker thread, and the entities of
+   * all pieces are handled in file order. Twice the parallelism pieces are
+   * parsed at a time, which bounds both the raw bytes and the parsed entities
+   * held in memory.
+   * 
+   * @param parallelChunkSize the chunk size in bytes
+   */
+  public void setParallelChunkSize(int parallelChunkSize) {
+    if (parallelChunkSize < 1)
+      throw new IllegalArgumentException("chunk size must be positive: "
+          + parallelChunkSize);
+    _parallelChunkSize = parallelChunkSize;
+  }
+
+  /**
+   * @return the entity classes whose files are split into chunks and parsed
+   *         by several worker threads in a parallel read, by default
+   *         {@link StopTime} and {@link ShapePoint}
+   */
+  public Set<Class<?>> getChunkedEntityClasses() {
+    return _chunkedEntityClasses;
+  }
+
+  public void setChunkedEntityClasses(Set<Class<?>> chunkedEntityClasses) {
+    _chunkedEntityClasses = chunkedEntityClasses;
+  }
+
   public void readEntities(Class<?> entityClass, Reader reader) throws IOException, CsvEntityIOException {
     if (entityClass == Location.class) {
       for (Location location : new LocationsGeoJSONReader(reader, getDefaultAgencyId()).read()) {
@@ -203,11 +363,15 @@ public class GtfsReader extends CsvEntityReader {
 
     _entityStore.open();
 
-    for (Class<?> entityClass : classes) {
-      _log.info("reading entities: " + entityClass.getName());
+    if (_parallelism > 1) {
+      readEntitiesInParallel(classes, source);
+    } else {
+      for (Class<?> entityClass : classes) {
+        _log.info("reading entities: " + entityClass.getName());
 
-      readEntities(entityClass, source);
-      _entityStore.flush();
+        readEntities(entityClass, source);
+        _entityStore.flush();
+      }
     }
 
     _entityStore.close();
@@ -220,45 +384,207 @@ public class GtfsReader extends CsvEntityReader {
         for (String metaFile : filenames) {
           if (source.hasResource(metaFile)) {
             _log.info("reading metadata file: " + metaFile);
-            ((GtfsDaoImpl) _entityStore).addMetadata(metaFile, readContent(_inputLocation, metaFile));
+            ((GtfsDaoImpl) _entityStore).addMetadata(metaFile, readContent(source, metaFile));
           }
         }
       }
     }
   }
 
-  private String readContent(File inputLocation, String filename) {
-    if (inputLocation.getAbsoluteFile().getName().endsWith(".zip")) {
-      // zip file
-      return readContentFromZip(inputLocation,
-        filename);
-    } else {
-      // file in directory
-      return readContentFromFile(new File(inputLocation.getAbsolutePath()
-              + File.separator
-              + filename));
+  private String readContent(CsvInputSource source, String filename) {
+    try (InputStream in = source.getResource(filename)) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      System.err.println("issue reading content from " + filename);
     }
+    return null;
   }
 
-  private String readContentFromFile(File filePath) {
-    StringBuffer sb = new StringBuffer();
+  /**
+   * Reads the entity files in stages. The files of a stage are parsed
+   * concurrently, and every worker of the stage has finished before any of
+   * their entities are handled in class order, so the entity store and the
+   * agency id mappings never change while a worker reads them. Files of
+   * {@link #SEQUENTIAL_ENTITY_CLASSES} are read on the calling thread once the
+   * workers are done, and chunked files are read in batches of chunks after
+   * the other files of the stage have been handled.
+   */
+  private void readEntitiesInParallel(List<Class<?>> classes,
+      CsvInputSource source) throws IOException {
+
+    /**
+     * Schemas are created lazily and cached by the schema factory, so make
+     * sure they all exist before the worker threads ask for them
+     */
+    for (Class<?> entityClass : classes) {
+      getEntitySchemaFactory().getSchema(entityClass);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(_parallelism);
+
     try {
-      byte[] bytes = Files.readAllBytes(filePath.toPath());
-      sb.append(new String(bytes, StandardCharsets.UTF_8));
-    } catch (IOException e) {
-      System.err.println("issue reading content from " + filePath);
+      for (List<Class<?>> stage : getParallelReadStages(classes)) {
+
+        List<List<Future<List<Object>>>> results = new ArrayList<List<Future<List<Object>>>>();
+        for (Class<?> entityClass : stage) {
+          if (SEQUENTIAL_ENTITY_CLASSES.contains(entityClass)
+              || isChunkedRead(entityClass, source)) {
+            results.add(null);
+          } else {
+            results.add(Collections.singletonList(executor.submit(new BufferedEntityReader(
+                entityClass, source))));
+          }
+        }
+
+        List<List<Object>> entities = new ArrayList<List<Object>>();
+        for (List<Future<List<Object>>> result : results) {
+          entities.add(result == null ? null : getBufferedEntities(result));
+        }
+
+        for (int i = 0; i < stage.size(); i++) {
+          Class<?> entityClass = stage.get(i);
+          if (SEQUENTIAL_ENTITY_CLASSES.contains(entityClass)) {
+            _log.info("reading entities: " + entityClass.getName());
+            readEntities(entityClass, source);
+          } else if (entities.get(i) == null) {
+            readChunks(executor, entityClass, source);
+          } else {
+            for (Object entity : entities.get(i)) {
+              injectEntity(entity);
+            }
+            entities.set(i, null);
+          }
+          _entityStore.flush();
+        }
+      }
+    } finally {
+      executor.shutdownNow();
     }
-    return sb.toString();
   }
 
-  private String readContentFromZip(File zipFilePath, String zipEntryName) {
+  private boolean isChunkedRead(Class<?> entityClass, CsvInputSource source)
+      throws IOException {
+    if (!_chunkedEntityClasses.contains(entityClass))
+      return false;
+    String filename = getEntitySchemaFactory().getSchema(entityClass).getFilename();
+    return filename != null && source.hasResource(filename);
+  }
+
+  /**
+   * Splits an entity file into line-aligned chunks of roughly
+   * {@link #getParallelChunkSize()} bytes, each parsed with a copy of the
+   * header line. Chunks are parsed in batches of twice the parallelism, and
+   * the entities of a batch are handled in file order and released once the
+   * whole batch has been parsed. Only one batch of raw chunks and parsed
+   * entities is held in memory at a time, and nothing is saved while a worker
+   * is parsing.
+   */
+  private void readChunks(ExecutorService executor, Class<?> entityClass,
+      CsvInputSource source) throws IOException {
+
+    _log.info("reading entities in chunks: " + entityClass.getName());
+
+    String filename = getEntitySchemaFactory().getSchema(entityClass).getFilename();
+    int batchSize = _parallelism * 2;
+    List<Future<List<Object>>> batch = new ArrayList<Future<List<Object>>>(
+        batchSize);
+
+    LineChunkReader reader = new LineChunkReader(source.getResource(filename),
+        _parallelChunkSize);
     try {
-      ZipHandler zip = new ZipHandler(zipFilePath);
-      return zip.readTextFromFile(zipEntryName);
-    } catch (IOException e) {
-      System.err.println("issue reading content from " + zipFilePath + ":" + zipEntryName);
+      byte[] header = reader.readLine();
+      boolean moreChunks = true;
+      while (moreChunks) {
+        while (batch.size() < batchSize) {
+          byte[] chunk = reader.readChunk();
+          if (chunk == null) {
+            moreChunks = false;
+            break;
+          }
+          batch.add(executor.submit(new BufferedEntityReader(entityClass,
+              header, chunk)));
+        }
+        for (Object entity : getBufferedEntities(batch)) {
+          injectEntity(entity);
+        }
+        batch.clear();
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Groups the entity classes into stages that can be read concurrently. A
+   * class is placed in a later stage than every earlier class it references,
+   * so those entities are in the store when it is read, and in no earlier
+   * stage than any earlier class that references it, so it is not in the
+   * store before those are read. Within a stage, classes keep their relative
+   * order.
+   */
+  private List<List<Class<?>>> getParallelReadStages(List<Class<?>> classes) {
+
+    int[] stages = new int[classes.size()];
+    List<List<Class<?>>> stageClasses = new ArrayList<List<Class<?>>>();
+
+    for (int i = 0; i < classes.size(); i++) {
+      Class<?> entityClass = classes.get(i);
+      List<Class<?>> dependencies = ENTITY_DEPENDENCIES.get(entityClass);
+      int stage = 0;
+
+      for (int j = 0; j < i; j++) {
+        Class<?> previousClass = classes.get(j);
+        List<Class<?>> previousDependencies = ENTITY_DEPENDENCIES.get(previousClass);
+        if (dependencies == null || previousClass == Agency.class
+            || previousClass == entityClass
+            || dependencies.contains(previousClass)) {
+          stage = Math.max(stage, stages[j] + 1);
+        } else if (previousDependencies == null
+            || previousDependencies.contains(entityClass)) {
+          stage = Math.max(stage, stages[j]);
+        }
+      }
+
+      stages[i] = stage;
+      while (stageClasses.size() <= stage)
+        stageClasses.add(new ArrayList<Class<?>>());
+      stageClasses.get(stage).add(entityClass);
+    }
+
+    return stageClasses;
+  }
+
+  private static void putEntityDependencies(Class<?> entityClass,
+      Class<?>... dependencies) {
+    ENTITY_DEPENDENCIES.put(entityClass, Arrays.asList(dependencies));
+  }
+
+  private List<Object> getBufferedEntities(List<Future<List<Object>>> results)
+      throws IOException {
+    List<Object> entities = new ArrayList<Object>();
+    for (Future<List<Object>> result : results) {
+      entities.addAll(getBufferedEntities(result));
+    }
+    return entities;
+  }
+
+  private List<Object> getBufferedEntities(Future<List<Object>> result)
+      throws IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading entities");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
     }
-    return null;
   }
 
   /****
@@ -269,6 +595,12 @@ public class GtfsReader extends CsvEntityReader {
     return GtfsEntitySchemaFactory.createEntitySchemaFactory();
   }
 
+  protected CsvTokenizerStrategy createTokenizerStrategy() {
+    CsvTokenizerStrategy tokenizerStrategy = new CsvTokenizerStrategy();
+    tokenizerStrategy.getCsvParser().setTrimInitialWhitespace(true);
+    return tokenizerStrategy;
+  }
+
   protected Object getEntity(Class<?> entityClass, Serializable id) {
     if (entityClass == null)
       throw new IllegalArgumentException("entity class must not be null");
@@ -411,6 +743,86 @@ public class GtfsReader extends CsvEntityReader {
     }
   }
 
+  /**
+   * Reads a single entity file, or a chunk of one, on a worker thread,
+   * collecting the entities instead of handling them so that the entity store
+   * is not modified. Entity references are still resolved through the shared
+   * {@link GtfsReaderContext}.
+   */
+  private class BufferedEntityReader extends CsvEntityReader implements
+      EntityHandler, Callable<List<Object>> {
+
+    private final Class<?> _entityClass;
+
+    private final CsvInputSource _source;
+
+    private final byte[] _header;
+
+    private final byte[] _chunk;
+
+    private final List<Object> _entities = new ArrayList<Object>();
+
+    public BufferedEntityReader(Class<?> entityClass, CsvInputSource source) {
+      this(entityClass, source, null, null);
+    }
+
+    public BufferedEntityReader(Class<?> entityClass, byte[] header,
+        byte[] chunk) {
+      this(entityClass, null, header, chunk);
+    }
+
+    private BufferedEntityReader(Class<?> entityClass, CsvInputSource source,
+        byte[] header, byte[] chunk) {
+      _entityClass = entityClass;
+      _source = source;
+      _header = header;
+      _chunk = chunk;
+
+      setTokenizerStrategy(createTokenizerStrategy());
+      setTrimValues(_trimValues);
+      setInternStrings(_internStrings);
+      setEntitySchemaFactory(GtfsReader.this.getEntitySchemaFactory());
+
+      CsvEntityContext ctx = getContext();
+      ctx.put(KEY_CONTEXT, _context);
+      Long lastModifiedTime = getLastModfiedTime();
+      if (lastModifiedTime != null)
+        ctx.put("lastModifiedTime", lastModifiedTime);
+
+      addEntityHandler(this);
+    }
+
+    @Override
+    public List<Object> call() throws IOException {
+      if (_source != null) {
+        _log.info("reading entities: " + _entityClass.getName());
+        readEntities(_entityClass, _source);
+      } else {
+        InputStream in = new SequenceInputStream(new ByteArrayInputStream(
+            _header), new ByteArrayInputStream(_chunk));
+        readEntities(_entityClass, new InputStreamReader(in,
+            StandardCharsets.UTF_8));
+      }
+      return _entities;
+    }
+
+    @Override
+    public void handleEntity(Object entity) {
+      _entities.add(entity);
+    }
+
+    @Override
+    public void readEntities(Class<?> entityClass, Reader reader)
+        throws IOException, CsvEntityIOException {
+      if (entityClass == Location.class) {
+        _entities.addAll(new LocationsGeoJSONReader(reader,
+            GtfsReader.this.getDefaultAgencyId()).read());
+      } else {
+        super.readEntities(entityClass, reader);
+      }
+    }
+  }
+
   private class GtfsReaderContextImpl implements GtfsReaderContext {
 
     public Object getEntity(Class<?> entityClass, Serializable id) {
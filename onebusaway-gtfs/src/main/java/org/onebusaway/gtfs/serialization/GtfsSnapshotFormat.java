@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Area;
+import org.onebusaway.gtfs.model.BookingRule;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopLocation;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * Layout of the binary snapshots written by {@link GtfsSnapshotWriter} and
+ * read by {@link GtfsSnapshotReader}.
+ *
+ * A snapshot starts with a fixed-size header holding the format version, the
+ * hash of the source feed and the offsets of the sections that follow. The
+ * entities section is a Java serialization stream of the metadata files, the
+ * entities of every type and a dictionary of the objects and strings
+ * referenced from packed columns. When the DAO packs stop times or shape
+ * points, they follow as column blocks: one little-endian block of doubles or
+ * ints per column, where object columns hold indexes into the dictionary, or
+ * -1 for null. Each block is 8-byte aligned. The header records the offset
+ * and length of the entities section and the row counts of the packed types,
+ * from which the lengths of their column blocks follow.
+ */
+public final class GtfsSnapshotFormat {
+
+  static final long MAGIC = 0x475446534E415053L; // "GTFSNAPS"
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 512;
+
+  static final int MAX_FEED_HASH_LENGTH = 256;
+
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /****
+   * Header offsets
+   ****/
+
+  static final int MAGIC_OFFSET = 0;
+
+  static final int VERSION_OFFSET = 8;
+
+  static final int ENTITIES_OFFSET = 16;
+
+  static final int ENTITIES_LENGTH = 24;
+
+  static final int STOP_TIMES_OFFSET = 32;
+
+  static final int STOP_TIME_ROWS = 40;
+
+  static final int SHAPE_POINTS_OFFSET = 48;
+
+  static final int SHAPE_POINT_ROWS = 56;
+
+  static final int FEED_HASH_LENGTH = 64;
+
+  static final int FEED_HASH = 68;
+
+  static final ColumnSet<StopTime> STOP_TIME_COLUMNS = new ColumnSet<StopTime>(
+      StopTime::new);
+
+  static final ColumnSet<ShapePoint> SHAPE_POINT_COLUMNS = new ColumnSet<ShapePoint>(
+      ShapePoint::new);
+
+  static {
+    // The columns held by StopTimeArray
+    ColumnSet<StopTime> st = STOP_TIME_COLUMNS;
+    st.addDouble(StopTime::getShapeDistTraveled, StopTime::setShapeDistTraveled);
+    st.addDouble(StopTime::getMeanDurationFactor,
+        StopTime::setMeanDurationFactor);
+    st.addDouble(StopTime::getMeanDurationOffset,
+        StopTime::setMeanDurationOffset);
+    st.addDouble(StopTime::getSafeDurationFactor,
+        StopTime::setSafeDurationFactor);
+    st.addDouble(StopTime::getSafeDurationOffset,
+        StopTime::setSafeDurationOffset);
+    st.addInt(StopTime::getArrivalTime, StopTime::setArrivalTime);
+    st.addInt(StopTime::getDepartureTime, StopTime::setDepartureTime);
+    st.addInt(StopTime::getTimepoint, StopTime::setTimepoint);
+    st.addInt(StopTime::getStopSequence, StopTime::setStopSequence);
+    st.addInt(StopTime::getPickupType, StopTime::setPickupType);
+    st.addInt(StopTime::getDropOffType, StopTime::setDropOffType);
+    st.addObject(StopTime::getTrip, (s, v) -> s.setTrip((Trip) v));
+    st.addObject(StopTime::getStop, (s, v) -> s.setStop((StopLocation) v));
+    st.addObject(StopTime::getLocation,
+        (s, v) -> s.setLocation((StopLocation) v));
+    st.addObject(StopTime::getLocationGroup,
+        (s, v) -> s.setLocationGroup((StopLocation) v));
+    st.addObject(StopTime::getStartServiceArea,
+        (s, v) -> s.setStartServiceArea((Area) v));
+    st.addObject(StopTime::getEndServiceArea,
+        (s, v) -> s.setEndServiceArea((Area) v));
+    st.addObject(StopTime::getPickupBookingRule,
+        (s, v) -> s.setPickupBookingRule((BookingRule) v));
+    st.addObject(StopTime::getDropOffBookingRule,
+        (s, v) -> s.setDropOffBookingRule((BookingRule) v));
+    st.addObject(StopTime::getStopHeadsign,
+        (s, v) -> s.setStopHeadsign((String) v));
+    st.addObject(StopTime::getRouteShortName,
+        (s, v) -> s.setRouteShortName((String) v));
+    st.addObject(StopTime::getFreeRunningFlag,
+        (s, v) -> s.setFreeRunningFlag((String) v));
+
+    // The columns held by ShapePointArray
+    ColumnSet<ShapePoint> sp = SHAPE_POINT_COLUMNS;
+    sp.addDouble(ShapePoint::getLat, ShapePoint::setLat);
+    sp.addDouble(ShapePoint::getLon, ShapePoint::setLon);
+    sp.addDouble(ShapePoint::getDistTraveled, ShapePoint::setDistTraveled);
+    sp.addInt(ShapePoint::getSequence, ShapePoint::setSequence);
+    sp.addObject(ShapePoint::getShapeId,
+        (s, v) -> s.setShapeId((AgencyAndId) v));
+  }
+
+  private GtfsSnapshotFormat() {
+
+  }
+
+  /**
+   * Computes a SHA-256 hash of a GTFS feed, to record in a snapshot with
+   * {@link GtfsSnapshotWriter#setFeedHash(String)} and check against with
+   * {@link GtfsSnapshotReader#setExpectedFeedHash(String)}. For a directory,
+   * the hash covers the names and contents of its files.
+   *
+   * @param path a GTFS zip file or directory
+   * @return the hash, as lowercase hex
+   * @throws IOException on errors reading the feed
+   */
+  public static String computeFeedHash(File path) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+
+    if (path.isDirectory()) {
+      File[] files = path.listFiles(File::isFile);
+      Arrays.sort(files);
+      for (File file : files) {
+        digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        updateDigest(digest, file);
+      }
+    } else {
+      updateDigest(digest, path);
+    }
+
+    StringBuilder b = new StringBuilder();
+    for (byte value : digest.digest())
+      b.append(String.format("%02x", value));
+    return b.toString();
+  }
+
+  static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static void updateDigest(MessageDigest digest, File file)
+      throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+      while (in.read(buffer) != -1) {
+      }
+    }
+  }
+
+  /**
+   * The columns of a packed entity type, in the order their blocks are
+   * written: doubles, then ints, then object references.
+   */
+  static final class ColumnSet<T> {
+
+    final Supplier<T> factory;
+
+    final List<ToDoubleFunction<T>> doubleGetters = new ArrayList<ToDoubleFunction<T>>();
+
+    final List<ObjDoubleConsumer<T>> doubleSetters = new ArrayList<ObjDoubleConsumer<T>>();
+
+    final List<ToIntFunction<T>> intGetters = new ArrayList<ToIntFunction<T>>();
+
+    final List<ObjIntConsumer<T>> intSetters = new ArrayList<ObjIntConsumer<T>>();
+
+    final List<Function<T, Object>> objectGetters = new ArrayList<Function<T, Object>>();
+
+    final List<BiConsumer<T, Object>> objectSetters = new ArrayList<BiConsumer<T, Object>>();
+
+    ColumnSet(Supplier<T> factory) {
+      this.factory = factory;
+    }
+
+    /**
+     * @return the size in bytes of the column blocks for the given number of
+     *         rows, including alignment
+     */
+    long getSize(int rows) {
+      long doubleBlock = align((long) rows * 8);
+      long intBlock = align((long) rows * 4);
+      return doubleBlock * doubleGetters.size() + intBlock
+          * (intGetters.size() + objectGetters.size());
+    }
+
+    private void addDouble(ToDoubleFunction<T> getter, ObjDoubleConsumer<T> setter) {
+      doubleGetters.add(getter);
+      doubleSetters.add(setter);
+    }
+
+    private void addInt(ToIntFunction<T> getter, ObjIntConsumer<T> setter) {
+      intGetters.add(getter);
+      intSetters.add(setter);
+    }
+
+    private void addObject(Function<T, Object> getter,
+        BiConsumer<T, Object> setter) {
+      objectGetters.add(getter);
+      objectSetters.add(setter);
+    }
+  }
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.serialization.GtfsSnapshotFormat.ColumnSet;
+import org.onebusaway.gtfs.services.GenericMutableDao;
+import org.onebusaway.gtfs.services.GtfsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restores the entities of a snapshot written by {@link GtfsSnapshotWriter}
+ * into an entity store, typically a {@link GtfsDaoImpl} or {@link
+ * org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl} configured the same way as
+ * the one that was written. Every entity is rebuilt and saved to the store,
+ * without going through the CSV parser. Packed stop times and shape points are
+ * copied row by row out of their mapped column blocks. Other entities,
+ * including stop times and shape points that were not packed, are read back
+ * with Java serialization, which is not much faster than parsing the feed, so
+ * snapshots pay off mostly for DAOs that pack them. The section lengths in the
+ * header are checked against the file before anything is read.
+ *
+ * Java serialization data is only accepted for the GTFS model classes and the
+ * JDK and GeoJSON classes they use, unless
+ * {@link #setSerialFilter(ObjectInputFilter)} allows more, such as the types
+ * of entity extensions. Even so, only read snapshots from trusted locations.
+ */
+public class GtfsSnapshotReader {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotReader.class);
+
+  /**
+   * The classes a snapshot of the GTFS model is made of, and nothing else
+   */
+  private static final ObjectInputFilter DEFAULT_SERIAL_FILTER = ObjectInputFilter.Config.createFilter(
+      "org.onebusaway.gtfs.model.**;org.geojson.**;java.lang.*;java.time.*;java.util.*;!*");
+
+  private File _inputLocation;
+
+  private GenericMutableDao _entityStore = new GtfsDaoImpl();
+
+  private String _expectedFeedHash;
+
+  private String _feedHash;
+
+  private ObjectInputFilter _serialFilter = DEFAULT_SERIAL_FILTER;
+
+  public void setInputLocation(File path) {
+    _inputLocation = path;
+  }
+
+  public void setEntityStore(GenericMutableDao entityStore) {
+    _entityStore = entityStore;
+  }
+
+  public GenericMutableDao getEntityStore() {
+    return _entityStore;
+  }
+
+  /**
+   * @param expectedFeedHash if set, {@link #run()} throws a
+   *          {@link StaleGtfsSnapshotException} unless the snapshot was
+   *          written with the same feed hash
+   */
+  public void setExpectedFeedHash(String expectedFeedHash) {
+    _expectedFeedHash = expectedFeedHash;
+  }
+
+  /**
+   * @param serialFilter the filter for the classes of the serialized
+   *          entities, replacing the default one, which only allows the GTFS
+   *          model classes and the JDK and GeoJSON classes they use
+   */
+  public void setSerialFilter(ObjectInputFilter serialFilter) {
+    _serialFilter = serialFilter;
+  }
+
+  /**
+   * @return the feed hash recorded in the snapshot, once {@link #run()} has
+   *         read its header
+   */
+  public String getFeedHash() {
+    return _feedHash;
+  }
+
+  public void run() throws IOException {
+    try (FileChannel channel = FileChannel.open(_inputLocation.toPath(),
+        StandardOpenOption.READ)) {
+
+      ByteBuffer header = ByteBuffer.allocate(GtfsSnapshotFormat.HEADER_SIZE).order(
+          GtfsSnapshotFormat.BYTE_ORDER);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0)
+          throw new IOException("truncated snapshot: " + _inputLocation);
+      }
+
+      if (header.getLong(GtfsSnapshotFormat.MAGIC_OFFSET) != GtfsSnapshotFormat.MAGIC)
+        throw new IOException("not a GTFS snapshot: " + _inputLocation);
+      int version = header.getInt(GtfsSnapshotFormat.VERSION_OFFSET);
+      if (version != GtfsSnapshotFormat.VERSION)
+        throw new IOException("unsupported snapshot version " + version + ": "
+            + _inputLocation);
+
+      int feedHashLength = header.getInt(GtfsSnapshotFormat.FEED_HASH_LENGTH);
+      if (feedHashLength < 0
+          || feedHashLength > GtfsSnapshotFormat.MAX_FEED_HASH_LENGTH)
+        throw new IOException("invalid snapshot header: " + _inputLocation);
+      byte[] feedHash = new byte[feedHashLength];
+      header.position(GtfsSnapshotFormat.FEED_HASH);
+      header.get(feedHash);
+      _feedHash = new String(feedHash, StandardCharsets.UTF_8);
+      if (_expectedFeedHash != null && !_expectedFeedHash.equals(_feedHash))
+        throw new StaleGtfsSnapshotException(_expectedFeedHash, _feedHash);
+
+      long entitiesOffset = header.getLong(GtfsSnapshotFormat.ENTITIES_OFFSET);
+      long entitiesLength = header.getLong(GtfsSnapshotFormat.ENTITIES_LENGTH);
+      if (entitiesOffset < GtfsSnapshotFormat.HEADER_SIZE || entitiesLength < 0
+          || entitiesLength > channel.size() - entitiesOffset)
+        throw new IOException("invalid snapshot header: " + _inputLocation);
+      long entitiesEnd = entitiesOffset + entitiesLength;
+      long stopTimeRows = getRows(header, GtfsSnapshotFormat.STOP_TIME_ROWS);
+      long stopTimesOffset = getColumnsOffset(header,
+          GtfsSnapshotFormat.STOP_TIMES_OFFSET, stopTimeRows, entitiesEnd);
+      long shapePointRows = getRows(header,
+          GtfsSnapshotFormat.SHAPE_POINT_ROWS);
+      long shapePointsOffset = getColumnsOffset(header,
+          GtfsSnapshotFormat.SHAPE_POINTS_OFFSET, shapePointRows, entitiesEnd);
+
+      _entityStore.open();
+
+      channel.position(entitiesOffset);
+      // Not closed, as that would close the channel
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+          new SectionInputStream(Channels.newInputStream(channel),
+              entitiesLength), 64 * 1024));
+      in.setObjectInputFilter(_serialFilter);
+      Map<String, String> metadata = readEntities(in);
+      Object[] dictionary = ((List<?>) readObject(in)).toArray();
+
+      if (stopTimeRows >= 0) {
+        _log.info("reading packed stop times: " + stopTimeRows);
+        readColumns(channel, stopTimesOffset, (int) stopTimeRows,
+            GtfsSnapshotFormat.STOP_TIME_COLUMNS, dictionary);
+      }
+
+      if (shapePointRows >= 0) {
+        _log.info("reading packed shape points: " + shapePointRows);
+        readColumns(channel, shapePointsOffset, (int) shapePointRows,
+            GtfsSnapshotFormat.SHAPE_POINT_COLUMNS, dictionary);
+      }
+
+      _entityStore.close();
+
+      if (_entityStore instanceof GtfsDao) {
+        GtfsDao dao = (GtfsDao) _entityStore;
+        for (Map.Entry<String, String> entry : metadata.entrySet())
+          dao.addMetadata(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the row count of a packed entity type, or -1 if it isn't packed
+   */
+  private long getRows(ByteBuffer header, int index) throws IOException {
+    long rows = header.getLong(index);
+    if (rows < -1 || rows > Integer.MAX_VALUE)
+      throw new IOException("invalid snapshot header: " + _inputLocation);
+    return rows;
+  }
+
+  /**
+   * Column blocks follow the entities section, and their lengths follow from
+   * the row count, so they are checked against the file as they are mapped.
+   */
+  private long getColumnsOffset(ByteBuffer header, int index, long rows,
+      long entitiesEnd) throws IOException {
+    long offset = header.getLong(index);
+    if (rows >= 0 && offset < entitiesEnd)
+      throw new IOException("invalid snapshot header: " + _inputLocation);
+    return offset;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, String> readEntities(ObjectInputStream in)
+      throws IOException {
+    Map<String, String> metadata = (Map<String, String>) readObject(in);
+    int classCount = in.readInt();
+    for (int i = 0; i < classCount; i++) {
+      Class<?> entityClass = (Class<?>) readObject(in);
+      List<?> entities = (List<?>) readObject(in);
+      _log.info("reading entities: " + entityClass.getName() + " "
+          + entities.size());
+      for (Object entity : entities)
+        _entityStore.saveEntity(entity);
+      _entityStore.flush();
+    }
+    return metadata;
+  }
+
+  /**
+   * A class rejected by the serial filter fails with an
+   * {@link java.io.InvalidClassException}
+   */
+  private Object readObject(ObjectInputStream in) throws IOException {
+    try {
+      return in.readObject();
+    } catch (ClassNotFoundException ex) {
+      throw new IOException("unknown class in snapshot: " + _inputLocation, ex);
+    }
+  }
+
+  /**
+   * Maps the column blocks of a packed entity type and saves one entity per
+   * row, copied out of the blocks.
+   */
+  private <T> void readColumns(FileChannel channel, long offset, int rows,
+      ColumnSet<T> columns, Object[] dictionary) throws IOException {
+
+    int doubleCount = columns.doubleSetters.size();
+    int intCount = columns.intSetters.size();
+    int objectCount = columns.objectSetters.size();
+
+    ByteBuffer[] doubles = new ByteBuffer[doubleCount];
+    for (int i = 0; i < doubleCount; i++) {
+      doubles[i] = map(channel, offset, (long) rows * 8);
+      offset += GtfsSnapshotFormat.align((long) rows * 8);
+    }
+    ByteBuffer[] ints = new ByteBuffer[intCount + objectCount];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = map(channel, offset, (long) rows * 4);
+      offset += GtfsSnapshotFormat.align((long) rows * 4);
+    }
+
+    for (int row = 0; row < rows; row++) {
+      T entity = columns.factory.get();
+      for (int i = 0; i < doubleCount; i++)
+        columns.doubleSetters.get(i).accept(entity,
+            doubles[i].getDouble(row * 8));
+      for (int i = 0; i < intCount; i++)
+        columns.intSetters.get(i).accept(entity, ints[i].getInt(row * 4));
+      for (int i = 0; i < objectCount; i++) {
+        int index = ints[intCount + i].getInt(row * 4);
+        columns.objectSetters.get(i).accept(entity,
+            index == -1 ? null : dictionary[index]);
+      }
+      _entityStore.saveEntity(entity);
+    }
+    _entityStore.flush();
+  }
+
+  private ByteBuffer map(FileChannel channel, long offset, long length)
+      throws IOException {
+    if (offset + length > channel.size())
+      throw new IOException("truncated snapshot: " + _inputLocation);
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(
+        GtfsSnapshotFormat.BYTE_ORDER);
+  }
+
+  /**
+   * Ends at the end of the entities section, so that entities running past
+   * their recorded length fail to read instead of being read from the column
+   * blocks.
+   */
+  private static class SectionInputStream extends FilterInputStream {
+
+    private long _remaining;
+
+    public SectionInputStream(InputStream in, long length) {
+      super(in);
+      _remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (_remaining == 0)
+        return -1;
+      int b = in.read();
+      if (b >= 0)
+        _remaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0)
+        return 0;
+      if (_remaining == 0)
+        return -1;
+      int n = in.read(b, off, (int) Math.min(len, _remaining));
+      if (n > 0)
+        _remaining -= n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, _remaining));
+      _remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), _remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
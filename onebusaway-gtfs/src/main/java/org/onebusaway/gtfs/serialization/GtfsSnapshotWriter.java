@@ -0,0 +1,327 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.onebusaway.gtfs.serialization.GtfsSnapshotFormat.align;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.serialization.GtfsSnapshotFormat.ColumnSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a loaded {@link GtfsDaoImpl}, or {@link
+ * org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl}, to a binary snapshot that
+ * {@link GtfsSnapshotReader} restores without parsing the source feed again.
+ * See {@link GtfsSnapshotFormat} for the layout.
+ *
+ * Packed stop times and shape points are written as column blocks, holding
+ * the same columns as the packed arrays. All other entities, including stop
+ * times and shape points that are not packed, are written with Java
+ * serialization, so any extensions attached to them must be
+ * {@link java.io.Serializable}. For large feeds, pack stop times and shape
+ * points, as those are where most of the time goes otherwise.
+ */
+public class GtfsSnapshotWriter {
+
+  private static final Logger _log = LoggerFactory.getLogger(GtfsSnapshotWriter.class);
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private File _outputLocation;
+
+  private String _feedHash = "";
+
+  public void setOutputLocation(File path) {
+    _outputLocation = path;
+  }
+
+  /**
+   * @param feedHash the hash of the feed the DAO was loaded from, typically
+   *          from {@link GtfsSnapshotFormat#computeFeedHash(File)}
+   */
+  public void setFeedHash(String feedHash) {
+    _feedHash = feedHash;
+  }
+
+  public void run(GtfsDaoImpl dao) throws IOException {
+
+    byte[] feedHash = _feedHash.getBytes(StandardCharsets.UTF_8);
+    if (feedHash.length > GtfsSnapshotFormat.MAX_FEED_HASH_LENGTH)
+      throw new IllegalArgumentException("feed hash is too long: " + _feedHash);
+
+    Collection<StopTime> stopTimes = dao.isPackStopTimes()
+        ? dao.getAllStopTimes() : null;
+    Collection<ShapePoint> shapePoints = dao.isPackShapePoints()
+        ? dao.getAllShapePoints() : null;
+
+    Dictionary dictionary = new Dictionary();
+    if (stopTimes != null)
+      dictionary.addAll(GtfsSnapshotFormat.STOP_TIME_COLUMNS, stopTimes);
+    if (shapePoints != null)
+      dictionary.addAll(GtfsSnapshotFormat.SHAPE_POINT_COLUMNS, shapePoints);
+
+    try (FileChannel channel = FileChannel.open(_outputLocation.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+
+      channel.position(GtfsSnapshotFormat.HEADER_SIZE);
+      // Not closed, as that would close the channel
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+          Channels.newOutputStream(channel), BUFFER_SIZE));
+      writeEntities(out, dao);
+      out.writeObject(dictionary.getValues());
+      out.flush();
+
+      long entitiesLength = channel.position()
+          - GtfsSnapshotFormat.HEADER_SIZE;
+      long offset = align(channel.position());
+
+      long stopTimesOffset = -1;
+      if (stopTimes != null) {
+        _log.info("writing packed stop times: " + stopTimes.size());
+        stopTimesOffset = offset;
+        offset = writeColumns(channel, offset,
+            GtfsSnapshotFormat.STOP_TIME_COLUMNS, stopTimes, dictionary);
+      }
+
+      long shapePointsOffset = -1;
+      if (shapePoints != null) {
+        _log.info("writing packed shape points: " + shapePoints.size());
+        shapePointsOffset = offset;
+        offset = writeColumns(channel, offset,
+            GtfsSnapshotFormat.SHAPE_POINT_COLUMNS, shapePoints, dictionary);
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(GtfsSnapshotFormat.HEADER_SIZE).order(
+          GtfsSnapshotFormat.BYTE_ORDER);
+      header.putLong(GtfsSnapshotFormat.MAGIC_OFFSET, GtfsSnapshotFormat.MAGIC);
+      header.putInt(GtfsSnapshotFormat.VERSION_OFFSET,
+          GtfsSnapshotFormat.VERSION);
+      header.putLong(GtfsSnapshotFormat.ENTITIES_OFFSET,
+          GtfsSnapshotFormat.HEADER_SIZE);
+      header.putLong(GtfsSnapshotFormat.ENTITIES_LENGTH, entitiesLength);
+      header.putLong(GtfsSnapshotFormat.STOP_TIMES_OFFSET, stopTimesOffset);
+      header.putLong(GtfsSnapshotFormat.STOP_TIME_ROWS,
+          stopTimes != null ? stopTimes.size() : -1);
+      header.putLong(GtfsSnapshotFormat.SHAPE_POINTS_OFFSET, shapePointsOffset);
+      header.putLong(GtfsSnapshotFormat.SHAPE_POINT_ROWS,
+          shapePoints != null ? shapePoints.size() : -1);
+      header.putInt(GtfsSnapshotFormat.FEED_HASH_LENGTH, feedHash.length);
+      header.position(GtfsSnapshotFormat.FEED_HASH);
+      header.put(feedHash);
+      header.clear();
+      writeFully(channel, header, 0);
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeEntities(ObjectOutputStream out, GtfsDaoImpl dao)
+      throws IOException {
+
+    Map<String, String> metadata = new LinkedHashMap<String, String>();
+    List<String> metadataFilenames = dao.getOptionalMetadataFilenames();
+    if (metadataFilenames != null) {
+      for (String filename : metadataFilenames) {
+        if (dao.hasMetadata(filename))
+          metadata.put(filename, dao.getMetadata(filename));
+      }
+    }
+    out.writeObject(metadata);
+
+    List<Class<?>> entityClasses = getEntityClasses(dao);
+    out.writeInt(entityClasses.size());
+    for (Class<?> entityClass : entityClasses) {
+      Collection<?> entities = dao.getAllEntitiesForType(entityClass);
+      _log.info("writing entities: " + entityClass.getName() + " "
+          + entities.size());
+      out.writeObject(entityClass);
+      out.writeObject(new ArrayList<Object>(entities));
+    }
+  }
+
+  /**
+   * @return the entity classes stored outside the packed arrays, in the order
+   *         {@link GtfsWriter} writes them, followed by any others by name
+   */
+  private List<Class<?>> getEntityClasses(GtfsDaoImpl dao) {
+    Set<Class<?>> stored = dao.getEntityClasses();
+    Set<Class<?>> entityClasses = new LinkedHashSet<Class<?>>();
+    for (Class<?> entityClass : GtfsEntitySchemaFactory.getEntityClasses()) {
+      if (stored.contains(entityClass))
+        entityClasses.add(entityClass);
+    }
+    List<Class<?>> remaining = new ArrayList<Class<?>>(stored);
+    remaining.removeAll(entityClasses);
+    remaining.sort(Comparator.comparing(Class::getName));
+    entityClasses.addAll(remaining);
+    return new ArrayList<Class<?>>(entityClasses);
+  }
+
+  private <T> long writeColumns(FileChannel channel, long offset,
+      ColumnSet<T> columns, Collection<T> rows, Dictionary dictionary)
+      throws IOException {
+    ColumnOutput out = new ColumnOutput(channel, offset);
+    for (ToDoubleFunction<T> getter : columns.doubleGetters) {
+      for (T row : rows)
+        out.putDouble(getter.applyAsDouble(row));
+      out.align();
+    }
+    for (ToIntFunction<T> getter : columns.intGetters) {
+      for (T row : rows)
+        out.putInt(getter.applyAsInt(row));
+      out.align();
+    }
+    for (Function<T, Object> getter : columns.objectGetters) {
+      for (T row : rows)
+        out.putInt(dictionary.getIndex(getter.apply(row)));
+      out.align();
+    }
+    return out.finish();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer,
+      long position) throws IOException {
+    while (buffer.hasRemaining())
+      position += channel.write(buffer, position);
+  }
+
+  /**
+   * The distinct values of the object columns. Strings and ids are matched by
+   * value, entities by identity.
+   */
+  private static class Dictionary {
+
+    private final List<Object> _values = new ArrayList<Object>();
+
+    private final Map<Object, Integer> _indicesByValue = new HashMap<Object, Integer>();
+
+    private final Map<Object, Integer> _indicesByIdentity = new IdentityHashMap<Object, Integer>();
+
+    public <T> void addAll(ColumnSet<T> columns, Collection<T> rows) {
+      for (Function<T, Object> getter : columns.objectGetters) {
+        for (T row : rows) {
+          Object value = getter.apply(row);
+          if (value == null)
+            continue;
+          Map<Object, Integer> indices = getIndices(value);
+          if (!indices.containsKey(value)) {
+            indices.put(value, _values.size());
+            _values.add(value);
+          }
+        }
+      }
+    }
+
+    public int getIndex(Object value) {
+      if (value == null)
+        return -1;
+      return getIndices(value).get(value);
+    }
+
+    public ArrayList<Object> getValues() {
+      return new ArrayList<Object>(_values);
+    }
+
+    private Map<Object, Integer> getIndices(Object value) {
+      if (value instanceof String || value instanceof AgencyAndId)
+        return _indicesByValue;
+      return _indicesByIdentity;
+    }
+  }
+
+  /**
+   * Buffers column values and writes them to the channel in large blocks.
+   */
+  private static class ColumnOutput {
+
+    private final FileChannel _channel;
+
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+        GtfsSnapshotFormat.BYTE_ORDER);
+
+    private long _position;
+
+    public ColumnOutput(FileChannel channel, long position) {
+      _channel = channel;
+      _position = position;
+    }
+
+    public void putInt(int value) throws IOException {
+      ensureRemaining(4);
+      _buffer.putInt(value);
+    }
+
+    public void putDouble(double value) throws IOException {
+      ensureRemaining(8);
+      _buffer.putDouble(value);
+    }
+
+    public void align() throws IOException {
+      while (((_position + _buffer.position()) & 7) != 0) {
+        ensureRemaining(1);
+        _buffer.put((byte) 0);
+      }
+    }
+
+    public long finish() throws IOException {
+      flush();
+      return _position;
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+      if (_buffer.remaining() < bytes)
+        flush();
+    }
+
+    private void flush() throws IOException {
+      _buffer.flip();
+      int length = _buffer.remaining();
+      writeFully(_channel, _buffer, _position);
+      _position += length;
+      _buffer.clear();
+    }
+  }
+}
@@ -15,20 +15,47 @@
  */
 package org.onebusaway.gtfs.serialization;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.onebusaway.csv_entities.CsvEntityContext;
+import org.onebusaway.csv_entities.CsvEntityContextImpl;
 import org.onebusaway.csv_entities.CsvEntityWriter;
+import org.onebusaway.csv_entities.IndividualCsvEntityWriter;
 import org.onebusaway.csv_entities.schema.DefaultEntitySchemaFactory;
-import org.onebusaway.gtfs.impl.ZipHandler;
+import org.onebusaway.csv_entities.schema.EntitySchemaFactory;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.serialization.comparators.ShapePointComparator;
+import org.onebusaway.gtfs.serialization.comparators.StopTimeComparator;
 import org.onebusaway.gtfs.services.GtfsDao;
+import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,8 +75,28 @@ public class GtfsWriter extends CsvEntityWriter {
     _outputLocation = path;
   }
 
+  private EntitySchemaFactory _entitySchemaFactory = null;
+
+  public void setEntitySchemaFactory(EntitySchemaFactory entitySchemaFactory) {
+    super.setEntitySchemaFactory(entitySchemaFactory);
+    _entitySchemaFactory = entitySchemaFactory;
+  }
+
   private Map<Class<?>, Comparator<?>> _entityComparators = new HashMap<Class<?>, Comparator<?>>();
 
+  private boolean _useRelationalOrder = true;
+
+  private int _parallelism = 1;
+
+  private int _zipMethod = ZipEntry.DEFLATED;
+
+  private int _zipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+  /**
+   * The file being written into a zip entry through this writer, if any
+   */
+  private StreamEntityWriter _streamWriter = null;
+
   public GtfsWriter() {
 
     /**
@@ -61,6 +108,23 @@ public class GtfsWriter extends CsvEntityWriter {
     setEntitySchemaFactory(schemaFactory);
   }
 
+  @Override
+  public void excludeOptionalAndMissingFields(Class<?> entityClass,
+      Iterable<Object> entities) {
+    if (_streamWriter != null)
+      _streamWriter.excludeOptionalAndMissingFields(entityClass, entities);
+    else
+      super.excludeOptionalAndMissingFields(entityClass, entities);
+  }
+
+  @Override
+  public void handleEntity(Object entity) {
+    if (_streamWriter != null)
+      _streamWriter.handleEntity(entity);
+    else
+      super.handleEntity(entity);
+  }
+
   public List<Class<?>> getEntityClasses() {
     return _entityClasses;
   }
@@ -69,20 +133,82 @@ public class GtfsWriter extends CsvEntityWriter {
     return _entityComparators;
   }
 
+  /**
+   * When writing a {@link GtfsRelationalDao}, stop times are written trip by
+   * trip and shape points shape by shape, from the relations of the dao, which
+   * are already sorted. Only the trips and shape ids are sorted, instead of
+   * every stop time and shape point. The relations are checked against the
+   * comparator first, and all the entities are sorted instead if they are out
+   * of order, so the output is the same either way. The relations are built
+   * if the dao has not built them yet.
+   * 
+   * @param useRelationalOrder whether to write in relational order (default is
+   *          true)
+   */
+  public void setUseRelationalOrder(boolean useRelationalOrder) {
+    _useRelationalOrder = useRelationalOrder;
+  }
+
+  /**
+   * Each file is written by its own {@link CsvEntityWriter} on a pool of the
+   * given number of threads. The contents of every file are the same as with
+   * the serial writer. For zip output, each file is also compressed on its
+   * thread, into a temporary file next to the zip, and no more than the given
+   * number of files are written ahead of the one being added to the zip.
+   * 
+   * @param parallelism number of files to write at once (default is 1, which
+   *          writes serially on the calling thread)
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + parallelism);
+    _parallelism = parallelism;
+  }
+
+  /**
+   * @param zipMethod {@link ZipEntry#DEFLATED} (the default), or
+   *          {@link ZipEntry#STORED} to write zip output uncompressed, which is
+   *          fastest for intermediate files
+   */
+  public void setZipMethod(int zipMethod) {
+    if (zipMethod != ZipEntry.DEFLATED && zipMethod != ZipEntry.STORED)
+      throw new IllegalArgumentException("invalid zip method: " + zipMethod);
+    _zipMethod = zipMethod;
+  }
+
+  /**
+   * @param zipCompressionLevel compression level of deflated zip output, from
+   *          {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+   *          or {@link Deflater#DEFAULT_COMPRESSION} (the default)
+   */
+  public void setZipCompressionLevel(int zipCompressionLevel) {
+    if ((zipCompressionLevel < Deflater.NO_COMPRESSION || zipCompressionLevel > Deflater.BEST_COMPRESSION)
+        && zipCompressionLevel != Deflater.DEFAULT_COMPRESSION)
+      throw new IllegalArgumentException("invalid zip compression level: "
+          + zipCompressionLevel);
+    _zipCompressionLevel = zipCompressionLevel;
+  }
+
+  /**
+   * Zip output is written in a single pass, each file straight into its zip
+   * entry, followed by the metadata files.
+   */
   public void run(GtfsDao dao) throws IOException {
 
     List<Class<?>> classes = getEntityClasses();
 
-    for (Class<?> entityClass : classes) {
-      _log.info("writing entities: " + entityClass.getName());
-      Collection<Object> entities = sortEntities(entityClass,
-          dao.getAllEntitiesForType(entityClass));
-      excludeOptionalAndMissingFields(entityClass, entities);
-      for (Object entity : entities)
-        handleEntity(entity);
-      flush();
+    if (_outputLocation.getName().endsWith(".zip")) {
+      writeZipFile(dao, classes);
+      return;
     }
 
+    if (_parallelism > 1 && classes.size() > 1) {
+      writeFiles(dao, classes, _outputLocation);
+    } else {
+      for (Class<?> entityClass : classes)
+        writeEntities(this, dao, entityClass);
+    }
     close();
 
     // now copy any metadata files
@@ -99,45 +225,398 @@ public class GtfsWriter extends CsvEntityWriter {
     if (content == null) {
       return;
     }
-    // outputLocation may be a zip file!
-    if (_outputLocation.getName().endsWith(".zip")) {
-      copyToZipFile(srcFilename, content);
-    } else {
-      try {
-        String location = _outputLocation.getAbsolutePath() + File.separator + srcFilename;
-        FileWriter fw = new FileWriter(location);
-        fw.write(content);
-        fw.close();
-      } catch (IOException e) {
-        // don't let metadata issue kill the entire process
-        System.err.println("issue copying metadata: "+ e);
+    try {
+      String location = _outputLocation.getAbsolutePath() + File.separator + srcFilename;
+      FileWriter fw = new FileWriter(location);
+      fw.write(content);
+      fw.close();
+    } catch (IOException e) {
+      // don't let metadata issue kill the entire process
+      System.err.println("issue copying metadata: "+ e);
+    }
+  }
+
+  private void writeZipFile(GtfsDao dao, List<Class<?>> classes)
+      throws IOException {
+
+    // The entity writer points at the zip file too, and is closed before the
+    // file is opened here, so that it cannot write anything after it
+    close();
+
+    Map<String, List<Class<?>>> classesByFilename = getClassesByFilename(classes);
+
+    try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(
+        _outputLocation)) {
+      out.setMethod(_zipMethod);
+      out.setLevel(_zipCompressionLevel);
+
+      if (_parallelism > 1 && classesByFilename.size() > 1) {
+        writeZipEntriesInParallel(out, dao, classesByFilename);
+      } else {
+        for (Map.Entry<String, List<Class<?>>> entry : classesByFilename.entrySet())
+          writeZipEntry(out, dao, entry.getKey(), entry.getValue());
+      }
+
+      for (String metadataFile : dao.getOptionalMetadataFilenames()) {
+        String content = dao.hasMetadata(metadataFile)
+            ? dao.getMetadata(metadataFile) : null;
+        if (content != null) {
+          _log.info("writing metadata file : " + metadataFile);
+          putZipEntry(out, metadataFile,
+              content.getBytes(StandardCharsets.UTF_8));
+        }
       }
     }
   }
 
-  private void copyToZipFile(String srcFilename, String content) {
+  /**
+   * Writes a file into the zip through this writer, so that subclasses see
+   * every entity, as they do when writing to a directory. The zip is written
+   * to a file it can seek in, so the size and checksum of a stored entry are
+   * filled in after its content is streamed, rather than computed up front.
+   */
+  private void writeZipEntry(ZipArchiveOutputStream out, GtfsDao dao,
+      String filename, List<Class<?>> fileClasses) throws IOException {
+    out.putArchiveEntry(new ZipArchiveEntry(filename));
+    writeThroughThis(dao, fileClasses, new NonClosingOutputStream(out));
+    out.closeArchiveEntry();
+  }
+
+  private void writeThroughThis(GtfsDao dao, List<Class<?>> fileClasses,
+      OutputStream out) throws IOException {
+    _streamWriter = new StreamEntityWriter(_entitySchemaFactory, out);
     try {
-      new ZipHandler(_outputLocation).writeTextToFile(srcFilename, content);
-    } catch (IOException e) {
-      // don't let metadata issue kill the entire process
-      System.err.println("issue copying metadata to zipfile: "+ e);
+      for (Class<?> entityClass : fileClasses)
+        writeEntities(this, dao, entityClass);
+      _streamWriter.close();
+    } finally {
+      _streamWriter = null;
+    }
+  }
+
+  /**
+   * Writes and compresses each file on up to {@link #setParallelism(int)}
+   * threads, into a zip of its own, and copies the compressed entries into the
+   * zip in entity class order. A file is only started once the file that many
+   * places before it has been copied.
+   */
+  private void writeZipEntriesInParallel(ZipArchiveOutputStream out,
+      GtfsDao dao, Map<String, List<Class<?>>> classesByFilename)
+      throws IOException {
+    List<String> filenames = new ArrayList<String>(classesByFilename.keySet());
+    int threads = Math.min(_parallelism, filenames.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<File>> futures = new ArrayList<Future<File>>();
+    try {
+      for (int i = 0; i < filenames.size(); i++) {
+        while (futures.size() < filenames.size()
+            && futures.size() < i + threads) {
+          String filename = filenames.get(futures.size());
+          List<Class<?>> fileClasses = classesByFilename.get(filename);
+          futures.add(executor.submit(() -> writeZipEntryFile(dao, filename,
+              fileClasses)));
+        }
+        File file = waitFor(futures.get(i));
+        futures.set(i, null);
+        try {
+          copyZipEntry(out, file, filenames.get(i));
+        } finally {
+          file.delete();
+        }
+      }
+    } finally {
+      executor.shutdown();
+      // Only reached with files left on failure
+      for (Future<File> future : futures) {
+        if (future != null)
+          deleteQuietly(future);
+      }
+    }
+  }
+
+  private File writeZipEntryFile(GtfsDao dao, String filename,
+      List<Class<?>> fileClasses) throws IOException {
+    File file = File.createTempFile(filename + "-", ".zip",
+        _outputLocation.getAbsoluteFile().getParentFile());
+    try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+      out.setMethod(_zipMethod);
+      out.setLevel(_zipCompressionLevel);
+      out.putArchiveEntry(new ZipArchiveEntry(filename));
+      StreamEntityWriter writer = new StreamEntityWriter(_entitySchemaFactory,
+          new NonClosingOutputStream(out));
+      for (Class<?> entityClass : fileClasses)
+        writeEntities(writer, dao, entityClass);
+      writer.close();
+      out.closeArchiveEntry();
+    } catch (IOException | RuntimeException | Error ex) {
+      file.delete();
+      throw ex;
     }
+    return file;
   }
 
+  /**
+   * Copies the compressed entry as it is, without inflating it again
+   */
+  private static void copyZipEntry(ZipArchiveOutputStream out, File file,
+      String filename) throws IOException {
+    try (ZipFile zip = ZipFile.builder().setFile(file).get()) {
+      ZipArchiveEntry entry = zip.getEntry(filename);
+      try (InputStream in = zip.getRawInputStream(entry)) {
+        out.addRawArchiveEntry(entry, in);
+      }
+    }
+  }
+
+  private static void deleteQuietly(Future<File> future) {
+    try {
+      waitFor(future).delete();
+    } catch (IOException | RuntimeException | Error ex) {
+      // the task deletes its own file when it fails
+    }
+  }
+
+  private void writeEntities(CsvEntityWriter writer, GtfsDao dao,
+      Class<?> entityClass) throws IOException {
+    _log.info("writing entities: " + entityClass.getName());
+    Iterable<Object> entities = sortEntities(dao, entityClass,
+        dao.getAllEntitiesForType(entityClass));
+    writer.excludeOptionalAndMissingFields(entityClass, entities);
+    for (Object entity : entities)
+      writer.handleEntity(entity);
+    writer.flush();
+  }
+
+  /**
+   * Writes each file to the directory with its own {@link CsvEntityWriter},
+   * on up to {@link #setParallelism(int)} threads.
+   */
+  private void writeFiles(GtfsDao dao, List<Class<?>> classes, File directory)
+      throws IOException {
+
+    Map<String, List<Class<?>>> classesByFilename = getClassesByFilename(classes);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+        _parallelism, classesByFilename.size()));
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (List<Class<?>> fileClasses : classesByFilename.values()) {
+        futures.add(executor.submit(() -> {
+          CsvEntityWriter writer = new CsvEntityWriter();
+          writer.setEntitySchemaFactory(_entitySchemaFactory);
+          writer.setOutputLocation(directory);
+          for (Class<?> entityClass : fileClasses)
+            writeEntities(writer, dao, entityClass);
+          writer.close();
+          return null;
+        }));
+      }
+      for (Future<?> future : futures)
+        waitFor(future);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Schemas are cached by the factory as they are first asked for, so they are
+   * all built here, before the factory is shared between threads. A class may
+   * be listed more than once, and classes that share a file are written by the
+   * same writer, in order.
+   */
+  private Map<String, List<Class<?>>> getClassesByFilename(
+      List<Class<?>> classes) {
+    Map<String, List<Class<?>>> classesByFilename = new LinkedHashMap<String, List<Class<?>>>();
+    for (Class<?> entityClass : classes) {
+      String filename = _entitySchemaFactory.getSchema(entityClass).getFilename();
+      classesByFilename.computeIfAbsent(filename,
+          k -> new ArrayList<Class<?>>()).add(entityClass);
+    }
+    return classesByFilename;
+  }
+
+  private static void putZipEntry(ZipArchiveOutputStream out, String name,
+      byte[] content) throws IOException {
+    out.putArchiveEntry(new ZipArchiveEntry(name));
+    out.write(content);
+    out.closeArchiveEntry();
+  }
+
+  private static <T> T waitFor(Future<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while writing entities", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
 
   @SuppressWarnings("unchecked")
-  private Collection<Object> sortEntities(Class<?> entityClass,
+  private Iterable<Object> sortEntities(GtfsDao dao, Class<?> entityClass,
       Collection<?> entities) {
 
     Comparator<Object> comparator = (Comparator<Object>) _entityComparators.get(entityClass);
 
-    if (comparator == null)
+    if (comparator == null || isSorted(entities, comparator))
       return (Collection<Object>) entities;
 
-    List<Object> sorted = new ArrayList<Object>();
-    sorted.addAll(entities);
-    Collections.sort(sorted, comparator);
-    return sorted;
+    if (_useRelationalOrder && dao instanceof GtfsRelationalDao) {
+      Iterable<Object> ordered = getRelationalOrder(
+          (GtfsRelationalDao) dao, comparator, entities.size());
+      if (ordered != null)
+        return ordered;
+    }
+
+    // Arrays.parallelSort is stable, as Collections.sort is
+    Object[] sorted = entities.toArray();
+    Arrays.parallelSort(sorted, comparator);
+    return Arrays.asList(sorted);
+  }
+
+  private static boolean isSorted(Collection<?> entities,
+      Comparator<Object> comparator) {
+    Iterator<?> it = entities.iterator();
+    if (!it.hasNext())
+      return true;
+    Object prev = it.next();
+    while (it.hasNext()) {
+      Object next = it.next();
+      if (comparator.compare(prev, next) > 0)
+        return false;
+      prev = next;
+    }
+    return true;
+  }
+
+  /**
+   * @return the entities in the order of the comparator, from the already
+   *         sorted relations of the dao, or null if the comparator is not one
+   *         the relations are sorted by, they do not cover every entity or they
+   *         are out of order
+   */
+  @SuppressWarnings("unchecked")
+  private Iterable<Object> getRelationalOrder(GtfsRelationalDao dao,
+      Comparator<?> comparator, int entityCount) {
+    Comparator<Object> order = (Comparator<Object>) comparator;
+    if (comparator instanceof StopTimeComparator) {
+      Trip[] trips = dao.getAllTrips().toArray(new Trip[0]);
+      Arrays.parallelSort(trips, (a, b) -> a.getId().compareTo(b.getId()));
+      return getGroupedOrder(Arrays.asList(trips), dao::getStopTimesForTrip,
+          order, entityCount);
+    } else if (comparator instanceof ShapePointComparator) {
+      List<AgencyAndId> shapeIds = new ArrayList<AgencyAndId>(
+          dao.getAllShapeIds());
+      shapeIds.sort(null);
+      return getGroupedOrder(shapeIds, dao::getShapePointsForShapeId,
+          order, entityCount);
+    }
+    return null;
+  }
+
+  private static <K> Iterable<Object> getGroupedOrder(List<K> keys,
+      Function<K, ? extends List<?>> valuesForKey,
+      Comparator<Object> comparator, int entityCount) {
+    // The relations may have been cached before the entities they hold were
+    // modified, so their order is checked along with their count
+    long count = 0;
+    Object prev = null;
+    for (K key : keys) {
+      for (Object value : valuesForKey.apply(key)) {
+        if (prev != null && comparator.compare(prev, value) > 0)
+          return null;
+        prev = value;
+        count++;
+      }
+    }
+    if (count != entityCount)
+      return null;
+    return () -> keys.stream().<Object> flatMap(
+        key -> valuesForKey.apply(key).stream()).iterator();
+  }
+
+  /**
+   * Writes the entities of a single file into a stream, such as a zip entry,
+   * instead of into files at an output location.
+   */
+  private static class StreamEntityWriter extends CsvEntityWriter {
+
+    private final CsvEntityContext _context = new CsvEntityContextImpl();
+
+    private final Map<Class<?>, IndividualCsvEntityWriter> _writersByClass = new HashMap<Class<?>, IndividualCsvEntityWriter>();
+
+    private final EntitySchemaFactory _schemaFactory;
+
+    private final PrintWriter _writer;
+
+    public StreamEntityWriter(EntitySchemaFactory schemaFactory,
+        OutputStream out) {
+      _schemaFactory = schemaFactory;
+      _writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out,
+          StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void excludeOptionalAndMissingFields(Class<?> entityClass,
+        Iterable<Object> entities) {
+      getWriter(entityClass).excludeOptionalAndMissingFields(entities);
+    }
+
+    @Override
+    public void handleEntity(Object entity) {
+      getWriter(entity.getClass()).handleEntity(entity);
+    }
+
+    @Override
+    public void flush() {
+      _writer.flush();
+    }
+
+    @Override
+    public void close() {
+      _writer.close();
+      // PrintWriter keeps any error to itself
+      if (_writer.checkError())
+        throw new IllegalStateException("error writing entities");
+    }
+
+    private IndividualCsvEntityWriter getWriter(Class<?> entityClass) {
+      IndividualCsvEntityWriter writer = _writersByClass.get(entityClass);
+      if (writer == null) {
+        writer = new IndividualCsvEntityWriter(_context,
+            _schemaFactory.getSchema(entityClass), _writer);
+        _writersByClass.put(entityClass, writer);
+      }
+      return writer;
+    }
+  }
+
+  /**
+   * Lets a file be written into the current zip entry without closing the zip
+   */
+  private static class NonClosingOutputStream extends FilterOutputStream {
+
+    public NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
   }
 
   /****
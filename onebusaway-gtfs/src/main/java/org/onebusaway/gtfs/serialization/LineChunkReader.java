@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a UTF-8 CSV stream into chunks of raw bytes that each end on a line
+ * break, so that the chunks can be decoded and parsed independently. Since
+ * '\n' never occurs inside a multi-byte UTF-8 sequence, splitting on it
+ * never cuts a character in half. Like {@link GtfsReader} itself, this
+ * assumes a CSV record never spans more than one line.
+ *
+ * @see GtfsReader#setParallelism(int)
+ */
+class LineChunkReader implements Closeable {
+
+  private final InputStream _in;
+
+  private final int _chunkSize;
+
+  private byte[] _buffer;
+
+  private int _start = 0;
+
+  private int _end = 0;
+
+  private boolean _eof = false;
+
+  public LineChunkReader(InputStream in, int chunkSize) {
+    _in = in;
+    _chunkSize = chunkSize;
+    _buffer = new byte[chunkSize];
+  }
+
+  /**
+   * @return the bytes up to and including the next line break, or the
+   *         remaining bytes if there is no further line break, or null at the
+   *         end of the stream
+   */
+  public byte[] readLine() throws IOException {
+    int scanned = 0;
+    while (true) {
+      for (int i = _start + scanned; i < _end; i++) {
+        if (_buffer[i] == '\n')
+          return take(i + 1);
+      }
+      scanned = _end - _start;
+      if (!fill())
+        return _start < _end ? take(_end) : null;
+    }
+  }
+
+  /**
+   * @return at least the configured chunk size of bytes, extended to the end
+   *         of the line they stop in, or the remaining bytes at the end of the
+   *         stream, or null if there are none left
+   */
+  public byte[] readChunk() throws IOException {
+    while (_end - _start < _chunkSize && fill()) {
+    }
+
+    if (_start == _end)
+      return null;
+
+    if (_eof)
+      return take(_end);
+
+    for (int i = _end - 1; i >= _start; i--) {
+      if (_buffer[i] == '\n')
+        return take(i + 1);
+    }
+
+    // A single line longer than the chunk size
+    return readLine();
+  }
+
+  @Override
+  public void close() throws IOException {
+    _in.close();
+  }
+
+  private boolean fill() throws IOException {
+    if (_eof)
+      return false;
+    if (_start > 0) {
+      System.arraycopy(_buffer, _start, _buffer, 0, _end - _start);
+      _end -= _start;
+      _start = 0;
+    }
+    if (_end == _buffer.length)
+      _buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+    int n = _in.read(_buffer, _end, _buffer.length - _end);
+    if (n < 0) {
+      _eof = true;
+      return false;
+    }
+    _end += n;
+    return true;
+  }
+
+  private byte[] take(int end) {
+    byte[] bytes = Arrays.copyOfRange(_buffer, _start, end);
+    _start = end;
+    return bytes;
+  }
+}
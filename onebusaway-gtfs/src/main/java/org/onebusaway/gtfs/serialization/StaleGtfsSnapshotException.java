@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.IOException;
+
+/**
+ * Indicates that a GTFS snapshot was written from a different feed than the
+ * one it was expected to match, so the feed should be read again.
+ *
+ * @see GtfsSnapshotReader#setExpectedFeedHash(String)
+ */
+public class StaleGtfsSnapshotException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String expectedFeedHash;
+
+  private final String feedHash;
+
+  public StaleGtfsSnapshotException(String expectedFeedHash, String feedHash) {
+    super("stale snapshot: expected feed hash " + expectedFeedHash
+        + " but found " + feedHash);
+    this.expectedFeedHash = expectedFeedHash;
+    this.feedHash = feedHash;
+  }
+
+  public String getExpectedFeedHash() {
+    return expectedFeedHash;
+  }
+
+  public String getFeedHash() {
+    return feedHash;
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.onebusaway.csv_entities.CsvInputSource;
+
+/**
+ * A {@link CsvInputSource} over a zip file that is opened once, when the
+ * source is created. Entries are found through the central directory of the
+ * archive rather than by scanning it, can be read in any order and from
+ * several threads at once, and are streamed through a large buffer. Metadata
+ * files are read through the same source as entity files.
+ *
+ * @see GtfsReader#setInputLocation(File)
+ */
+public class ZipCsvInputSource implements CsvInputSource {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final ZipFile _zipFile;
+
+  public ZipCsvInputSource(File path) throws IOException {
+    _zipFile = new ZipFile(path);
+  }
+
+  @Override
+  public boolean hasResource(String name) throws IOException {
+    return getEntry(name) != null;
+  }
+
+  @Override
+  public InputStream getResource(String name) throws IOException {
+    ZipEntry entry = getEntry(name);
+    if (entry == null)
+      throw new FileNotFoundException(name + " in " + _zipFile.getName());
+    return new BufferedInputStream(_zipFile.getInputStream(entry), BUFFER_SIZE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    _zipFile.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private ZipEntry getEntry(String name) {
+    ZipEntry entry = _zipFile.getEntry(name);
+    if (entry == null || entry.isDirectory())
+      return null;
+    return entry;
+  }
+}
@@ -16,12 +16,7 @@
  */
 package org.onebusaway.gtfs.serialization.mappings;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.beanutils.ConversionException;
 import org.apache.commons.beanutils.Converter;
@@ -34,9 +29,10 @@ import org.onebusaway.csv_entities.schema.FieldMappingFactory;
 
 public class StopTimeFieldMappingFactory implements FieldMappingFactory {
 
-  private static DecimalFormat _format = new DecimalFormat("00", new DecimalFormatSymbols(Locale.ENGLISH));
-
-  private static Pattern _pattern = Pattern.compile("^(-{0,1}\\d+):(\\d{2}):(\\d{2})$");
+  /**
+   * The longest formatted time, as in "-596523:59:59"
+   */
+  private static final int MAX_TIME_LENGTH = 13;
 
   public FieldMapping createFieldMapping(EntitySchemaFactory schemaFactory,
       Class<?> entityType, String csvFieldName, String objFieldName,
@@ -45,21 +41,86 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
         required);
   }
 
+  /**
+   * Formats seconds since midnight as HH:MM:SS, with at least two hour digits.
+   * Negative values are formatted as a negative hour plus positive minutes and
+   * seconds, so -60 is "-01:59:00".
+   */
   public static String getSecondsAsString(int t) {
     int seconds = positiveMod(t, 60);
     int hourAndMinutes = (t - seconds) / 60;
     int minutes = positiveMod(hourAndMinutes, 60);
     int hours = (hourAndMinutes - minutes) / 60;
 
-    StringBuilder b = new StringBuilder();
-    b.append(_format.format(hours));
-    b.append(":");
-    b.append(_format.format(minutes));
-    b.append(":");
-    b.append(_format.format(seconds));
-    return b.toString();
+    // Filled in from the end
+    char[] buffer = new char[MAX_TIME_LENGTH];
+    int index = buffer.length;
+    index = putTwoDigits(buffer, index, seconds);
+    buffer[--index] = ':';
+    index = putTwoDigits(buffer, index, minutes);
+    buffer[--index] = ':';
+
+    int absHours = Math.abs(hours);
+    if (absHours < 100) {
+      index = putTwoDigits(buffer, index, absHours);
+    } else {
+      do {
+        buffer[--index] = (char) ('0' + absHours % 10);
+        absHours /= 10;
+      } while (absHours > 0);
+    }
+    if (hours < 0)
+      buffer[--index] = '-';
+
+    return new String(buffer, index, buffer.length - index);
+  }
+
+  /**
+   * Parses a time of the form [-]H+:MM:SS into seconds since midnight. The
+   * sign only applies to the hours, so "-01:01:00" is -3540. Hours may exceed
+   * 24 and have any number of digits, as long as they fit in an int.
+   *
+   * @throws InvalidStopTimeException if the value is not a valid time
+   */
+  public static int getStringAsSeconds(String value) {
+    int length = value.length();
+    int index = 0;
+
+    boolean negative = length > 0 && value.charAt(0) == '-';
+    if (negative)
+      index++;
+
+    // Accumulated as a long so ints out of range are rejected, as
+    // Integer.parseInt would
+    long hours = 0;
+    int hoursStart = index;
+    for (; index < length; index++) {
+      int digit = getDigit(value.charAt(index));
+      if (digit < 0)
+        break;
+      hours = hours * 10 + digit;
+      if (hours > (long) Integer.MAX_VALUE + 1)
+        throw new InvalidStopTimeException(value);
+    }
+    if (index == hoursStart || (!negative && hours > Integer.MAX_VALUE))
+      throw new InvalidStopTimeException(value);
+
+    if (length - index != 6 || value.charAt(index) != ':'
+        || value.charAt(index + 3) != ':')
+      throw new InvalidStopTimeException(value);
+    int minutes = getTwoDigits(value, index + 1);
+    int seconds = getTwoDigits(value, index + 4);
+    if (minutes < 0 || seconds < 0)
+      throw new InvalidStopTimeException(value);
+
+    int signedHours = (int) (negative ? -hours : hours);
+    return seconds + 60 * (minutes + 60 * signedHours);
   }
 
+  /****
+   * Private Methods
+   ****/
+
   private static final int positiveMod(int value, int modulo) {
     int m = value % modulo;
     if (m < 0) {
@@ -68,19 +129,26 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
     return m;
   }
 
-  public static int getStringAsSeconds(String value) {
-    Matcher m = _pattern.matcher(value);
-    if (!m.matches())
-      throw new InvalidStopTimeException(value);
-    try {
-      int hours = Integer.parseInt(m.group(1));
-      int minutes = Integer.parseInt(m.group(2));
-      int seconds = Integer.parseInt(m.group(3));
+  private static int putTwoDigits(char[] buffer, int index, int value) {
+    buffer[--index] = (char) ('0' + value % 10);
+    buffer[--index] = (char) ('0' + value / 10);
+    return index;
+  }
 
-      return seconds + 60 * (minutes + 60 * hours);
-    } catch (NumberFormatException ex) {
-      throw new InvalidStopTimeException(value);
-    }
+  /**
+   * @return the value of two ASCII digits at the index, or -1 if either is not
+   *         a digit
+   */
+  private static int getTwoDigits(String value, int index) {
+    int tens = getDigit(value.charAt(index));
+    int ones = getDigit(value.charAt(index + 1));
+    if (tens < 0 || ones < 0)
+      return -1;
+    return tens * 10 + ones;
+  }
+
+  private static int getDigit(char c) {
+    return c >= '0' && c <= '9' ? c - '0' : -1;
   }
 
   private static class StopTimeFieldMapping extends AbstractFieldMapping
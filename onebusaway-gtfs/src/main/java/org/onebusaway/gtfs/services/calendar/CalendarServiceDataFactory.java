@@ -29,4 +29,19 @@ public interface CalendarServiceDataFactory {
   public CalendarServiceData updateData(Collection<Agency> allAgencies,
                                         Map<AgencyAndId, List<String>> tripAgencyIdsReferencingServiceId,
                                         Map<String, TimeZone> timeZoneMapByAgencyId);
+
+  /**
+   * Recomputes the service dates of the given service ids in data previously
+   * created for the same dao, after their calendars, calendar dates or trips
+   * have been added, modified or removed. Service ids left without a calendar
+   * or calendar date are removed from the data. Other service ids are left as
+   * they are, so this is much cheaper than {@link #createData()} when few
+   * service ids change. The data must not have been made read-only, and any
+   * relation caches of the dao must already reflect the changes.
+   *
+   * @param data the data to update in place
+   * @param serviceIds the service ids to recompute
+   */
+  public void updateData(CalendarServiceData data,
+                         Collection<AgencyAndId> serviceIds);
 }
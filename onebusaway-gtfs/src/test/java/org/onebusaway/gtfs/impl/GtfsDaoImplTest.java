@@ -16,6 +16,7 @@
 package org.onebusaway.gtfs.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.onebusaway.gtfs.GtfsTestData;
 import org.onebusaway.gtfs.model.Agency;
@@ -35,8 +36,10 @@ import org.onebusaway.gtfs.model.calendar.ServiceDate;
 
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 
 public class GtfsDaoImplTest {
 
@@ -129,4 +132,43 @@ public class GtfsDaoImplTest {
     Trip trip = dao.getTripForId(new AgencyAndId("BART","15PB1"));
     assertEquals(new AgencyAndId("BART","WKDY"),trip.getServiceId());
   }
+
+  @Test
+  public void testPackStopTimesScratchFile() throws IOException {
+
+    GtfsDaoImpl dao = new GtfsDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    File path = File.createTempFile("GtfsDaoImplTest-", ".stoptimes");
+    path.deleteOnExit();
+    GtfsDaoImpl mappedDao = new GtfsDaoImpl();
+    mappedDao.setPackStopTimesScratchFile(path);
+    GtfsTestData.readGtfs(mappedDao, GtfsTestData.getBartGtfs(), "BART");
+
+    Collection<StopTime> stopTimes = mappedDao.getAllStopTimes();
+    assertEquals(33270, stopTimes.size());
+
+    Iterator<StopTime> expected = dao.getAllStopTimes().iterator();
+    for (StopTime stopTime : stopTimes) {
+      StopTime expectedStopTime = expected.next();
+      assertEquals(expectedStopTime.getTrip().getId(), stopTime.getTrip().getId());
+      assertEquals(expectedStopTime.getStop().getId(), stopTime.getStop().getId());
+      assertEquals(expectedStopTime.getStopSequence(), stopTime.getStopSequence());
+      assertEquals(expectedStopTime.getArrivalTime(), stopTime.getArrivalTime());
+      assertEquals(expectedStopTime.getDepartureTime(), stopTime.getDepartureTime());
+      assertEquals(expectedStopTime.getStopHeadsign(), stopTime.getStopHeadsign());
+      assertEquals(expectedStopTime.getShapeDistTraveled(), stopTime.getShapeDistTraveled(), 0.0);
+    }
+
+    StopTime stopTime = mappedDao.getStopTimeForId(0);
+    Trip trip = mappedDao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    stopTime.setTrip(trip);
+    stopTime.setArrivalTime(1234);
+    assertSame(trip, mappedDao.getStopTimeForId(0).getTrip());
+    assertEquals(1234, mappedDao.getStopTimeForId(0).getArrivalTime());
+
+    // Closing again is harmless, and the rows stay readable once closed
+    mappedDao.close();
+    assertEquals(1234, mappedDao.getStopTimeForId(0).getArrivalTime());
+  }
 }
@@ -164,4 +164,71 @@ public class GtfsRelationalDaoImplTest {
     List<Trip> trips = dao.getTripsForBlockId(new AgencyAndId(agencyId, "block.1"));
     assertEquals(2, trips.size());
   }
+
+  @Test
+  public void testBuildIndexes() throws IOException {
+
+    GtfsRelationalDaoImpl lazyDao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(lazyDao, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl eagerDao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(eagerDao, GtfsTestData.getBartGtfs(), "BART");
+    eagerDao.buildIndexes();
+
+    for (Trip trip : lazyDao.getAllTrips()) {
+      Trip eagerTrip = eagerDao.getTripForId(trip.getId());
+      assertEquals(lazyDao.getStopTimesForTrip(trip).toString(),
+          eagerDao.getStopTimesForTrip(eagerTrip).toString());
+      assertEquals(lazyDao.getFrequenciesForTrip(trip).size(),
+          eagerDao.getFrequenciesForTrip(eagerTrip).size());
+    }
+    for (Stop stop : lazyDao.getAllStops()) {
+      Stop eagerStop = eagerDao.getStopForId(stop.getId());
+      assertEquals(lazyDao.getStopTimesForStop(stop).size(),
+          eagerDao.getStopTimesForStop(eagerStop).size());
+    }
+    for (AgencyAndId shapeId : lazyDao.getAllShapeIds()) {
+      assertEquals(lazyDao.getShapePointsForShapeId(shapeId).toString(),
+          eagerDao.getShapePointsForShapeId(shapeId).toString());
+    }
+    assertEquals(lazyDao.getAllServiceIds().size(),
+        eagerDao.getAllServiceIds().size());
+
+    eagerDao.clearAllCaches();
+    Trip trip = eagerDao.getTripForId(new AgencyAndId("BART", "15PB1"));
+    assertEquals(12, eagerDao.getStopTimesForTrip(trip).size());
+  }
+
+  @Test
+  public void testPackedStopTimes() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsRelationalDaoImpl packedDao = new GtfsRelationalDaoImpl();
+    packedDao.setPackStopTimes(true);
+    GtfsTestData.readGtfs(packedDao, GtfsTestData.getBartGtfs(), "BART");
+
+    for (Trip trip : dao.getAllTrips()) {
+      List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+      List<StopTime> packedStopTimes = packedDao.getStopTimesForTrip(packedDao.getTripForId(trip.getId()));
+      assertEquals(stopTimes.size(), packedStopTimes.size());
+      for (int i = 0; i < stopTimes.size(); i++) {
+        assertEquals(stopTimes.get(i).getStopSequence(),
+            packedStopTimes.get(i).getStopSequence());
+        assertEquals(stopTimes.get(i).getArrivalTime(),
+            packedStopTimes.get(i).getArrivalTime());
+      }
+    }
+
+    Stop stop = packedDao.getStopForId(new AgencyAndId("BART", "DBRK"));
+    List<StopTime> stopTimes = packedDao.getStopTimesForStop(stop);
+    assertEquals(584, stopTimes.size());
+    for (StopTime stopTime : stopTimes)
+      assertEquals(stop, stopTime.getStop());
+
+    Stop unservedStop = new Stop();
+    unservedStop.setId(new AgencyAndId("BART", "unserved"));
+    assertTrue(packedDao.getStopTimesForStop(unservedStop).isEmpty());
+  }
 }
@@ -18,6 +18,7 @@
 package org.onebusaway.gtfs.impl.calendar;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -28,6 +29,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.onebusaway.gtfs.DateSupport;
@@ -270,6 +273,172 @@ public class CalendarServiceDataFactoryImplSyntheticTest {
     factory.createData();
   }
 
+  @Test
+  public void testSkippedDay() {
+
+    /**
+     * Samoa moved across the date line at the end of 2011-12-29, so there was
+     * no 2011-12-30 in Apia
+     */
+    Agency agency = agency("A", "Pacific/Apia");
+    AgencyAndId serviceId = new AgencyAndId("A", "1");
+    ServiceCalendar c = calendar(serviceId, new ServiceDate(2011, 12, 28),
+        new ServiceDate(2012, 1, 1), "1111111");
+    Trip trip = trip("A", "1", serviceId);
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    saveEntities(dao, agency, c, trip);
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    CalendarServiceData data = factory.createData();
+
+    List<ServiceDate> serviceDates = data.getServiceDatesForServiceId(serviceId);
+    assertEquals(Arrays.asList(new ServiceDate(2011, 12, 28), new ServiceDate(
+        2011, 12, 29), new ServiceDate(2011, 12, 31),
+        new ServiceDate(2012, 1, 1)), serviceDates);
+
+    TimeZone tz = TimeZone.getTimeZone("Pacific/Apia");
+    List<Date> dates = data.getDatesForLocalizedServiceId(new LocalizedServiceId(
+        serviceId, tz));
+    assertEquals(4, dates.size());
+    for (int i = 0; i < dates.size(); i++)
+      assertEquals(serviceDates.get(i).getAsDate(tz), dates.get(i));
+  }
+
+  @Test
+  public void testParallelism() {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    saveEntities(dao, agency("A", "America/Los_Angeles"),
+        agency("B", "Europe/Berlin"));
+
+    ServiceDate dStart = new ServiceDate(2010, 2, 10);
+    for (int i = 0; i < 200; i++) {
+      AgencyAndId serviceId = new AgencyAndId(i % 2 == 0 ? "A" : "B",
+          Integer.toString(i));
+      saveEntities(dao,
+          calendar(serviceId, dStart.shift(i), dStart.shift(i * 3), "1010110"),
+          calendarDate(serviceId, dStart.shift(i + 1),
+              ServiceCalendarDate.EXCEPTION_TYPE_ADD),
+          calendarDate(serviceId, dStart.shift(i + 2),
+              ServiceCalendarDate.EXCEPTION_TYPE_REMOVE),
+          trip("A", "a" + i, serviceId), trip("B", "b" + i, serviceId));
+    }
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    factory.setParallelism(1);
+    CalendarServiceData serial = factory.createData();
+    factory.setParallelism(4);
+    CalendarServiceData parallel = factory.createData();
+    assertSameData(serial, parallel);
+
+    // A pool of the caller's is used as it is, and left running
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      factory.setExecutor(executor);
+      assertSameData(serial, factory.createData());
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void assertSameData(CalendarServiceData expected,
+      CalendarServiceData actual) {
+    assertEquals(expected.getServiceIds(), actual.getServiceIds());
+    for (AgencyAndId serviceId : expected.getServiceIds()) {
+      assertEquals(expected.getServiceDatesForServiceId(serviceId),
+          actual.getServiceDatesForServiceId(serviceId));
+      assertEquals(expected.getServiceIdOrdinal(serviceId),
+          actual.getServiceIdOrdinal(serviceId));
+    }
+    assertEquals(expected.getLocalizedServiceIds(),
+        actual.getLocalizedServiceIds());
+    for (LocalizedServiceId serviceId : expected.getLocalizedServiceIds()) {
+      assertEquals(expected.getDatesForLocalizedServiceId(serviceId),
+          actual.getDatesForLocalizedServiceId(serviceId));
+    }
+  }
+
+  @Test
+  public void testUpdateData() {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    saveEntities(dao, agency("A", "America/Los_Angeles"),
+        agency("B", "Europe/Berlin"));
+
+    ServiceDate dStart = new ServiceDate(2010, 2, 10);
+    AgencyAndId[] serviceIds = new AgencyAndId[4];
+    for (int i = 0; i < serviceIds.length; i++) {
+      serviceIds[i] = new AgencyAndId("A", Integer.toString(i));
+      saveEntities(dao,
+          calendar(serviceIds[i], dStart, dStart.shift(30), "1111100"),
+          calendarDate(serviceIds[i], dStart.shift(40),
+              ServiceCalendarDate.EXCEPTION_TYPE_ADD),
+          trip("A", "a" + i, serviceIds[i]));
+    }
+
+    CalendarServiceDataFactoryImpl factory = new CalendarServiceDataFactoryImpl(
+        dao);
+    CalendarServiceData data = factory.createData();
+    assertTrue(data.isServiceIdActiveOnDate(serviceIds[1], dStart));
+
+    // Extend the first calendar and add a trip of another agency to it
+    dao.getCalendarForServiceId(serviceIds[0]).setEndDate(dStart.shift(60));
+    saveEntities(dao, trip("B", "b0", serviceIds[0]));
+
+    // Remove the second service id entirely
+    dao.removeEntity(dao.getCalendarForServiceId(serviceIds[1]));
+    for (ServiceCalendarDate calendarDate : dao.getCalendarDatesForServiceId(serviceIds[1]))
+      dao.removeEntity(calendarDate);
+    dao.removeEntity(dao.getTripForId(new AgencyAndId("A", "a1")));
+
+    // Drop the calendar of the third, leaving its calendar dates
+    dao.removeEntity(dao.getCalendarForServiceId(serviceIds[2]));
+
+    // And add a new one
+    AgencyAndId addedServiceId = new AgencyAndId("B", "added");
+    saveEntities(dao,
+        calendar(addedServiceId, dStart.shift(-10), dStart, "0000011"),
+        trip("B", "b1", addedServiceId));
+
+    dao.clearAllCaches();
+    factory.updateData(data, Arrays.asList(serviceIds[0], serviceIds[1],
+        serviceIds[2], addedServiceId));
+
+    CalendarServiceData expected = factory.createData();
+
+    assertEquals(expected.getServiceIds(), data.getServiceIds());
+    assertEquals(-1, data.getServiceIdOrdinal(serviceIds[1]));
+    assertNull(data.getServiceDatesForServiceId(serviceIds[1]));
+    for (AgencyAndId serviceId : expected.getServiceIds()) {
+      assertEquals(expected.getServiceDatesForServiceId(serviceId),
+          data.getServiceDatesForServiceId(serviceId));
+    }
+    assertEquals(expected.getLocalizedServiceIds(),
+        data.getLocalizedServiceIds());
+    for (LocalizedServiceId serviceId : expected.getLocalizedServiceIds()) {
+      assertEquals(expected.getDatesForLocalizedServiceId(serviceId),
+          data.getDatesForLocalizedServiceId(serviceId));
+    }
+    for (int i = -20; i < 70; i++) {
+      ServiceDate serviceDate = dStart.shift(i);
+      assertEquals(expected.getServiceIdsForDate(serviceDate),
+          data.getServiceIdsForDate(serviceDate));
+    }
+
+    // Putting the removed service id back gives it its ordinal again
+    int ordinal = data.getServiceIdOrdinal(serviceIds[3]);
+    data.removeServiceId(serviceIds[3]);
+    assertEquals(-1, data.getServiceIdOrdinal(serviceIds[3]));
+    data.putServiceDatesForServiceId(serviceIds[3], Arrays.asList(dStart));
+    assertEquals(ordinal, data.getServiceIdOrdinal(serviceIds[3]));
+    assertTrue(data.isServiceIdActiveOnDate(serviceIds[3], dStart));
+    assertEquals(1, data.getServiceDatesForServiceId(serviceIds[3]).size());
+  }
+
   private Agency agency(String id, String timezone) {
     Agency agency = new Agency();
     agency.setId(id);
@@ -106,6 +106,13 @@ public class CalendarServiceImplSyntheticTest {
     serviceDates = service.getServiceDatesForServiceId(new AgencyAndId("dne",
         "dne"));
     assertEquals(0, serviceDates.size());
+
+    // Trips without a service id, as in some flex feeds
+    assertEquals(0, service.getServiceDatesForServiceId(null).size());
+    CalendarServiceData data = service.getData();
+    assertNull(data.getServiceDatesForServiceId(null));
+    assertEquals(-1, data.getServiceIdOrdinal(null));
+    assertFalse(data.isServiceIdActiveOnDate(null, d1));
   }
 
   @Test
@@ -128,6 +135,24 @@ public class CalendarServiceImplSyntheticTest {
     assertTrue(service.isLocalizedServiceIdActiveOnDate(lsid3, date3));
   }
 
+  @Test
+  public void testIsLocalizedServiceIdActiveOnDateNotAServiceDate() {
+
+    Date date1 = d1.getAsDate(tz);
+    assertFalse(service.isLocalizedServiceIdActiveOnDate(lsid1, new Date(
+        date1.getTime() + 1)));
+    assertFalse(service.isLocalizedServiceIdActiveOnDate(lsid1,
+        d1.getAsDate(TimeZone.getTimeZone("America/New_York"))));
+    assertFalse(service.isLocalizedServiceIdActiveOnDate(lsid1,
+        d1.shift(-1).getAsDate(tz)));
+    assertFalse(service.isLocalizedServiceIdActiveOnDate(lsid1,
+        d3.shift(1).getAsDate(tz)));
+
+    LocalizedServiceId lsid4 = new LocalizedServiceId(new AgencyAndId("A",
+        "4"), tz);
+    assertFalse(service.isLocalizedServiceIdActiveOnDate(lsid4, date1));
+  }
+
   @Test
   public void testGetServiceIdsOnDate() {
 
@@ -135,6 +160,27 @@ public class CalendarServiceImplSyntheticTest {
     assertEquals(2, serviceIds.size());
     assertTrue(serviceIds.contains(sid1));
     assertTrue(serviceIds.contains(sid2));
+    assertFalse(serviceIds.contains(sid3));
+    assertEquals(new HashSet<AgencyAndId>(Arrays.asList(sid1, sid2)),
+        new HashSet<AgencyAndId>(serviceIds));
+
+    assertTrue(service.getServiceIdsOnDate(d1.shift(-1)).isEmpty());
+    assertTrue(service.getServiceIdsOnDate(d3.shift(1)).isEmpty());
+  }
+
+  @Test
+  public void testServiceIdsOnDateAfterUpdate() {
+
+    CalendarServiceData data = service.getData();
+    assertFalse(data.isServiceIdActiveOnDate(sid1, d3));
+
+    data.putServiceDatesForServiceId(sid1, Arrays.asList(d1, d2, d3));
+    assertTrue(data.isServiceIdActiveOnDate(sid1, d3));
+    assertEquals(3, service.getServiceIdsOnDate(d3).size());
+
+    int ordinal = data.getServiceIdOrdinal(sid2);
+    assertTrue(data.getServiceIdOrdinalsForDate(d2).get(ordinal));
+    assertFalse(data.getServiceIdOrdinalsForDate(d1).get(ordinal));
   }
 
   @Test
@@ -30,6 +30,8 @@ import java.io.IOException;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 public class TranslationServiceImplTest {
 
@@ -78,6 +80,36 @@ public class TranslationServiceImplTest {
         assertEquals("http://fake.example.com", ts.getTranslatedEntity("en", FeedInfo.class, feedInfo).getPublisherUrl());
     }
 
+    @Test
+    public void testTranslatedEntityCache() throws IOException {
+        String agencyId = "agency";
+        GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+        GtfsTestData.readGtfs(dao, GtfsTestData.getTestAgencyGtfs(), agencyId);
+        TranslationServiceImpl ts = new TranslationServiceImpl();
+        ts.setData(TranslationServiceDataFactoryImpl.createData(dao));
+        Stop stop = dao.getStopForId(aid("A"));
+
+        Stop translated = ts.getTranslatedEntity("es", Stop.class, stop);
+        assertSame(translated, ts.getTranslatedEntity("es", Stop.class, stop));
+        assertEquals("A French", ts.getTranslatedEntity("fr", Stop.class, stop).getName());
+        assertEquals("A", stop.getName());
+
+        // Stops without translations are returned as they are
+        Stop other = dao.getStopForId(aid("B"));
+        assertSame(other, ts.getTranslatedEntity("es", Stop.class, other));
+
+        // Stop times are translated afresh every time
+        StopTime stopTime = dao.getStopTimesForTrip(dao.getTripForId(aid("4.3"))).get(0);
+        StopTime translatedStopTime = ts.getTranslatedEntity("es", StopTime.class, stopTime);
+        assertEquals("to G Spanish", translatedStopTime.getStopHeadsign());
+        assertFalse(translatedStopTime == ts.getTranslatedEntity("es", StopTime.class, stopTime));
+
+        ts.setCacheSize(0);
+        Stop uncached = ts.getTranslatedEntity("es", Stop.class, stop);
+        assertFalse(uncached == ts.getTranslatedEntity("es", Stop.class, stop));
+        assertEquals("A Spanish", uncached.getName());
+    }
+
     private AgencyAndId aid(String id) {
         return new AgencyAndId("agency", id);
     }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class AgencyAndIdRegistryTest {
+
+  @Test
+  public void testOrdinals() {
+    AgencyAndIdRegistry registry = new AgencyAndIdRegistry();
+    assertEquals(-1, registry.getOrdinal(new AgencyAndId("a", "0")));
+
+    // Enough ids to force the table to grow several times
+    for (int i = 0; i < 1000; i++)
+      assertEquals(i, registry.getOrCreateOrdinal(new AgencyAndId("a", Integer.toString(i))));
+    assertEquals(1000, registry.size());
+
+    for (int i = 0; i < 1000; i++) {
+      AgencyAndId id = new AgencyAndId("a", Integer.toString(i));
+      assertEquals(i, registry.getOrdinal(id));
+      assertEquals(i, registry.getOrCreateOrdinal(id));
+      assertEquals(id, registry.getId(i));
+    }
+    assertEquals(1000, registry.size());
+    assertEquals(-1, registry.getOrdinal(new AgencyAndId("b", "0")));
+  }
+
+  @Test
+  public void testIntern() {
+    AgencyAndIdRegistry registry = new AgencyAndIdRegistry();
+    AgencyAndId id = new AgencyAndId("a", "b");
+    assertSame(id, registry.intern(id));
+    assertSame(id, registry.intern(new AgencyAndId("a", "b")));
+  }
+
+  @Test
+  public void testAsSet() {
+    AgencyAndIdRegistry registry = new AgencyAndIdRegistry();
+    registry.getOrCreateOrdinal(new AgencyAndId("a", "2"));
+    registry.getOrCreateOrdinal(new AgencyAndId("a", "1"));
+
+    Set<AgencyAndId> ids = registry.asSet();
+    assertEquals(2, ids.size());
+    assertTrue(ids.contains(new AgencyAndId("a", "1")));
+    assertFalse(ids.contains(new AgencyAndId("a", "3")));
+
+    Iterator<AgencyAndId> it = ids.iterator();
+    assertEquals(new AgencyAndId("a", "2"), it.next());
+    assertEquals(new AgencyAndId("a", "1"), it.next());
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  public void testNullId() {
+    AgencyAndIdRegistry registry = new AgencyAndIdRegistry();
+    registry.getOrCreateOrdinal(new AgencyAndId("a", "1"));
+    assertEquals(-1, registry.getOrdinal(null));
+    assertFalse(registry.asSet().contains(null));
+  }
+
+  @Test
+  public void testSwappedValuesHashDifferently() {
+    assertTrue(new AgencyAndId("1", "2").hashCode() != new AgencyAndId("2",
+        "1").hashCode());
+  }
+}
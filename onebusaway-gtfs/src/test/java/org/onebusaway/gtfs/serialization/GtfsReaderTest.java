@@ -928,6 +928,76 @@ public class GtfsReaderTest extends BaseGtfsTest {
     assertEquals("Ten, Ten", route.getLongName());
   }
 
+  @Test
+  public void testParallelRead() throws IOException {
+    assertParallelReadMatchesSerialRead(GtfsTestData.getCaltrainGtfs(),
+        "Caltrain");
+    assertParallelReadMatchesSerialRead(GtfsTestData.getTestAgencyGtfs(),
+        "agency");
+    assertParallelReadMatchesSerialRead(GtfsTestData.getPierceTransitFlex(),
+        "1");
+    assertParallelReadMatchesSerialRead(GtfsTestData.getTurlockFaresV2(),
+        "1642");
+  }
+
+  private void assertParallelReadMatchesSerialRead(File resourcePath,
+      String agencyId) throws IOException {
+
+    GtfsRelationalDaoImpl serial = readFeed(resourcePath, agencyId, 1,
+        1024 * 1024);
+    assertSameEntities(serial, readFeed(resourcePath, agencyId, 4,
+        1024 * 1024));
+    // Small enough to split stop_times.txt and shapes.txt into many chunks
+    assertSameEntities(serial, readFeed(resourcePath, agencyId, 4, 100));
+  }
+
+  private void assertSameEntities(GtfsRelationalDaoImpl serial,
+      GtfsRelationalDaoImpl parallel) {
+
+    for (Class<?> entityClass : new GtfsReader().getEntityClasses()) {
+      List<Object> expected = new ArrayList<Object>(
+          serial.getAllEntitiesForType(entityClass));
+      List<Object> actual = new ArrayList<Object>(
+          parallel.getAllEntitiesForType(entityClass));
+      assertEquals(entityClass.getName(), expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(entityClass.getName(),
+            ((IdentityBean<?>) expected.get(i)).getId(),
+            ((IdentityBean<?>) actual.get(i)).getId());
+      }
+    }
+
+    Iterator<StopTime> actualStopTimes = parallel.getAllStopTimes().iterator();
+    for (StopTime expected : serial.getAllStopTimes()) {
+      StopTime actual = actualStopTimes.next();
+      assertEquals(expected.getTrip().getId(), actual.getTrip().getId());
+      assertSame(actual.getTrip(), parallel.getTripForId(actual.getTrip().getId()));
+      assertEquals(expected.getStopSequence(), actual.getStopSequence());
+      assertEquals(expected.getArrivalTime(), actual.getArrivalTime());
+      assertEquals(expected.getDepartureTime(), actual.getDepartureTime());
+      if (expected.getStop() == null) {
+        assertNull(actual.getStop());
+      } else {
+        assertEquals(expected.getStop().getId(), actual.getStop().getId());
+      }
+    }
+    assertFalse(actualStopTimes.hasNext());
+  }
+
+  private GtfsRelationalDaoImpl readFeed(File resourcePath, String agencyId,
+      int parallelism, int chunkSize) throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId(agencyId);
+    reader.setParallelism(parallelism);
+    reader.setParallelChunkSize(chunkSize);
+    reader.setInputLocation(resourcePath);
+
+    GtfsRelationalDaoImpl entityStore = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(entityStore);
+    reader.run();
+    return entityStore;
+  }
+
   private ShapePoint getShapePoint(Iterable<ShapePoint> shapePoints,
       AgencyAndId shapeId, int sequence) {
     for (ShapePoint shapePoint : shapePoints) {
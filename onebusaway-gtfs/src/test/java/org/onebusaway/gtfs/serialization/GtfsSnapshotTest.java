@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.FileSupport;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+public class GtfsSnapshotTest {
+
+  private FileSupport _support = new FileSupport();
+
+  private File _path;
+
+  @Before
+  public void setup() throws IOException {
+    _path = File.createTempFile("GtfsSnapshotTest-", ".snapshot");
+    _support.markForDeletion(_path);
+  }
+
+  @After
+  public void teardown() {
+    _support.cleanup();
+  }
+
+  @Test
+  public void testPackedRoundTrip() throws IOException {
+    testRoundTrip(true);
+  }
+
+  @Test
+  public void testUnpackedRoundTrip() throws IOException {
+    testRoundTrip(false);
+  }
+
+  @Test
+  public void testStaleSnapshot() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(_path);
+    writer.setFeedHash("abc");
+    writer.run(dao);
+
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(_path);
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+    reader.setExpectedFeedHash("def");
+    try {
+      reader.run();
+      fail();
+    } catch (StaleGtfsSnapshotException ex) {
+      assertEquals("def", ex.getExpectedFeedHash());
+      assertEquals("abc", ex.getFeedHash());
+    }
+  }
+
+  @Test
+  public void testInvalidEntitiesLength() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(true);
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", "t0"));
+    dao.saveEntity(trip);
+    for (int i = 0; i < 3; i++) {
+      StopTime stopTime = new StopTime();
+      stopTime.setTrip(trip);
+      stopTime.setStopSequence(i);
+      dao.saveEntity(stopTime);
+    }
+    dao.close();
+
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(_path);
+    writer.run(dao);
+
+    long length;
+    try (RandomAccessFile file = new RandomAccessFile(_path, "rw")) {
+      length = file.length();
+    }
+    // Past the end of the file, and short of the entities written
+    for (long entitiesLength : new long[] {length, 16}) {
+      try (RandomAccessFile file = new RandomAccessFile(_path, "rw")) {
+        file.seek(GtfsSnapshotFormat.ENTITIES_LENGTH);
+        file.write(ByteBuffer.allocate(8).order(GtfsSnapshotFormat.BYTE_ORDER).putLong(
+            entitiesLength).array());
+      }
+      GtfsSnapshotReader reader = new GtfsSnapshotReader();
+      reader.setInputLocation(_path);
+      reader.setEntityStore(new GtfsRelationalDaoImpl());
+      try {
+        reader.run();
+        fail();
+      } catch (IOException ex) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSerialFilter() throws IOException {
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Trip trip = new Trip();
+    trip.setId(new AgencyAndId("a", "t0"));
+    dao.saveEntity(trip);
+    Trip tripWithExtension = new Trip();
+    tripWithExtension.setId(new AgencyAndId("a", "t1"));
+    tripWithExtension.putExtension(TripExtension.class, new TripExtension());
+    dao.saveEntity(tripWithExtension);
+
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(_path);
+    writer.run(dao);
+
+    // Extensions aren't model classes, so they need a filter of their own
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(_path);
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+    try {
+      reader.run();
+      fail();
+    } catch (InvalidClassException ex) {
+      // expected
+    }
+
+    GtfsRelationalDaoImpl restored = new GtfsRelationalDaoImpl();
+    reader = new GtfsSnapshotReader();
+    reader.setInputLocation(_path);
+    reader.setEntityStore(restored);
+    reader.setSerialFilter(ObjectInputFilter.Config.createFilter(
+        "org.onebusaway.gtfs.**;java.lang.*;java.util.*;!*"));
+    reader.run();
+    assertEquals(2, restored.getAllTrips().size());
+    assertTrue(restored.getTripForId(new AgencyAndId("a", "t1")).getExtension(
+        TripExtension.class) != null);
+  }
+
+  @Test
+  public void testComputeFeedHash() throws IOException {
+    String hash = GtfsSnapshotFormat.computeFeedHash(GtfsTestData.getBartGtfs());
+    assertEquals(64, hash.length());
+    assertEquals(hash,
+        GtfsSnapshotFormat.computeFeedHash(GtfsTestData.getBartGtfs()));
+    assertTrue(!hash.equals(GtfsSnapshotFormat.computeFeedHash(GtfsTestData.getCaltrainGtfs())));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void testRoundTrip(boolean packed) throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    dao.setPackStopTimes(packed);
+    dao.setPackShapePoints(packed);
+    GtfsTestData.readGtfs(dao, GtfsTestData.getBartGtfs(), "BART");
+
+    String feedHash = GtfsSnapshotFormat.computeFeedHash(GtfsTestData.getBartGtfs());
+    GtfsSnapshotWriter writer = new GtfsSnapshotWriter();
+    writer.setOutputLocation(_path);
+    writer.setFeedHash(feedHash);
+    writer.run(dao);
+
+    GtfsRelationalDaoImpl restored = new GtfsRelationalDaoImpl();
+    restored.setPackStopTimes(packed);
+    restored.setPackShapePoints(packed);
+    GtfsSnapshotReader reader = new GtfsSnapshotReader();
+    reader.setInputLocation(_path);
+    reader.setEntityStore(restored);
+    reader.setExpectedFeedHash(feedHash);
+    reader.run();
+    assertEquals(feedHash, reader.getFeedHash());
+
+    assertEquals(dao.getAllAgencies().size(), restored.getAllAgencies().size());
+    assertEquals(dao.getAllRoutes().size(), restored.getAllRoutes().size());
+    assertEquals(dao.getAllStops().size(), restored.getAllStops().size());
+    assertEquals(dao.getAllTrips().size(), restored.getAllTrips().size());
+    assertEquals(dao.getAllCalendars().size(),
+        restored.getAllCalendars().size());
+    assertEquals(dao.getAllCalendarDates().size(),
+        restored.getAllCalendarDates().size());
+    assertEquals(dao.getAllStopTimes().size(),
+        restored.getAllStopTimes().size());
+    assertEquals(dao.getAllShapePoints().size(),
+        restored.getAllShapePoints().size());
+
+    Iterator<StopTime> expected = dao.getAllStopTimes().iterator();
+    for (StopTime stopTime : restored.getAllStopTimes()) {
+      StopTime expectedStopTime = expected.next();
+      assertEquals(expectedStopTime.getTrip().getId(),
+          stopTime.getTrip().getId());
+      assertEquals(expectedStopTime.getStop().getId(),
+          stopTime.getStop().getId());
+      assertEquals(expectedStopTime.getArrivalTime(),
+          stopTime.getArrivalTime());
+      assertEquals(expectedStopTime.getDepartureTime(),
+          stopTime.getDepartureTime());
+      assertEquals(expectedStopTime.getStopSequence(),
+          stopTime.getStopSequence());
+      assertEquals(expectedStopTime.getStopHeadsign(),
+          stopTime.getStopHeadsign());
+    }
+
+    Iterator<ShapePoint> expectedPoints = dao.getAllShapePoints().iterator();
+    for (ShapePoint point : restored.getAllShapePoints()) {
+      ShapePoint expectedPoint = expectedPoints.next();
+      assertEquals(expectedPoint.getShapeId(), point.getShapeId());
+      assertEquals(expectedPoint.getSequence(), point.getSequence());
+      assertEquals(expectedPoint.getLat(), point.getLat(), 0.0);
+      assertEquals(expectedPoint.getLon(), point.getLon(), 0.0);
+    }
+
+    // References must resolve to the restored entities
+    Trip trip = restored.getTripForId(new AgencyAndId("BART", "15PB1"));
+    List<StopTime> stopTimes = restored.getStopTimesForTrip(trip);
+    assertEquals(dao.getStopTimesForTrip(
+        dao.getTripForId(trip.getId())).size(), stopTimes.size());
+    assertSame(trip, stopTimes.get(0).getTrip());
+    Stop stop = restored.getStopForId(stopTimes.get(0).getStop().getId());
+    assertSame(stop, stopTimes.get(0).getStop());
+    assertSame(restored.getRouteForId(trip.getRoute().getId()),
+        trip.getRoute());
+  }
+
+  public static class TripExtension implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+  }
+}
@@ -15,10 +15,22 @@
  */
 package org.onebusaway.gtfs.serialization;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.junit.After;
 import org.junit.Before;
@@ -26,6 +38,13 @@ import org.junit.Test;
 import org.onebusaway.gtfs.impl.FileSupport;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.serialization.comparators.ShapePointComparator;
+import org.onebusaway.gtfs.serialization.comparators.StopTimeComparator;
 
 public class GtfsWriterTest {
 
@@ -83,6 +102,195 @@ public class GtfsWriterTest {
     assertEquals("http://agency.com/", agency2.getUrl());
   }
 
+  @Test
+  public void testWriteInSortedOrder() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    String[] tripIds = {"t2", "t10", "t1"};
+    for (String tripId : tripIds) {
+      Trip trip = new Trip();
+      trip.setId(new AgencyAndId("a", tripId));
+      dao.saveEntity(trip);
+    }
+    int[] sequences = {3, 1, 2, 2, 0};
+    for (int sequence : sequences) {
+      for (String tripId : tripIds) {
+        StopTime stopTime = new StopTime();
+        stopTime.setTrip(dao.getTripForId(new AgencyAndId("a", tripId)));
+        stopTime.setStopSequence(sequence);
+        dao.saveEntity(stopTime);
+
+        ShapePoint point = new ShapePoint();
+        point.setShapeId(new AgencyAndId("a", tripId));
+        point.setSequence(sequence);
+        dao.saveEntity(point);
+      }
+    }
+
+    List<Object> expectedStopTimes = new ArrayList<Object>(dao.getAllStopTimes());
+    Collections.sort(expectedStopTimes, (a, b) -> new StopTimeComparator().compare(
+        (StopTime) a, (StopTime) b));
+    List<Object> expectedShapePoints = new ArrayList<Object>(dao.getAllShapePoints());
+    Collections.sort(expectedShapePoints, (a, b) -> new ShapePointComparator().compare(
+        (ShapePoint) a, (ShapePoint) b));
+
+    RecordingGtfsWriter writer = new RecordingGtfsWriter();
+    writer.setOutputLocation(_tmpDirectory);
+    writer.run(dao);
+    assertEquals(expectedStopTimes, writer.getEntities(StopTime.class));
+    assertEquals(expectedShapePoints, writer.getEntities(ShapePoint.class));
+
+    // A stop time modified after the relations were built falls back to
+    // sorting
+    Trip trip = dao.getTripForId(new AgencyAndId("a", "t1"));
+    dao.getStopTimesForTrip(trip).get(0).setStopSequence(10);
+    Collections.sort(expectedStopTimes, (a, b) -> new StopTimeComparator().compare(
+        (StopTime) a, (StopTime) b));
+
+    writer = new RecordingGtfsWriter();
+    writer.setOutputLocation(_tmpDirectory);
+    writer.run(dao);
+    assertEquals(expectedStopTimes, writer.getEntities(StopTime.class));
+
+    // A stop time whose trip is not in the dao falls back to sorting
+    Trip other = new Trip();
+    other.setId(new AgencyAndId("a", "t0"));
+    StopTime stopTime = new StopTime();
+    stopTime.setTrip(other);
+    stopTime.setStopSequence(1);
+    dao.saveEntity(stopTime);
+    dao.clearAllCaches();
+    expectedStopTimes.add(0, stopTime);
+
+    writer = new RecordingGtfsWriter();
+    writer.setOutputLocation(_tmpDirectory);
+    writer.run(dao);
+    assertEquals(expectedStopTimes, writer.getEntities(StopTime.class));
+
+    writer = new RecordingGtfsWriter();
+    writer.setOutputLocation(_tmpDirectory);
+    writer.setUseRelationalOrder(false);
+    writer.run(dao);
+    assertEquals(expectedStopTimes, writer.getEntities(StopTime.class));
+    assertEquals(expectedShapePoints, writer.getEntities(ShapePoint.class));
+  }
+
+  @Test
+  public void testWriteInParallel() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("a");
+    agency.setName("Agency");
+    agency.setTimezone("America/Los_Angeles");
+    agency.setUrl("http://agency.com/");
+    dao.saveEntity(agency);
+    for (int i = 0; i < 10; i++) {
+      Stop stop = new Stop();
+      stop.setId(new AgencyAndId("a", "s" + (9 - i)));
+      stop.setName("Stop " + i);
+      stop.setLat(47.0 + i / 100.0);
+      stop.setLon(-122.0);
+      dao.saveEntity(stop);
+      ShapePoint point = new ShapePoint();
+      point.setShapeId(new AgencyAndId("a", "shape" + (i % 3)));
+      point.setSequence(10 - i);
+      point.setLat(47.0);
+      point.setLon(-122.0 + i / 100.0);
+      dao.saveEntity(point);
+    }
+
+    File serialDirectory = new File(_tmpDirectory, "serial");
+    File parallelDirectory = new File(_tmpDirectory, "parallel");
+    GtfsWriter writer = new GtfsWriter();
+    writer.setOutputLocation(serialDirectory);
+    writer.run(dao);
+    writer = new GtfsWriter();
+    writer.setParallelism(4);
+    writer.setOutputLocation(parallelDirectory);
+    writer.run(dao);
+
+    String[] filenames = serialDirectory.list();
+    assertArrayEquals(sorted(filenames), sorted(parallelDirectory.list()));
+    for (String filename : filenames) {
+      assertEquals(filename, read(new File(serialDirectory, filename)),
+          read(new File(parallelDirectory, filename)));
+    }
+
+    File serialZip = new File(_tmpDirectory, "serial.zip");
+    File parallelZip = new File(_tmpDirectory, "parallel.zip");
+    writer = new GtfsWriter();
+    writer.setOutputLocation(serialZip);
+    writer.run(dao);
+    writer = new GtfsWriter();
+    writer.setParallelism(4);
+    writer.setOutputLocation(parallelZip);
+    writer.run(dao);
+
+    // The files compressed on their own are removed once they are in the zip
+    assertArrayEquals(new String[] {
+        "parallel", "parallel.zip", "serial", "serial.zip"},
+        sorted(_tmpDirectory.list()));
+
+    try (ZipFile serial = new ZipFile(serialZip);
+        ZipFile parallel = new ZipFile(parallelZip)) {
+      List<String> serialNames = getEntryNames(serial);
+      List<String> parallelNames = getEntryNames(parallel);
+      Collections.sort(serialNames);
+      Collections.sort(parallelNames);
+      assertEquals(serialNames, parallelNames);
+      for (String name : serialNames) {
+        assertEquals(name, readEntry(serial, name), readEntry(parallel, name));
+      }
+    }
+  }
+
+  @Test
+  public void testWriteZipStored() throws IOException {
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    Agency agency = new Agency();
+    agency.setId("a");
+    agency.setName("Agency");
+    agency.setTimezone("America/Los_Angeles");
+    agency.setUrl("http://agency.com/");
+    dao.saveEntity(agency);
+    dao.addMetadata("modifications.txt", "modified");
+
+    File deflatedZip = new File(_tmpDirectory, "deflated.zip");
+    File storedZip = new File(_tmpDirectory, "stored.zip");
+    GtfsWriter writer = new GtfsWriter();
+    writer.setOutputLocation(deflatedZip);
+    writer.run(dao);
+    writer = new GtfsWriter();
+    writer.setZipMethod(ZipEntry.STORED);
+    writer.setOutputLocation(storedZip);
+    writer.run(dao);
+
+    try (ZipFile deflated = new ZipFile(deflatedZip);
+        ZipFile stored = new ZipFile(storedZip)) {
+      List<String> names = getEntryNames(deflated);
+      assertEquals(names, getEntryNames(stored));
+      assertTrue(names.contains("agency.txt"));
+      assertTrue(names.contains("modifications.txt"));
+      for (String name : names) {
+        assertEquals(ZipEntry.DEFLATED, deflated.getEntry(name).getMethod());
+        assertEquals(ZipEntry.STORED, stored.getEntry(name).getMethod());
+        assertEquals(name, readEntry(deflated, name), readEntry(stored, name));
+      }
+      assertEquals("modified", readEntry(stored, "modifications.txt"));
+    }
+    assertArrayEquals(new String[] {"deflated.zip", "stored.zip"},
+        sorted(_tmpDirectory.list()));
+
+    // Zip output goes through the writer itself, as directory output does
+    RecordingGtfsWriter recordingWriter = new RecordingGtfsWriter();
+    recordingWriter.setOutputLocation(new File(_tmpDirectory, "recorded.zip"));
+    recordingWriter.run(dao);
+    assertEquals(Arrays.asList(agency),
+        recordingWriter.getEntities(Agency.class));
+  }
+
   public static void deleteFileRecursively(File file) {
 
     if (!file.exists())
@@ -98,4 +306,47 @@ public class GtfsWriterTest {
 
     file.delete();
   }
+
+  private static class RecordingGtfsWriter extends GtfsWriter {
+
+    private List<Object> _entities = new ArrayList<Object>();
+
+    @Override
+    public void handleEntity(Object entity) {
+      _entities.add(entity);
+    }
+
+    public List<Object> getEntities(Class<?> entityClass) {
+      List<Object> entities = new ArrayList<Object>();
+      for (Object entity : _entities) {
+        if (entityClass.isInstance(entity))
+          entities.add(entity);
+      }
+      return entities;
+    }
+  }
+
+  private static String[] sorted(String[] values) {
+    String[] copy = values.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  private static List<String> getEntryNames(ZipFile zip) {
+    List<String> names = new ArrayList<String>();
+    Enumeration<? extends ZipEntry> entries = zip.entries();
+    while (entries.hasMoreElements())
+      names.add(entries.nextElement().getName());
+    return names;
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  private static String readEntry(ZipFile zip, String name) throws IOException {
+    try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
 }
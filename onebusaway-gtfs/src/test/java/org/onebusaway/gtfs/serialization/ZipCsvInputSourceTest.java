@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipCsvInputSourceTest {
+
+  private File _zipFile;
+
+  @Before
+  public void setup() throws IOException {
+    _zipFile = File.createTempFile("ZipCsvInputSourceTest-", ".zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+        _zipFile))) {
+      out.putNextEntry(new ZipEntry("agency.txt"));
+      out.write("agency_id,agency_name\n1,Agency\n".getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("modifications.txt"));
+      out.write("modified\r\n".getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("extra/"));
+      out.closeEntry();
+    }
+  }
+
+  @After
+  public void teardown() {
+    _zipFile.delete();
+  }
+
+  @Test
+  public void testResources() throws IOException {
+    ZipCsvInputSource source = new ZipCsvInputSource(_zipFile);
+    try {
+      assertTrue(source.hasResource("agency.txt"));
+      assertTrue(source.hasResource("modifications.txt"));
+      assertFalse(source.hasResource("stops.txt"));
+      assertFalse(source.hasResource("extra/"));
+
+      // Entries can be read in any order, and more than once
+      assertEquals("modified\r\n", read(source, "modifications.txt"));
+      assertEquals("agency_id,agency_name\n1,Agency\n",
+          read(source, "agency.txt"));
+      assertEquals("modified\r\n", read(source, "modifications.txt"));
+    } finally {
+      source.close();
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testMissingResource() throws IOException {
+    ZipCsvInputSource source = new ZipCsvInputSource(_zipFile);
+    try {
+      source.getResource("stops.txt");
+    } finally {
+      source.close();
+    }
+  }
+
+  private String read(ZipCsvInputSource source, String name)
+      throws IOException {
+    try (InputStream in = source.getResource(name)) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
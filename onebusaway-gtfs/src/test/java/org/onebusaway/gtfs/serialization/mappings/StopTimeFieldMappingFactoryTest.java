@@ -104,6 +104,35 @@ public class StopTimeFieldMappingFactoryTest {
     } catch (InvalidStopTimeException ex) {
 
     }
+
+    try {
+      getStringAsSeconds("12:3a:00");
+      fail();
+    } catch (InvalidStopTimeException ex) {
+
+    }
+
+    try {
+      getStringAsSeconds("12:30:00 ");
+      fail();
+    } catch (InvalidStopTimeException ex) {
+
+    }
+
+    try {
+      getStringAsSeconds("2147483648:00:00");
+      fail();
+    } catch (InvalidStopTimeException ex) {
+
+    }
+  }
+
+  @Test
+  public void testGetStringAsSecondsLongHours() {
+    assertEquals(25 * 3600 + 5, getStringAsSeconds("25:00:05"));
+    assertEquals(3 * 3600, getStringAsSeconds("3:00:00"));
+    assertEquals(3 * 3600, getStringAsSeconds("0003:00:00"));
+    assertEquals(59 * 60 + 59, getStringAsSeconds("00:59:59"));
   }
 
   @Test
@@ -117,6 +146,8 @@ public class StopTimeFieldMappingFactoryTest {
     assertEquals("-10:20:30", getSecondsAsString(-34770));
     assertEquals("100:15:13", getSecondsAsString(360913));
     assertEquals("-100:15:13", getSecondsAsString(-359087));
+    assertEquals("25:00:05", getSecondsAsString(25 * 3600 + 5));
+    assertEquals("596523:14:07", getSecondsAsString(Integer.MAX_VALUE));
   }
 
   public static class Dummy {